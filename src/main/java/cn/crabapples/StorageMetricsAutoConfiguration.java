@@ -0,0 +1,24 @@
+package cn.crabapples;
+
+import cn.crabapples.metrics.MicrometerStorageMetrics;
+import cn.crabapples.metrics.StorageMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration //开启配置
+@ConditionalOnClass(MeterRegistry.class) //引入Micrometer时初始化该配置类
+public class StorageMetricsAutoConfiguration {
+    /**
+     * 容器中存在唯一的MeterRegistry时记录存储操作指标,否则不记录
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public StorageMetrics storageMetrics(ObjectProvider<MeterRegistry> registry) {
+        MeterRegistry meterRegistry = registry.getIfUnique();
+        return meterRegistry == null ? StorageMetrics.NOOP : new MicrometerStorageMetrics(meterRegistry);
+    }
+}
@@ -0,0 +1,71 @@
+package cn.crabapples.cache;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 堆外缓存中文件内容的租约
+ * 关闭前只读视图指向的内存不会被复用,关闭后不应再访问视图;未缓存的文件使用堆内存,关闭不做任何操作
+ *
+ * @param <M> 下载响应的元数据类型
+ */
+public class CachedBytes<M> implements AutoCloseable {
+    private static final Runnable NO_RELEASE = () -> {
+    };
+    private final M metadata;
+    private final ByteBuffer buffer;
+    private final Runnable release;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    public CachedBytes(M metadata, ByteBuffer buffer) {
+        this(metadata, buffer, NO_RELEASE);
+    }
+
+    CachedBytes(M metadata, ByteBuffer buffer, Runnable release) {
+        this.metadata = metadata;
+        this.buffer = buffer;
+        this.release = release;
+    }
+
+    /**
+     * 下载响应,命中缓存时为写入缓存时的响应
+     */
+    public M getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * 文件内容的只读视图,每次调用返回独立的位置和界限
+     */
+    public ByteBuffer asByteBuffer() {
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * 复制到堆内存
+     */
+    public byte[] toByteArray() {
+        ByteBuffer view = asByteBuffer();
+        byte[] bytes = new byte[view.remaining()];
+        view.get(bytes);
+        return bytes;
+    }
+
+    public int getLength() {
+        return buffer.remaining();
+    }
+
+    /**
+     * 是否来自堆外缓存
+     */
+    public boolean isCached() {
+        return buffer.isDirect();
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            release.run();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package cn.crabapples.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 下载缓存返回的文件
+ * 命中缓存时持有已打开的缓存文件,否则持有存储服务的下载流;内容只能读取一次,读取后需要关闭
+ *
+ * @param <M> 下载响应的元数据类型
+ */
+public class CachedObject<M> {
+    private final DiskObjectCache.Entry<M> entry;
+    private final M metadata;
+    private final long length;
+    private final FileChannel channel;
+    private final InputStream body;
+
+    CachedObject(DiskObjectCache.Entry<M> entry, FileChannel channel) {
+        this.entry = entry;
+        this.metadata = entry.getMetadata();
+        this.length = entry.getSize();
+        this.channel = channel;
+        this.body = null;
+    }
+
+    CachedObject(M metadata, long length, InputStream body) {
+        this.entry = null;
+        this.metadata = metadata;
+        this.length = length;
+        this.channel = null;
+        this.body = body;
+    }
+
+    /**
+     * 下载响应,命中缓存时为写入缓存时的响应
+     */
+    public M getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * 文件大小,未知时为-1
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * 是否从本地缓存读取
+     */
+    public boolean isCached() {
+        return channel != null;
+    }
+
+    /**
+     * 文件内容,关闭输入流时关闭缓存文件
+     */
+    public InputStream getInputStream() {
+        return channel != null ? Channels.newInputStream(channel) : body;
+    }
+
+    /**
+     * 把文件内容写入输出流后关闭文件,命中缓存时使用FileChannel.transferTo
+     *
+     * @param outputStream 输出流,不会被关闭
+     * @return 写入的字节数
+     */
+    public long transferTo(OutputStream outputStream) throws IOException {
+        if (channel == null) {
+            try (InputStream in = body) {
+                byte[] buffer = new byte[64 * 1024];
+                long total = 0;
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, read);
+                    total += read;
+                }
+                return total;
+            }
+        }
+        try (FileChannel in = channel) {
+            WritableByteChannel out = Channels.newChannel(outputStream);
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+            return position;
+        }
+    }
+
+    DiskObjectCache.Entry<M> getEntry() {
+        return entry;
+    }
+}
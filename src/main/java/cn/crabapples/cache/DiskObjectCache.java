@@ -0,0 +1,375 @@
+package cn.crabapples.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本地磁盘下载缓存
+ * 以(bucket, 文件名)为键把下载的文件保存在本地目录,总大小超过上限时淘汰最近最少使用的文件;
+ * 校验后revalidateAfter内的命中直接读取本地文件,不访问存储服务,超过后携带ETag发起条件下载(If-None-Match),
+ * 文件未修改时只刷新校验时间。同一文件同时未命中时只下载一次,超过单文件上限的文件不缓存
+ * <p>
+ * 缓存目录应由缓存独占,索引只保存在内存中,启动时清空目录中遗留的缓存文件
+ *
+ * @param <M> 下载响应的元数据类型
+ */
+public class DiskObjectCache<M> {
+    private static final Logger logger = LoggerFactory.getLogger(DiskObjectCache.class);
+    private static final String FILE_PREFIX = "obj-";
+    private static final int GENERATION_STRIPES = 256;
+    private final Path directory;
+    private final long maxBytes;
+    private final long maxObjectBytes;
+    private final long revalidateAfterMillis;
+    /**
+     * 按访问顺序排列,所有访问都需要持有该对象的锁
+     */
+    private final LinkedHashMap<String, Entry<M>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentHashMap<String, CompletableFuture<Entry<M>>> loading = new ConcurrentHashMap<>();
+    /**
+     * 按键的哈希分段,移除文件时递增所在分段,下载期间发生过移除时不缓存下载的文件,
+     * 避免修改文件前下载的内容覆盖移除;只在持有entries的锁时修改和比较
+     */
+    private final long[] generations = new long[GENERATION_STRIPES];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private long currentBytes;
+
+    /**
+     * @param directory       缓存目录
+     * @param maxBytes        缓存文件的总大小上限
+     * @param maxObjectBytes  单个文件的大小上限,更大的文件直接返回下载流
+     * @param revalidateAfter 缓存文件校验后不访问存储服务的时间
+     */
+    public DiskObjectCache(Path directory, long maxBytes, long maxObjectBytes, Duration revalidateAfter) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.maxObjectBytes = Math.min(maxObjectBytes, maxBytes);
+        this.revalidateAfterMillis = revalidateAfter.toMillis();
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*")) {
+                for (Path file : files) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("初始化下载缓存目录失败: " + directory, e);
+        }
+    }
+
+    /**
+     * 获取文件,缓存不可用时调用loader下载
+     *
+     * @param bucket bucket
+     * @param key    文件名
+     * @param loader 下载操作
+     * @return 缓存的文件或下载流,只能读取一次
+     */
+    public CachedObject<M> get(String bucket, String key, ObjectLoader<M> loader) {
+        String cacheKey = bucket + "/" + key;
+        Entry<M> entry = lookup(cacheKey);
+        if (entry != null && System.currentTimeMillis() - entry.validatedAt < revalidateAfterMillis) {
+            CachedObject<M> cached = open(entry);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+            entry = null;
+        }
+        CompletableFuture<Entry<M>> future = new CompletableFuture<>();
+        CompletableFuture<Entry<M>> existing = loading.putIfAbsent(cacheKey, future);
+        if (existing != null) {
+            Entry<M> loaded = join(existing);
+            CachedObject<M> cached = loaded == null ? null : open(loaded);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+            // 文件不能缓存或已被淘汰,由当前线程直接下载
+            misses.increment();
+            return passThrough(loader.load(null));
+        }
+        try {
+            CachedObject<M> result = load(cacheKey, entry, loader);
+            future.complete(result.getEntry());
+            return result;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(cacheKey, future);
+        }
+    }
+
+    /**
+     * 移除文件的缓存,如文件被覆盖或删除后
+     *
+     * @param bucket bucket
+     * @param key    文件名
+     */
+    public void invalidate(String bucket, String key) {
+        String cacheKey = bucket + "/" + key;
+        Entry<M> removed;
+        synchronized (entries) {
+            generations[stripe(cacheKey)]++;
+            removed = entries.remove(cacheKey);
+            if (removed != null) {
+                currentBytes -= removed.size;
+            }
+        }
+        if (removed != null) {
+            delete(removed);
+        }
+    }
+
+    public void clear() {
+        List<Entry<M>> removed;
+        synchronized (entries) {
+            removed = new ArrayList<>(entries.values());
+            entries.clear();
+            for (int i = 0; i < generations.length; i++) {
+                generations[i]++;
+            }
+            currentBytes = 0;
+        }
+        removed.forEach(this::delete);
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * 缓存文件的总大小
+     */
+    public long getBytes() {
+        synchronized (entries) {
+            return currentBytes;
+        }
+    }
+
+    /**
+     * 未访问存储服务的命中次数
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * 条件下载返回未修改的次数
+     */
+    public long getRevalidations() {
+        return revalidations.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private CachedObject<M> load(String cacheKey, Entry<M> stale, ObjectLoader<M> loader) {
+        long generation = generation(cacheKey);
+        ObjectDownload<M> download = loader.load(stale == null ? null : stale.etag);
+        if (download == null) {
+            if (stale == null) {
+                throw new RuntimeException("无条件下载没有返回文件: " + cacheKey);
+            }
+            stale.validatedAt = System.currentTimeMillis();
+            CachedObject<M> cached = open(stale);
+            if (cached != null) {
+                revalidations.increment();
+                return cached;
+            }
+            // 校验期间缓存文件被淘汰,重新下载
+            download = loader.load(null);
+        }
+        misses.increment();
+        if (stale != null) {
+            invalidate(stale);
+        }
+        if (download.getLength() < 0 || download.getLength() > maxObjectBytes) {
+            return passThrough(download);
+        }
+        Path file = directory.resolve(FILE_PREFIX + UUID.randomUUID());
+        long size;
+        try (InputStream body = download.getBody()) {
+            size = Files.copy(body, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            deleteQuietly(file);
+            throw new RuntimeException("写入下载缓存失败: " + cacheKey, e);
+        }
+        Entry<M> entry = new Entry<>(cacheKey, file, download.getMetadata(), download.getEtag(), size);
+        if (!put(entry, generation)) {
+            // 下载期间文件被修改或删除,本次下载的内容只返回给调用方,读取完后不再保留
+            logger.debug("下载期间缓存被移除,不缓存: [{}]", cacheKey);
+            CachedObject<M> cached = open(entry);
+            deleteQuietly(file);
+            if (cached == null) {
+                throw new RuntimeException("读取下载缓存失败: " + cacheKey);
+            }
+            return cached;
+        }
+        CachedObject<M> cached = open(entry);
+        if (cached == null) {
+            throw new RuntimeException("读取下载缓存失败: " + cacheKey);
+        }
+        return cached;
+    }
+
+    private long generation(String cacheKey) {
+        synchronized (entries) {
+            return generations[stripe(cacheKey)];
+        }
+    }
+
+    private static int stripe(String cacheKey) {
+        return (cacheKey.hashCode() & Integer.MAX_VALUE) % GENERATION_STRIPES;
+    }
+
+    private Entry<M> lookup(String cacheKey) {
+        synchronized (entries) {
+            return entries.get(cacheKey);
+        }
+    }
+
+    /**
+     * 打开缓存文件,文件已被淘汰时移除索引并返回null
+     */
+    private CachedObject<M> open(Entry<M> entry) {
+        try {
+            return new CachedObject<>(entry, FileChannel.open(entry.file, StandardOpenOption.READ));
+        } catch (NoSuchFileException e) {
+            invalidate(entry);
+            return null;
+        } catch (IOException e) {
+            throw new RuntimeException("读取下载缓存失败: " + entry.key, e);
+        }
+    }
+
+    private CachedObject<M> passThrough(ObjectDownload<M> download) {
+        return new CachedObject<>(download.getMetadata(), download.getLength(), download.getBody());
+    }
+
+    /**
+     * 写入索引,下载开始后发生过移除时不写入
+     *
+     * @return 是否写入
+     */
+    private boolean put(Entry<M> entry, long generation) {
+        List<Entry<M>> evicted = new ArrayList<>();
+        synchronized (entries) {
+            if (generations[stripe(entry.key)] != generation) {
+                return false;
+            }
+            Entry<M> old = entries.put(entry.key, entry);
+            if (old != null) {
+                currentBytes -= old.size;
+                evicted.add(old);
+            }
+            currentBytes += entry.size;
+            Iterator<Entry<M>> iterator = entries.values().iterator();
+            while (currentBytes > maxBytes && iterator.hasNext()) {
+                Entry<M> eldest = iterator.next();
+                if (eldest == entry) {
+                    break;
+                }
+                iterator.remove();
+                currentBytes -= eldest.size;
+                evicted.add(eldest);
+            }
+        }
+        evicted.forEach(this::delete);
+        return true;
+    }
+
+    /**
+     * 只移除仍然指向该缓存文件的索引
+     */
+    private void invalidate(Entry<M> entry) {
+        boolean removed;
+        synchronized (entries) {
+            removed = entries.remove(entry.key, entry);
+            if (removed) {
+                currentBytes -= entry.size;
+            }
+        }
+        if (removed) {
+            delete(entry);
+        }
+    }
+
+    /**
+     * 正在读取的文件在类Unix系统上删除后仍可读完;删除失败的文件在下次启动时清理
+     */
+    private void delete(Entry<M> entry) {
+        deleteQuietly(entry.file);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.debug("删除下载缓存文件[{}]失败", file, e);
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException("下载文件失败", cause);
+        }
+    }
+
+    static class Entry<M> {
+        private final String key;
+        private final Path file;
+        private final M metadata;
+        private final String etag;
+        private final long size;
+        private volatile long validatedAt = System.currentTimeMillis();
+
+        Entry(String key, Path file, M metadata, String etag, long size) {
+            this.key = key;
+            this.file = file;
+            this.metadata = metadata;
+            this.etag = etag;
+            this.size = size;
+        }
+
+        M getMetadata() {
+            return metadata;
+        }
+
+        long getSize() {
+            return size;
+        }
+    }
+}
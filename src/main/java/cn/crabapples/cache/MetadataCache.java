@@ -0,0 +1,146 @@
+package cn.crabapples.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 文件元数据缓存
+ * 以(bucket, 文件名)为键缓存HEAD结果,文件不存在时缓存较短时间的空结果,避免重复检查不存在的文件;
+ * 超过容量时先清理过期结果,再按最后访问时间从早到晚淘汰
+ *
+ * @param <M> 元数据类型
+ */
+public class MetadataCache<M> {
+    private static final int GENERATION_STRIPES = 256;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+    private final ConcurrentHashMap<String, Entry<M>> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    /**
+     * 按键的哈希分段,移除元数据时递增所在分段,查询期间发生过移除时不缓存查询结果,
+     * 避免写入文件前查到的结果覆盖移除;分段使其他文件的移除不影响缓存
+     */
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    /**
+     * @param maxSize     最多缓存的文件数,不大于0时不缓存
+     * @param ttl         元数据的缓存时间
+     * @param negativeTtl 文件不存在时的缓存时间
+     */
+    public MetadataCache(int maxSize, Duration ttl, Duration negativeTtl) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttl.toMillis();
+        this.negativeTtlMillis = negativeTtl.toMillis();
+    }
+
+    /**
+     * 获取元数据,缓存中没有未过期的结果时调用loader查询
+     *
+     * @param bucket bucket
+     * @param key    文件名
+     * @param loader 查询操作,文件不存在时返回null
+     * @return 元数据,文件不存在时为null
+     */
+    public M get(String bucket, String key, Supplier<M> loader) {
+        if (maxSize <= 0) {
+            return loader.get();
+        }
+        String cacheKey = bucket + "/" + key;
+        long now = System.currentTimeMillis();
+        Entry<M> entry = entries.get(cacheKey);
+        if (entry != null && entry.expiresAt > now) {
+            entry.accessedAt = now;
+            hits.increment();
+            return entry.value;
+        }
+        misses.increment();
+        int stripe = stripe(cacheKey);
+        long generation = generations.get(stripe);
+        M value = loader.get();
+        long loadedAt = System.currentTimeMillis();
+        Entry<M> loaded = new Entry<>(value, loadedAt + (value == null ? negativeTtlMillis : ttlMillis), loadedAt);
+        // 在键的锁内比较分段,移除先递增分段再删除键,比较通过后写入的结果会被随后的删除移除
+        entries.compute(cacheKey, (k, old) -> generations.get(stripe) == generation ? loaded : old);
+        if (entries.size() > maxSize) {
+            evict();
+        }
+        return value;
+    }
+
+    /**
+     * 移除文件的元数据,如文件被上传或删除后
+     *
+     * @param bucket bucket
+     * @param key    文件名
+     */
+    public void invalidate(String bucket, String key) {
+        String cacheKey = bucket + "/" + key;
+        generations.incrementAndGet(stripe(cacheKey));
+        entries.remove(cacheKey);
+    }
+
+    public void clear() {
+        for (int i = 0; i < GENERATION_STRIPES; i++) {
+            generations.incrementAndGet(i);
+        }
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private static int stripe(String cacheKey) {
+        return (cacheKey.hashCode() & Integer.MAX_VALUE) % GENERATION_STRIPES;
+    }
+
+    /**
+     * 先移除过期结果,仍超过容量时淘汰最久未访问的结果,一次腾出十分之一容量以减少淘汰次数
+     */
+    private synchronized void evict() {
+        if (entries.size() <= maxSize) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expiresAt <= now);
+        int excess = entries.size() - maxSize + Math.max(1, maxSize / 10);
+        if (excess <= 0) {
+            return;
+        }
+        List<Map.Entry<String, Entry<M>>> candidates = new ArrayList<>(entries.entrySet());
+        candidates.sort(Comparator.comparingLong(e -> e.getValue().accessedAt));
+        for (int i = 0; i < excess && i < candidates.size(); i++) {
+            Map.Entry<String, Entry<M>> candidate = candidates.get(i);
+            entries.remove(candidate.getKey(), candidate.getValue());
+        }
+    }
+
+    private static class Entry<M> {
+        private final M value;
+        private final long expiresAt;
+        private volatile long accessedAt;
+
+        Entry(M value, long expiresAt, long accessedAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.accessedAt = accessedAt;
+        }
+    }
+}
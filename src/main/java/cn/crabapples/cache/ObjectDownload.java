@@ -0,0 +1,44 @@
+package cn.crabapples.cache;
+
+import java.io.InputStream;
+
+/**
+ * 下载结果
+ *
+ * @param <M> 下载响应的元数据类型
+ */
+public class ObjectDownload<M> {
+    private final M metadata;
+    private final String etag;
+    private final long length;
+    private final InputStream body;
+
+    /**
+     * @param metadata 下载响应
+     * @param etag     文件ETag
+     * @param length   文件大小,未知时为-1
+     * @param body     文件内容
+     */
+    public ObjectDownload(M metadata, String etag, long length, InputStream body) {
+        this.metadata = metadata;
+        this.etag = etag;
+        this.length = length;
+        this.body = body;
+    }
+
+    public M getMetadata() {
+        return metadata;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public InputStream getBody() {
+        return body;
+    }
+}
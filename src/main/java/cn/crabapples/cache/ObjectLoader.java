@@ -0,0 +1,15 @@
+package cn.crabapples.cache;
+
+/**
+ * 缓存未命中或需要校验时的下载操作
+ *
+ * @param <M> 下载响应的元数据类型
+ */
+@FunctionalInterface
+public interface ObjectLoader<M> {
+    /**
+     * @param etag 缓存文件的ETag,不为null时应发起条件下载
+     * @return 下载结果,文件未修改时返回null
+     */
+    ObjectDownload<M> load(String etag);
+}
@@ -0,0 +1,303 @@
+package cn.crabapples.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 堆外小文件缓存
+ * 文件内容保存在直接内存的slab中,slab按2的幂划分为不同大小的槽位,文件放入能容纳它的最小槽位,
+ * slab总大小不超过maxBytes;某个大小的槽位用完且不能再分配slab时,淘汰同一大小中最近最少使用的文件
+ * <p>
+ * 调用方通过{@link CachedBytes}租用只读视图,租约关闭前槽位不会被复用,淘汰或替换正在租用的文件时,
+ * 槽位在最后一个租约关闭后回收。校验后revalidateAfter内的命中不访问存储服务,超过后使用ETag条件下载校验
+ *
+ * @param <M> 下载响应的元数据类型
+ */
+public class OffHeapObjectCache<M> {
+    private static final int MIN_SLOT_SIZE = 256;
+    private static final int MIN_SLAB_SIZE = 1024 * 1024;
+    private static final int GENERATION_STRIPES = 256;
+    private final long maxBytes;
+    private final int maxObjectBytes;
+    private final int slabSize;
+    private final long revalidateAfterMillis;
+    /**
+     * 按访问顺序排列,缓存状态的所有访问都需要持有该对象的锁
+     */
+    private final LinkedHashMap<String, Entry<M>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * 每种槽位大小的空闲槽位
+     */
+    private final List<ArrayDeque<ByteBuffer>> freeSlots;
+    /**
+     * 按键的哈希分段,移除文件时递增所在分段,下载期间发生过移除时不缓存下载的文件,
+     * 避免修改文件前下载的内容覆盖移除;只在持有该对象的锁时修改和比较
+     */
+    private final long[] generations = new long[GENERATION_STRIPES];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private long allocatedBytes;
+
+    /**
+     * @param maxBytes        直接内存上限
+     * @param maxObjectBytes  单个文件的大小上限,更大的文件不缓存
+     * @param revalidateAfter 缓存文件校验后不访问存储服务的时间
+     */
+    public OffHeapObjectCache(long maxBytes, int maxObjectBytes, Duration revalidateAfter) {
+        int largestSlot = Math.max(MIN_SLOT_SIZE, Integer.highestOneBit(Math.max(1, maxObjectBytes - 1)) << 1);
+        this.slabSize = Math.max(MIN_SLAB_SIZE, largestSlot);
+        this.maxBytes = maxBytes;
+        this.maxObjectBytes = maxBytes < slabSize ? 0 : maxObjectBytes;
+        this.revalidateAfterMillis = revalidateAfter.toMillis();
+        int slotClasses = slotClass(largestSlot) + 1;
+        this.freeSlots = new ArrayList<>(slotClasses);
+        for (int i = 0; i < slotClasses; i++) {
+            freeSlots.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * 获取文件,缓存不可用时调用loader下载
+     *
+     * @param bucket bucket
+     * @param key    文件名
+     * @param loader 下载操作
+     * @return 文件内容的租约,使用后需要关闭
+     */
+    public CachedBytes<M> get(String bucket, String key, ObjectLoader<M> loader) {
+        String cacheKey = bucket + "/" + key;
+        Entry<M> stale;
+        long generation;
+        synchronized (this) {
+            generation = generations[stripe(cacheKey)];
+            stale = entries.get(cacheKey);
+            if (stale != null && System.currentTimeMillis() - stale.validatedAt < revalidateAfterMillis) {
+                hits.increment();
+                return lease(stale);
+            }
+        }
+        ObjectDownload<M> download = loader.load(stale == null ? null : stale.etag);
+        if (download == null) {
+            if (stale == null) {
+                throw new RuntimeException("无条件下载没有返回文件: " + cacheKey);
+            }
+            synchronized (this) {
+                if (!stale.removed) {
+                    stale.validatedAt = System.currentTimeMillis();
+                    revalidations.increment();
+                    return lease(stale);
+                }
+            }
+            // 校验期间文件被淘汰,重新下载
+            download = loader.load(null);
+        }
+        misses.increment();
+        long length = download.getLength();
+        if (length < 0 || length > maxObjectBytes) {
+            invalidate(bucket, key);
+            return new CachedBytes<>(download.getMetadata(), ByteBuffer.wrap(readFully(download.getBody(), cacheKey)));
+        }
+        ByteBuffer slot = allocate((int) length);
+        if (slot == null) {
+            invalidate(bucket, key);
+            return new CachedBytes<>(download.getMetadata(), ByteBuffer.wrap(readFully(download.getBody(), cacheKey)));
+        }
+        try {
+            read(download.getBody(), slot, (int) length, cacheKey);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                free(slot);
+            }
+            throw e;
+        }
+        Entry<M> entry = new Entry<>(slot, download.getMetadata(), download.getEtag());
+        synchronized (this) {
+            if (generations[stripe(cacheKey)] != generation) {
+                // 下载期间文件被修改或删除,本次下载的内容只租给调用方,租约关闭后回收槽位
+                entry.removed = true;
+                entry.refs = 0;
+                return lease(entry);
+            }
+            Entry<M> old = entries.put(cacheKey, entry);
+            if (old != null) {
+                remove(old);
+            }
+            return lease(entry);
+        }
+    }
+
+    /**
+     * 移除文件的缓存,如文件被覆盖或删除后
+     *
+     * @param bucket bucket
+     * @param key    文件名
+     */
+    public synchronized void invalidate(String bucket, String key) {
+        String cacheKey = bucket + "/" + key;
+        generations[stripe(cacheKey)]++;
+        Entry<M> removed = entries.remove(cacheKey);
+        if (removed != null) {
+            remove(removed);
+        }
+    }
+
+    public synchronized void clear() {
+        for (Entry<M> entry : entries.values()) {
+            remove(entry);
+        }
+        entries.clear();
+        for (int i = 0; i < generations.length; i++) {
+            generations[i]++;
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * 已分配的直接内存大小
+     */
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * 未访问存储服务的命中次数
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * 条件下载返回未修改的次数
+     */
+    public long getRevalidations() {
+        return revalidations.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private CachedBytes<M> lease(Entry<M> entry) {
+        entry.refs++;
+        ByteBuffer view = entry.slot.asReadOnlyBuffer();
+        view.clear().limit(entry.length);
+        return new CachedBytes<>(entry.metadata, view.slice(), () -> release(entry));
+    }
+
+    private synchronized void release(Entry<M> entry) {
+        if (--entry.refs == 0) {
+            free(entry.slot);
+        }
+    }
+
+    /**
+     * 移除缓存持有的引用,没有租约时立即回收槽位
+     */
+    private void remove(Entry<M> entry) {
+        entry.removed = true;
+        if (--entry.refs == 0) {
+            free(entry.slot);
+        }
+    }
+
+    private void free(ByteBuffer slot) {
+        freeSlots.get(slotClass(slot.capacity())).push(slot);
+    }
+
+    /**
+     * 分配能容纳size字节的最小槽位,依次使用空闲槽位、新的slab、淘汰同一大小的文件
+     */
+    private synchronized ByteBuffer allocate(int size) {
+        int slotSize = Math.max(MIN_SLOT_SIZE, Integer.highestOneBit(Math.max(1, size - 1)) << 1);
+        ArrayDeque<ByteBuffer> free = freeSlots.get(slotClass(slotSize));
+        if (free.isEmpty() && allocatedBytes + slabSize <= maxBytes) {
+            ByteBuffer slab = ByteBuffer.allocateDirect(slabSize);
+            allocatedBytes += slabSize;
+            for (int offset = 0; offset + slotSize <= slabSize; offset += slotSize) {
+                slab.clear().position(offset).limit(offset + slotSize);
+                free.push(slab.slice());
+            }
+        }
+        Iterator<Entry<M>> iterator = entries.values().iterator();
+        while (free.isEmpty() && iterator.hasNext()) {
+            Entry<M> eldest = iterator.next();
+            if (eldest.slot.capacity() == slotSize) {
+                iterator.remove();
+                remove(eldest);
+            }
+        }
+        return free.poll();
+    }
+
+    private static int stripe(String cacheKey) {
+        return (cacheKey.hashCode() & Integer.MAX_VALUE) % GENERATION_STRIPES;
+    }
+
+    private int slotClass(int slotSize) {
+        return Integer.numberOfTrailingZeros(slotSize) - Integer.numberOfTrailingZeros(MIN_SLOT_SIZE);
+    }
+
+    private static void read(InputStream body, ByteBuffer slot, int length, String cacheKey) {
+        slot.clear().limit(length);
+        try (InputStream in = body; ReadableByteChannel channel = Channels.newChannel(in)) {
+            while (slot.hasRemaining() && channel.read(slot) != -1) {
+                // 读满响应声明的大小
+            }
+            if (slot.hasRemaining() || in.read() != -1) {
+                throw new RuntimeException("文件大小与响应不一致: " + cacheKey);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("读取文件失败: " + cacheKey, e);
+        }
+        slot.flip();
+    }
+
+    private static byte[] readFully(InputStream body, String cacheKey) {
+        try (InputStream in = body) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("读取文件失败: " + cacheKey, e);
+        }
+    }
+
+    private static class Entry<M> {
+        private final ByteBuffer slot;
+        private final int length;
+        private final M metadata;
+        private final String etag;
+        private long validatedAt = System.currentTimeMillis();
+        /**
+         * 租约数,加上缓存自身持有的一个引用
+         */
+        private int refs = 1;
+        private boolean removed;
+
+        Entry(ByteBuffer slot, M metadata, String etag) {
+            this.slot = slot;
+            this.length = slot.limit();
+            this.metadata = metadata;
+            this.etag = etag;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package cn.crabapples.limit;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 自适应并发限制(AIMD)
+ * 请求被限流(503 SlowDown、429)、超时或延迟明显升高时按backoffRatio乘性减小并发上限,
+ * 同一批请求只减小一次;请求成功且并发上限被用到一半以上时,每个请求加性增加1/limit,约每轮增加1
+ * <p>
+ * 延迟按操作类型分别统计,HEAD与列表等请求不会被大文件传输拉高;传输了数据的请求耗时取决于大小,
+ * 不参与延迟判断,只在被限流或超时时减小上限
+ * <p>
+ * 超过并发上限的调用方按到达顺序排队,排队数超过maxQueue或等待超过queueTimeout时拒绝
+ */
+public class AdaptiveConcurrencyLimiter {
+    /**
+     * 短期延迟的平滑系数
+     */
+    private static final double SHORT_RTT_WEIGHT = 0.2;
+    /**
+     * 长期延迟的平滑系数
+     */
+    private static final double LONG_RTT_WEIGHT = 0.01;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+    private final int maxQueue;
+    private final long queueTimeoutNanos;
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition available = lock.newCondition();
+    private double limit;
+    private int inflight;
+    private int queued;
+    /**
+     * 各操作类型的延迟
+     */
+    private final Map<String, Rtt> rtts = new HashMap<>();
+    /**
+     * 最近一次减小上限的时间,在此之前开始的请求不再触发减小
+     */
+    private long lastBackoffAt = System.nanoTime();
+
+    /**
+     * @param initialLimit     初始并发上限
+     * @param minLimit         最小并发上限
+     * @param maxLimit         最大并发上限
+     * @param backoffRatio     减小时保留的比例
+     * @param latencyTolerance 短期延迟超过长期延迟的倍数时减小上限,不大于0时不根据延迟调整
+     * @param maxQueue         最多排队的调用方
+     * @param queueTimeout     最长排队时间
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio,
+                                      double latencyTolerance, int maxQueue, Duration queueTimeout) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.maxQueue = maxQueue;
+        this.queueTimeoutNanos = queueTimeout.toNanos();
+    }
+
+    /**
+     * 获取执行许可,没有空闲许可时排队等待
+     *
+     * @return 许可,请求结束后必须调用其中一个结束方法
+     */
+    public Permit acquire() {
+        return acquire("");
+    }
+
+    /**
+     * 获取执行许可,没有空闲许可时排队等待
+     *
+     * @param operation 操作类型,延迟按操作类型分别统计
+     * @return 许可,请求结束后必须调用其中一个结束方法
+     */
+    public Permit acquire(String operation) {
+        lock.lock();
+        try {
+            if (queued == 0 && inflight < capacity()) {
+                inflight++;
+                return new Permit(operation);
+            }
+            if (queued >= maxQueue) {
+                throw new RuntimeException("并发请求过多,排队数已达上限: " + maxQueue);
+            }
+            queued++;
+            try {
+                long nanos = queueTimeoutNanos;
+                while (inflight >= capacity()) {
+                    if (nanos <= 0) {
+                        throw new RuntimeException("等待并发许可超时: " + TimeUnit.NANOSECONDS.toMillis(queueTimeoutNanos) + "ms");
+                    }
+                    nanos = available.awaitNanos(nanos);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("等待并发许可被中断", e);
+            } finally {
+                queued--;
+            }
+            inflight++;
+            return new Permit(operation);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 当前并发上限
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return capacity();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 正在执行的请求数
+     */
+    public int getInflight() {
+        lock.lock();
+        try {
+            return inflight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 排队等待的调用方数
+     */
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int capacity() {
+        return (int) limit;
+    }
+
+    private void release(Permit permit, Outcome outcome, boolean measured) {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            int before = capacity();
+            inflight--;
+            if (outcome == Outcome.DROPPED) {
+                backoff(permit, now);
+            } else if (outcome == Outcome.SUCCESS) {
+                Rtt rtt = measured ? rtts.computeIfAbsent(permit.operation, key -> new Rtt()) : null;
+                if (rtt != null && rtt.update(now - permit.startedAt) && latencyTolerance > 0
+                        && rtt.shortRtt > rtt.longRtt * latencyTolerance) {
+                    if (backoff(permit, now)) {
+                        rtt.shortRtt = rtt.longRtt;
+                    }
+                } else if (inflight + 1 >= limit / 2) {
+                    limit = Math.min(maxLimit, limit + 1 / limit);
+                }
+            }
+            if (capacity() > before) {
+                available.signalAll();
+            } else if (inflight < capacity()) {
+                available.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean backoff(Permit permit, long now) {
+        if (permit.startedAt - lastBackoffAt < 0) {
+            return false;
+        }
+        limit = Math.max(minLimit, limit * backoffRatio);
+        lastBackoffAt = now;
+        return true;
+    }
+
+    private enum Outcome {
+        SUCCESS, DROPPED, IGNORED
+    }
+
+    /**
+     * 一种操作的短期和长期平均延迟
+     */
+    private static class Rtt {
+        private double shortRtt;
+        private double longRtt;
+
+        /**
+         * 记录一次延迟
+         *
+         * @return 是否已有长期延迟可以比较
+         */
+        boolean update(double rtt) {
+            if (longRtt == 0) {
+                shortRtt = rtt;
+                longRtt = rtt;
+                return false;
+            }
+            shortRtt += (rtt - shortRtt) * SHORT_RTT_WEIGHT;
+            longRtt += (rtt - longRtt) * LONG_RTT_WEIGHT;
+            return true;
+        }
+    }
+
+    /**
+     * 执行许可
+     */
+    public class Permit {
+        private final String operation;
+        private final long startedAt = System.nanoTime();
+        private boolean released;
+
+        Permit(String operation) {
+            this.operation = operation == null ? "" : operation;
+        }
+
+        /**
+         * 请求成功,用于增加上限和计算延迟
+         */
+        public void success() {
+            release(Outcome.SUCCESS, true);
+        }
+
+        /**
+         * 请求成功
+         *
+         * @param bytes 传输的字节数,大于0时耗时取决于数据大小,不参与延迟判断
+         */
+        public void success(long bytes) {
+            release(Outcome.SUCCESS, bytes <= 0);
+        }
+
+        /**
+         * 请求被限流或超时,减小上限
+         */
+        public void dropped() {
+            release(Outcome.DROPPED, false);
+        }
+
+        /**
+         * 请求因其他原因失败,不调整上限
+         */
+        public void ignore() {
+            release(Outcome.IGNORED, false);
+        }
+
+        private void release(Outcome outcome, boolean measured) {
+            if (released) {
+                return;
+            }
+            released = true;
+            AdaptiveConcurrencyLimiter.this.release(this, outcome, measured);
+        }
+    }
+}
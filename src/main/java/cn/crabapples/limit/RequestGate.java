@@ -0,0 +1,152 @@
+package cn.crabapples.limit;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * 单个存储请求的并发许可
+ * 分片上传、分段下载、批量删除、并行列表和对冲请求会同时发起多个请求,
+ * 这些组件对每个请求分别获取许可,使并发上限真正限制同时进行的请求数;
+ * 同时按请求的操作类型和bucket获取一次请求速率令牌,使每秒请求数的规则限制实际发出的请求
+ */
+public class RequestGate {
+    private static final RequestGate NONE = new RequestGate(null, null, error -> false);
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final StorageThrottle throttle;
+    private final Predicate<Throwable> throttled;
+
+    /**
+     * @param limiter   并发限制,为null时不限制
+     * @param throttle  请求速率限制,为null时不限制
+     * @param throttled 判断请求是否被限流或超时
+     */
+    public RequestGate(AdaptiveConcurrencyLimiter limiter, StorageThrottle throttle, Predicate<Throwable> throttled) {
+        this.limiter = limiter;
+        this.throttle = throttle;
+        this.throttled = throttled;
+    }
+
+    /**
+     * 不限制并发
+     */
+    public static RequestGate none() {
+        return NONE;
+    }
+
+    /**
+     * 获取一次请求的速率令牌
+     * 用于客户端内部发起的请求,如按需翻页的列表迭代器在取完一页时获取
+     *
+     * @param operation 操作类型
+     * @param bucket    bucket
+     */
+    public void acquireRequest(String operation, String bucket) {
+        if (throttle != null) {
+            throttle.acquireRequest(operation, bucket);
+        }
+    }
+
+    /**
+     * 获取令牌和许可后执行请求
+     *
+     * @param operation 操作类型
+     * @param bucket    bucket
+     * @param request   请求
+     * @param <T>       结果类型
+     * @return 请求结果
+     */
+    public <T> T call(String operation, String bucket, Supplier<T> request) {
+        return call(operation, bucket, null, request);
+    }
+
+    /**
+     * 获取令牌和许可后执行请求
+     *
+     * @param operation 操作类型
+     * @param bucket    bucket
+     * @param bytes     请求传输的字节数,传输了数据的请求不参与延迟判断,可为null
+     * @param request   请求
+     * @param <T>       结果类型
+     * @return 请求结果
+     */
+    public <T> T call(String operation, String bucket, ToLongFunction<? super T> bytes, Supplier<T> request) {
+        acquireRequest(operation, bucket);
+        return call(operation, bytes, true, request);
+    }
+
+    /**
+     * 获取许可后执行调用,成功时不调整并发上限,被限流或超时时仍然减小
+     * 用于无法区分是否真正发起了请求的调用,如客户端内部按需翻页的列表迭代器;
+     * 不获取速率令牌,由调用方在实际发起请求时调用{@link #acquireRequest}
+     *
+     * @param operation 操作类型
+     * @param request   调用
+     * @param <T>       结果类型
+     * @return 调用结果
+     */
+    public <T> T callUnmeasured(String operation, Supplier<T> request) {
+        return call(operation, null, false, request);
+    }
+
+    private <T> T call(String operation, ToLongFunction<? super T> bytes, boolean measured, Supplier<T> request) {
+        if (limiter == null) {
+            return request.get();
+        }
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire(operation);
+        T result;
+        try {
+            result = request.get();
+        } catch (RuntimeException | Error e) {
+            release(permit, e);
+            throw e;
+        }
+        if (measured) {
+            permit.success(bytes == null || result == null ? 0 : bytes.applyAsLong(result));
+        } else {
+            permit.ignore();
+        }
+        return result;
+    }
+
+    /**
+     * 获取令牌和许可后发起异步请求,请求完成时释放许可
+     *
+     * @param operation 操作类型
+     * @param bucket    bucket
+     * @param bytes     请求传输的字节数
+     * @param request   异步请求
+     * @param <T>       结果类型
+     * @return 请求结果
+     */
+    public <T> CompletableFuture<T> callAsync(String operation, String bucket, long bytes, Supplier<CompletableFuture<T>> request) {
+        acquireRequest(operation, bucket);
+        if (limiter == null) {
+            return request.get();
+        }
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire(operation);
+        CompletableFuture<T> future;
+        try {
+            future = request.get();
+        } catch (RuntimeException | Error e) {
+            release(permit, e);
+            throw e;
+        }
+        return future.whenComplete((result, error) -> {
+            if (error == null) {
+                permit.success(bytes);
+            } else {
+                release(permit, error);
+            }
+        });
+    }
+
+    private void release(AdaptiveConcurrencyLimiter.Permit permit, Throwable error) {
+        if (throttled.test(error)) {
+            permit.dropped();
+        } else {
+            permit.ignore();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package cn.crabapples.limit;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * 按bucket和操作类型限制请求速率和传输速率
+ * 每条规则拥有独立的令牌桶,请求匹配的所有规则都要满足;规则的bucket或operation为空时匹配全部
+ */
+public class StorageThrottle {
+    private static final TokenBucket[] NONE = new TokenBucket[0];
+    private final List<Rule> rules = new ArrayList<>();
+    private final ConcurrentHashMap<String, Limits> limits = new ConcurrentHashMap<>();
+
+    /**
+     * 添加限速规则
+     *
+     * @param bucket            bucket,为空时匹配全部
+     * @param operation         操作类型,取值同StorageMetrics中的操作名称,为空时匹配全部
+     * @param requestsPerSecond 每秒请求数,不大于0时不限制
+     * @param bytesPerSecond    每秒传输字节数,不大于0时不限制
+     * @return 当前对象
+     */
+    public StorageThrottle addRule(String bucket, String operation, double requestsPerSecond, long bytesPerSecond) {
+        rules.add(new Rule(bucket, operation,
+                requestsPerSecond > 0 ? new TokenBucket(requestsPerSecond) : null,
+                bytesPerSecond > 0 ? new TokenBucket(bytesPerSecond) : null));
+        limits.clear();
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    /**
+     * 获取一次请求的令牌
+     *
+     * @param operation 操作类型
+     * @param bucket    bucket
+     */
+    public void acquireRequest(String operation, String bucket) {
+        TokenBucket[] buckets = limits(operation, bucket).requests;
+        if (buckets.length > 0) {
+            TokenBucket.acquire(buckets, 1);
+        }
+    }
+
+    /**
+     * 获取传输字节的令牌,用于没有输入流的传输,如字节数组
+     *
+     * @param operation 操作类型
+     * @param bucket    bucket
+     * @param bytes     字节数
+     */
+    public void acquireBytes(String operation, String bucket, long bytes) {
+        TokenBucket[] buckets = limits(operation, bucket).bytes;
+        if (buckets.length > 0 && bytes > 0) {
+            TokenBucket.acquire(buckets, bytes);
+        }
+    }
+
+    /**
+     * 是否限制传输速率
+     *
+     * @param operation 操作类型
+     * @param bucket    bucket
+     */
+    public boolean limitsBytes(String operation, String bucket) {
+        return limits(operation, bucket).bytes.length > 0;
+    }
+
+    /**
+     * 为输入流限速,没有匹配的传输速率规则时返回原输入流
+     *
+     * @param operation   操作类型
+     * @param bucket      bucket
+     * @param inputStream 输入流
+     * @return 限速输入流
+     */
+    public InputStream throttle(String operation, String bucket, InputStream inputStream) {
+        TokenBucket[] buckets = limits(operation, bucket).bytes;
+        return buckets.length == 0 ? inputStream : new ThrottledInputStream(inputStream, buckets);
+    }
+
+    /**
+     * 输入流的限速装饰,用于传输组件内部打开的输入流
+     *
+     * @param operation 操作类型
+     * @param bucket    bucket
+     * @return 限速装饰
+     */
+    public UnaryOperator<InputStream> decorator(String operation, String bucket) {
+        TokenBucket[] buckets = limits(operation, bucket).bytes;
+        return buckets.length == 0 ? UnaryOperator.identity() : in -> new ThrottledInputStream(in, buckets);
+    }
+
+    private Limits limits(String operation, String bucket) {
+        if (rules.isEmpty()) {
+            return Limits.EMPTY;
+        }
+        return limits.computeIfAbsent(operation + "/" + (bucket == null ? "" : bucket), key -> {
+            List<TokenBucket> requests = new ArrayList<>();
+            List<TokenBucket> bytes = new ArrayList<>();
+            for (Rule rule : rules) {
+                if (rule.matches(operation, bucket)) {
+                    if (rule.requests != null) {
+                        requests.add(rule.requests);
+                    }
+                    if (rule.bytes != null) {
+                        bytes.add(rule.bytes);
+                    }
+                }
+            }
+            return new Limits(requests.toArray(NONE), bytes.toArray(NONE));
+        });
+    }
+
+    private static class Rule {
+        private final String bucket;
+        private final String operation;
+        private final TokenBucket requests;
+        private final TokenBucket bytes;
+
+        Rule(String bucket, String operation, TokenBucket requests, TokenBucket bytes) {
+            this.bucket = bucket == null || bucket.isEmpty() ? null : bucket;
+            this.operation = operation == null || operation.isEmpty() ? null : operation;
+            this.requests = requests;
+            this.bytes = bytes;
+        }
+
+        boolean matches(String operation, String bucket) {
+            return (this.operation == null || this.operation.equals(operation))
+                    && (this.bucket == null || this.bucket.equals(bucket));
+        }
+    }
+
+    private static class Limits {
+        private static final Limits EMPTY = new Limits(NONE, NONE);
+        private final TokenBucket[] requests;
+        private final TokenBucket[] bytes;
+
+        Limits(TokenBucket[] requests, TokenBucket[] bytes) {
+            this.requests = requests;
+            this.bytes = bytes;
+        }
+    }
+}
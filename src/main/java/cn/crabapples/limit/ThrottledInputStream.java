@@ -0,0 +1,45 @@
+package cn.crabapples.limit;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 限速输入流
+ * 每次读取后按实际读取的字节数获取令牌,令牌不足时休眠,不会按字节加锁
+ */
+public class ThrottledInputStream extends FilterInputStream {
+    private final TokenBucket[] buckets;
+
+    public ThrottledInputStream(InputStream in, TokenBucket[] buckets) {
+        super(in);
+        this.buckets = buckets;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            TokenBucket.acquire(buckets, 1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read > 0) {
+            TokenBucket.acquire(buckets, read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        if (skipped > 0) {
+            TokenBucket.acquire(buckets, skipped);
+        }
+        return skipped;
+    }
+}
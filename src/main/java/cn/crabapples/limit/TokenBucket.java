@@ -0,0 +1,76 @@
+package cn.crabapples.limit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 令牌桶
+ * 只记录下一个令牌可用的理论时间,获取令牌时通过CAS预留,不加锁;空闲时最多积累一秒的令牌用于突发,
+ * 预留超出可用令牌时调用方休眠到令牌可用为止
+ */
+public class TokenBucket {
+    private static final long BURST_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private final double nanosPerToken;
+    private final AtomicLong theoreticalArrival = new AtomicLong(System.nanoTime());
+
+    /**
+     * @param tokensPerSecond 每秒生成的令牌数
+     */
+    public TokenBucket(double tokensPerSecond) {
+        this.nanosPerToken = TimeUnit.SECONDS.toNanos(1) / tokensPerSecond;
+    }
+
+    /**
+     * 预留令牌
+     *
+     * @param tokens 令牌数
+     * @return 令牌可用前需要等待的纳秒数
+     */
+    public long reserve(long tokens) {
+        long cost = (long) (tokens * nanosPerToken);
+        while (true) {
+            long now = System.nanoTime();
+            long current = theoreticalArrival.get();
+            long next = Math.max(current, now) + cost;
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                return Math.max(0, next - now - BURST_NANOS);
+            }
+        }
+    }
+
+    /**
+     * 获取令牌,不足时休眠
+     *
+     * @param tokens 令牌数
+     */
+    public void acquire(long tokens) {
+        sleep(reserve(tokens));
+    }
+
+    /**
+     * 同时从多个令牌桶获取令牌,休眠时间取最长的一个
+     *
+     * @param buckets 令牌桶
+     * @param tokens  令牌数
+     */
+    public static void acquire(TokenBucket[] buckets, long tokens) {
+        long wait = 0;
+        for (TokenBucket bucket : buckets) {
+            wait = Math.max(wait, bucket.reserve(tokens));
+        }
+        sleep(wait);
+    }
+
+    private static void sleep(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        while (nanos > 0) {
+            LockSupport.parkNanos(nanos);
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("等待限速令牌被中断");
+            }
+            nanos = deadline - System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package cn.crabapples.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于Micrometer的存储操作指标
+ * <ul>
+ *     <li>storage.requests: 操作耗时(含P50/P95/P99和直方图),按结果成功/失败区分</li>
+ *     <li>storage.bytes: 传输字节数</li>
+ *     <li>storage.throughput: 单次操作的传输速率(字节/秒)</li>
+ *     <li>storage.inflight: 正在执行的操作数</li>
+ *     <li>storage.errors: 失败次数,按异常类型区分</li>
+ * </ul>
+ * 所有指标都带有backend、operation、bucket标签
+ */
+public class MicrometerStorageMetrics implements StorageMetrics {
+    private static final String NONE = "none";
+    private final MeterRegistry registry;
+    private final ConcurrentHashMap<MeterKey, Meters> meters = new ConcurrentHashMap<>();
+
+    public MicrometerStorageMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Sample start(String backend, String operation, String bucket) {
+        MeterKey key = new MeterKey(backend, operation, bucket == null ? NONE : bucket);
+        Meters operationMeters = meters.computeIfAbsent(key, Meters::new);
+        operationMeters.inflight.incrementAndGet();
+        long start = System.nanoTime();
+        return new Sample() {
+            @Override
+            public void success(long bytes) {
+                long nanos = System.nanoTime() - start;
+                operationMeters.inflight.decrementAndGet();
+                operationMeters.success.record(nanos, TimeUnit.NANOSECONDS);
+                if (bytes > 0) {
+                    operationMeters.bytes.increment(bytes);
+                    if (nanos > 0) {
+                        operationMeters.throughput.record(bytes * 1_000_000_000D / nanos);
+                    }
+                }
+            }
+
+            @Override
+            public void failure(Throwable error) {
+                operationMeters.inflight.decrementAndGet();
+                operationMeters.failure.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                Counter.builder("storage.errors")
+                        .description("存储操作失败次数")
+                        .tags(operationMeters.tags)
+                        .tag("exception", error.getClass().getSimpleName())
+                        .register(registry)
+                        .increment();
+            }
+        };
+    }
+
+    /**
+     * 同一(backend, operation, bucket)的指标只注册一次
+     */
+    private class Meters {
+        private final Tags tags;
+        private final Timer success;
+        private final Timer failure;
+        private final Counter bytes;
+        private final DistributionSummary throughput;
+        private final AtomicInteger inflight = new AtomicInteger();
+
+        Meters(MeterKey key) {
+            this.tags = Tags.of("backend", key.backend, "operation", key.operation, "bucket", key.bucket);
+            this.success = timer("success");
+            this.failure = timer("error");
+            this.bytes = Counter.builder("storage.bytes")
+                    .description("存储操作传输的字节数")
+                    .baseUnit("bytes")
+                    .tags(tags)
+                    .register(registry);
+            this.throughput = DistributionSummary.builder("storage.throughput")
+                    .description("单次存储操作的传输速率")
+                    .baseUnit("bytes/s")
+                    .tags(tags)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(registry);
+            Gauge.builder("storage.inflight", inflight, AtomicInteger::get)
+                    .description("正在执行的存储操作数")
+                    .tags(tags)
+                    .register(registry);
+        }
+
+        private Timer timer(String outcome) {
+            return Timer.builder("storage.requests")
+                    .description("存储操作耗时")
+                    .tags(tags)
+                    .tag("outcome", outcome)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+    }
+
+    private static class MeterKey {
+        private final String backend;
+        private final String operation;
+        private final String bucket;
+
+        MeterKey(String backend, String operation, String bucket) {
+            this.backend = backend;
+            this.operation = operation;
+            this.bucket = bucket;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MeterKey)) {
+                return false;
+            }
+            MeterKey other = (MeterKey) o;
+            return backend.equals(other.backend) && operation.equals(other.operation) && bucket.equals(other.bucket);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(backend, operation, bucket);
+        }
+    }
+}
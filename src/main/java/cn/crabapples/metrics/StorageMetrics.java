@@ -0,0 +1,61 @@
+package cn.crabapples.metrics;
+
+/**
+ * 存储操作指标
+ * 服务在每次操作开始时调用start,结束时通过返回的Sample记录结果;
+ * 未引入Micrometer或容器中没有MeterRegistry时使用NOOP
+ */
+public interface StorageMetrics {
+    String UPLOAD = "upload";
+    String DOWNLOAD = "download";
+    String LIST = "list";
+    String DELETE = "delete";
+    String PRESIGN = "presign";
+    String MULTIPART_CREATE = "multipart.create";
+    String MULTIPART_PART = "multipart.part";
+    String MULTIPART_COMPLETE = "multipart.complete";
+    String MULTIPART_ABORT = "multipart.abort";
+    String BUCKET = "bucket";
+    String STAT = "stat";
+
+    StorageMetrics NOOP = (backend, operation, bucket) -> Sample.NOOP;
+
+    /**
+     * 开始记录一次操作
+     *
+     * @param backend   存储类型,如s3、minio
+     * @param operation 操作名称
+     * @param bucket    bucket,与bucket无关的操作为null
+     * @return 本次操作的记录
+     */
+    Sample start(String backend, String operation, String bucket);
+
+    /**
+     * 一次操作的记录,success和failure只能调用其中一个且只调用一次
+     */
+    interface Sample {
+        Sample NOOP = new Sample() {
+            @Override
+            public void success(long bytes) {
+            }
+
+            @Override
+            public void failure(Throwable error) {
+            }
+        };
+
+        /**
+         * 操作成功
+         *
+         * @param bytes 传输的字节数,未知或没有数据传输时为0
+         */
+        void success(long bytes);
+
+        /**
+         * 操作失败
+         *
+         * @param error 异常
+         */
+        void failure(Throwable error);
+    }
+}
@@ -2,12 +2,33 @@ package cn.crabapples.minio.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 @ConfigurationProperties(prefix = "crabapples.upload.minio")
 public class MinioConfigProperties {
     private String accessKey;
     private String secretKey;
     private String bucketName;
     private String url;
+    /**
+     * 批量生成临时下载链接时签名使用的区域,需与MinIO服务端配置一致
+     */
+    private String region = "us-east-1";
+    private final Multipart multipart = new Multipart();
+    private final Buffer buffer = new Buffer();
+    private final Listing listing = new Listing();
+    private final Delete delete = new Delete();
+    private final Presign presign = new Presign();
+    private final Http http = new Http();
+    private final Cache cache = new Cache();
+    private final Stat stat = new Stat();
+    private final Limit limit = new Limit();
+    private final Throttle throttle = new Throttle();
+    private final Directory directory = new Directory();
+    private final Resume resume = new Resume();
+    private final Checksum checksum = new Checksum();
 
     public String getAccessKey() {
         return accessKey;
@@ -40,5 +61,688 @@ public class MinioConfigProperties {
     public void setUrl(String url) {
         this.url = url;
     }
-}
 
+    public String getRegion() {
+        return region;
+    }
+
+    public void setRegion(String region) {
+        this.region = region;
+    }
+
+    public Multipart getMultipart() {
+        return multipart;
+    }
+
+    public Buffer getBuffer() {
+        return buffer;
+    }
+
+    public Listing getListing() {
+        return listing;
+    }
+
+    public Delete getDelete() {
+        return delete;
+    }
+
+    public Presign getPresign() {
+        return presign;
+    }
+
+    public Http getHttp() {
+        return http;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Stat getStat() {
+        return stat;
+    }
+
+    public Limit getLimit() {
+        return limit;
+    }
+
+    public Throttle getThrottle() {
+        return throttle;
+    }
+
+    public Directory getDirectory() {
+        return directory;
+    }
+
+    public Resume getResume() {
+        return resume;
+    }
+
+    public Checksum getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * 分片上传配置
+     */
+    public static class Multipart {
+        /**
+         * 分片大小(字节),MinIO要求除最后一个分片外不小于5MB
+         */
+        private int partSize = 8 * 1024 * 1024;
+        /**
+         * 同时上传的分片数,同时也是分片缓冲区池的容量
+         */
+        private int parallelism = 4;
+
+        public int getPartSize() {
+            return partSize;
+        }
+
+        public void setPartSize(int partSize) {
+            this.partSize = partSize;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+    }
+
+    /**
+     * 下载复制缓冲区配置
+     */
+    public static class Buffer {
+        /**
+         * 缓冲区大小(字节)
+         */
+        private int size = 64 * 1024;
+        /**
+         * 缓冲区池容量
+         */
+        private int poolSize = 16;
+        /**
+         * 是否使用堆外缓冲区
+         */
+        private boolean direct = false;
+
+        public int getSize() {
+            return size;
+        }
+
+        public void setSize(int size) {
+            this.size = size;
+        }
+
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        public void setPoolSize(int poolSize) {
+            this.poolSize = poolSize;
+        }
+
+        public boolean isDirect() {
+            return direct;
+        }
+
+        public void setDirect(boolean direct) {
+            this.direct = direct;
+        }
+    }
+
+    /**
+     * 文件列表配置
+     */
+    public static class Listing {
+        /**
+         * 并行列表时单个列表同时列出的前缀数
+         */
+        private int concurrency = 8;
+        /**
+         * 并行列表时每个分区缓冲的文件数
+         */
+        private int queueCapacity = 1000;
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+    /**
+     * 批量删除配置
+     */
+    public static class Delete {
+        /**
+         * 每个删除请求包含的文件数,MinIO单个请求最多1000
+         */
+        private int batchSize = 1000;
+        /**
+         * 同时执行的删除请求数
+         */
+        private int parallelism = 4;
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+    }
+
+    /**
+     * 预签名地址配置
+     */
+    public static class Presign {
+        /**
+         * 缓存的下载地址数,为0时不缓存
+         */
+        private int cacheSize = 10000;
+        /**
+         * 返回缓存地址时剩余有效期占有效期的最小比例
+         */
+        private double minRemainingRatio = 0.5;
+        /**
+         * 批量生成地址时并行签名的线程数
+         */
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+
+        public int getCacheSize() {
+            return cacheSize;
+        }
+
+        public void setCacheSize(int cacheSize) {
+            this.cacheSize = cacheSize;
+        }
+
+        public double getMinRemainingRatio() {
+            return minRemainingRatio;
+        }
+
+        public void setMinRemainingRatio(double minRemainingRatio) {
+            this.minRemainingRatio = minRemainingRatio;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+    }
+
+    /**
+     * HTTP客户端配置
+     */
+    public static class Http {
+        /**
+         * 连接池保留的空闲连接数
+         */
+        private int maxIdleConnections = 32;
+        /**
+         * 空闲连接的保留时间
+         */
+        private Duration keepAlive = Duration.ofMinutes(5);
+        /**
+         * 同时执行的请求数
+         */
+        private int maxRequests = 128;
+        /**
+         * 同一主机同时执行的请求数,OkHttp默认为5,会限制并行传输
+         */
+        private int maxRequestsPerHost = 64;
+        /**
+         * 建立连接的超时时间
+         */
+        private Duration connectTimeout = Duration.ofMinutes(5);
+        /**
+         * 读取数据的超时时间
+         */
+        private Duration readTimeout = Duration.ofMinutes(5);
+        /**
+         * 写入数据的超时时间
+         */
+        private Duration writeTimeout = Duration.ofMinutes(5);
+        /**
+         * 是否启用HTTP/2,仅在https地址上通过ALPN协商,服务端不支持时使用HTTP/1.1
+         */
+        private boolean http2 = false;
+
+        public int getMaxIdleConnections() {
+            return maxIdleConnections;
+        }
+
+        public void setMaxIdleConnections(int maxIdleConnections) {
+            this.maxIdleConnections = maxIdleConnections;
+        }
+
+        public Duration getKeepAlive() {
+            return keepAlive;
+        }
+
+        public void setKeepAlive(Duration keepAlive) {
+            this.keepAlive = keepAlive;
+        }
+
+        public int getMaxRequests() {
+            return maxRequests;
+        }
+
+        public void setMaxRequests(int maxRequests) {
+            this.maxRequests = maxRequests;
+        }
+
+        public int getMaxRequestsPerHost() {
+            return maxRequestsPerHost;
+        }
+
+        public void setMaxRequestsPerHost(int maxRequestsPerHost) {
+            this.maxRequestsPerHost = maxRequestsPerHost;
+        }
+
+        public Duration getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public void setConnectTimeout(Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        public Duration getReadTimeout() {
+            return readTimeout;
+        }
+
+        public void setReadTimeout(Duration readTimeout) {
+            this.readTimeout = readTimeout;
+        }
+
+        public Duration getWriteTimeout() {
+            return writeTimeout;
+        }
+
+        public void setWriteTimeout(Duration writeTimeout) {
+            this.writeTimeout = writeTimeout;
+        }
+
+        public boolean isHttp2() {
+            return http2;
+        }
+
+        public void setHttp2(boolean http2) {
+            this.http2 = http2;
+        }
+    }
+
+    /**
+     * 本地磁盘下载缓存配置
+     */
+    public static class Cache {
+        /**
+         * 是否启用
+         */
+        private boolean enabled = false;
+        /**
+         * 缓存目录,由缓存独占,启动时会清空其中的缓存文件
+         */
+        private String directory = System.getProperty("java.io.tmpdir") + "/crabapples-minio-cache";
+        /**
+         * 缓存文件的总大小上限(字节)
+         */
+        private long maxSize = 1024L * 1024 * 1024;
+        /**
+         * 单个文件的大小上限(字节),更大的文件不缓存
+         */
+        private long maxObjectSize = 64L * 1024 * 1024;
+        /**
+         * 缓存文件校验后不访问存储服务的时间,超过后使用ETag条件下载校验
+         */
+        private Duration revalidateAfter = Duration.ofMinutes(1);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public long getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(long maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public long getMaxObjectSize() {
+            return maxObjectSize;
+        }
+
+        public void setMaxObjectSize(long maxObjectSize) {
+            this.maxObjectSize = maxObjectSize;
+        }
+
+        public Duration getRevalidateAfter() {
+            return revalidateAfter;
+        }
+
+        public void setRevalidateAfter(Duration revalidateAfter) {
+            this.revalidateAfter = revalidateAfter;
+        }
+    }
+
+    /**
+     * 文件元数据缓存配置
+     */
+    public static class Stat {
+        /**
+         * 缓存的文件数,为0时不缓存
+         */
+        private int cacheSize = 10000;
+        /**
+         * 元数据的缓存时间
+         */
+        private Duration ttl = Duration.ofSeconds(30);
+        /**
+         * 文件不存在时的缓存时间
+         */
+        private Duration negativeTtl = Duration.ofSeconds(5);
+
+        public int getCacheSize() {
+            return cacheSize;
+        }
+
+        public void setCacheSize(int cacheSize) {
+            this.cacheSize = cacheSize;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public Duration getNegativeTtl() {
+            return negativeTtl;
+        }
+
+        public void setNegativeTtl(Duration negativeTtl) {
+            this.negativeTtl = negativeTtl;
+        }
+    }
+
+    /**
+     * 自适应并发限制配置
+     */
+    public static class Limit {
+        /**
+         * 是否启用
+         */
+        private boolean enabled = false;
+        /**
+         * 初始并发上限
+         */
+        private int initialLimit = 32;
+        /**
+         * 最小并发上限
+         */
+        private int minLimit = 1;
+        /**
+         * 最大并发上限
+         */
+        private int maxLimit = 256;
+        /**
+         * 被限流时并发上限保留的比例
+         */
+        private double backoffRatio = 0.7;
+        /**
+         * 短期平均延迟超过长期平均延迟的倍数时减小并发上限,为0时不根据延迟调整
+         */
+        private double latencyTolerance = 2.0;
+        /**
+         * 最多排队的调用方,超过时直接拒绝
+         */
+        private int maxQueue = 1000;
+        /**
+         * 最长排队时间,超过时拒绝
+         */
+        private Duration queueTimeout = Duration.ofSeconds(30);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getInitialLimit() {
+            return initialLimit;
+        }
+
+        public void setInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+        }
+
+        public int getMinLimit() {
+            return minLimit;
+        }
+
+        public void setMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+        }
+
+        public int getMaxLimit() {
+            return maxLimit;
+        }
+
+        public void setMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+        }
+
+        public double getBackoffRatio() {
+            return backoffRatio;
+        }
+
+        public void setBackoffRatio(double backoffRatio) {
+            this.backoffRatio = backoffRatio;
+        }
+
+        public double getLatencyTolerance() {
+            return latencyTolerance;
+        }
+
+        public void setLatencyTolerance(double latencyTolerance) {
+            this.latencyTolerance = latencyTolerance;
+        }
+
+        public int getMaxQueue() {
+            return maxQueue;
+        }
+
+        public void setMaxQueue(int maxQueue) {
+            this.maxQueue = maxQueue;
+        }
+
+        public Duration getQueueTimeout() {
+            return queueTimeout;
+        }
+
+        public void setQueueTimeout(Duration queueTimeout) {
+            this.queueTimeout = queueTimeout;
+        }
+    }
+
+    /**
+     * 请求速率和传输速率限制配置
+     */
+    public static class Throttle {
+        /**
+         * 限速规则,请求匹配的所有规则都要满足
+         */
+        private List<Rule> rules = new ArrayList<>();
+
+        public List<Rule> getRules() {
+            return rules;
+        }
+
+        public void setRules(List<Rule> rules) {
+            this.rules = rules;
+        }
+
+        /**
+         * 限速规则
+         */
+        public static class Rule {
+            /**
+             * bucket,为空时匹配全部
+             */
+            private String bucket;
+            /**
+             * 操作类型(upload、download、multipart.part等,同指标的operation标签),为空时匹配全部
+             */
+            private String operation;
+            /**
+             * 每秒请求数,为0时不限制
+             */
+            private double requestsPerSecond;
+            /**
+             * 每秒传输字节数,为0时不限制
+             */
+            private long bytesPerSecond;
+
+            public String getBucket() {
+                return bucket;
+            }
+
+            public void setBucket(String bucket) {
+                this.bucket = bucket;
+            }
+
+            public String getOperation() {
+                return operation;
+            }
+
+            public void setOperation(String operation) {
+                this.operation = operation;
+            }
+
+            public double getRequestsPerSecond() {
+                return requestsPerSecond;
+            }
+
+            public void setRequestsPerSecond(double requestsPerSecond) {
+                this.requestsPerSecond = requestsPerSecond;
+            }
+
+            public long getBytesPerSecond() {
+                return bytesPerSecond;
+            }
+
+            public void setBytesPerSecond(long bytesPerSecond) {
+                this.bytesPerSecond = bytesPerSecond;
+            }
+        }
+    }
+
+    /**
+     * 目录传输配置
+     */
+    public static class Directory {
+        /**
+         * 同时传输的文件数
+         */
+        private int parallelism = 16;
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+    }
+
+    /**
+     * 续传下载配置
+     */
+    public static class Resume {
+        /**
+         * 没有取得进展时的最大重试次数,每次重试从已写入的位置继续
+         */
+        private int maxRetries = 5;
+        /**
+         * 重试间隔,按连续失败次数递增
+         */
+        private Duration retryDelay = Duration.ofSeconds(1);
+
+        public int getMaxRetries() {
+            return maxRetries;
+        }
+
+        public void setMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+        }
+
+        public Duration getRetryDelay() {
+            return retryDelay;
+        }
+
+        public void setRetryDelay(Duration retryDelay) {
+            this.retryDelay = retryDelay;
+        }
+    }
+
+    /**
+     * 端到端CRC32C校验配置
+     */
+    public static class Checksum {
+        /**
+         * 是否在上传时携带CRC32C由服务端校验,下载时边读取边计算CRC32C并与服务端的校验和比较
+         */
+        private boolean enabled = false;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+}
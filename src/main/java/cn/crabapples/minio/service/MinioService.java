@@ -1,21 +1,62 @@
 package cn.crabapples.minio.service;
 
+import cn.crabapples.cache.DiskObjectCache;
+import cn.crabapples.cache.MetadataCache;
+import cn.crabapples.limit.AdaptiveConcurrencyLimiter;
 import cn.crabapples.minio.config.MinioConfigProperties;
+import cn.crabapples.utils.DirectoryTransferResult;
+import cn.crabapples.utils.PresignedUrlCache;
+import cn.crabapples.utils.StreamCopier;
 import io.minio.GetObjectResponse;
 import io.minio.MinioClient;
 import io.minio.ObjectWriteResponse;
+import io.minio.StatObjectResponse;
 import io.minio.messages.Bucket;
+import io.minio.messages.DeleteError;
+import io.minio.messages.Item;
+import okhttp3.Headers;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 public interface MinioService {
     MinioConfigProperties getConfig();
 
     MinioClient getClient();
 
+    /**
+     * 下载使用的流复制管道,可用于查看累计复制速率
+     *
+     * @return 流复制管道
+     */
+    StreamCopier getStreamCopier();
+
+    /**
+     * 自适应并发限制,可用于查看当前并发上限和排队数
+     *
+     * @return 并发限制,未启用时为null
+     */
+    AdaptiveConcurrencyLimiter getConcurrencyLimiter();
+
+    /**
+     * 下载地址缓存,可用于查看命中次数
+     *
+     * @return 预签名地址缓存
+     */
+    PresignedUrlCache<String> getPresignedUrlCache();
+
+    /**
+     * 本地磁盘下载缓存,可用于查看命中次数
+     *
+     * @return 下载缓存,未启用时为null
+     */
+    DiskObjectCache<Headers> getDownloadCache();
+
     /**
      * 列出bucket
      *
@@ -68,6 +109,7 @@ public interface MinioService {
 
     /**
      * 上传文件
+     * 输入流长度未知,按分片流式上传,读取完毕后关闭输入流
      *
      * @param fileName    文件名
      * @param inputStream 输入流
@@ -77,6 +119,7 @@ public interface MinioService {
 
     /**
      * 上传文件
+     * 输入流长度未知,按分片流式上传,读取完毕后关闭输入流
      *
      * @param bucket      bucket
      * @param fileName    文件名
@@ -85,6 +128,27 @@ public interface MinioService {
      */
     ObjectWriteResponse uploadFile(String bucket, String fileName, InputStream inputStream);
 
+    /**
+     * 上传已知长度的输入流,读取完毕后关闭输入流
+     *
+     * @param fileName    文件名
+     * @param inputStream 输入流
+     * @param size        数据长度
+     * @return 上传文件响应对象
+     */
+    ObjectWriteResponse uploadFile(String fileName, InputStream inputStream, long size);
+
+    /**
+     * 上传已知长度的输入流,读取完毕后关闭输入流
+     *
+     * @param bucket      bucket
+     * @param fileName    文件名
+     * @param inputStream 输入流
+     * @param size        数据长度
+     * @return 上传文件响应对象
+     */
+    ObjectWriteResponse uploadFile(String bucket, String fileName, InputStream inputStream, long size);
+
     /**
      * 下载文件
      *
@@ -94,7 +158,7 @@ public interface MinioService {
     void downloadAsStream(String fileName, OutputStream outputStream);
 
     /**
-     * 下载文件
+     * 下载文件,启用下载缓存时优先读取本地缓存
      *
      * @param bucket       bucket
      * @param fileName     文件名
@@ -111,7 +175,7 @@ public interface MinioService {
     GetObjectResponse downloadFile(String fileName);
 
     /**
-     * 下载文件
+     * 下载文件,启用下载缓存时优先读取本地缓存
      *
      * @param bucket   bucket
      * @param fileName 文件名
@@ -119,6 +183,65 @@ public interface MinioService {
      */
     GetObjectResponse downloadFile(String bucket, String fileName);
 
+    /**
+     * 可续传下载文件,连接中断后从已写入的位置继续下载,并校验文件在下载期间未被修改
+     * 下载内容先写入"文件保存路径.part",完成后重命名;失败后再次下载同一文件时从断点继续
+     *
+     * @param fileName 文件名称
+     * @param path     文件保存路径
+     * @return 本次下载第一个响应的响应头
+     */
+    Headers resumableDownloadFile(String fileName, String path);
+
+    /**
+     * 可续传下载文件,连接中断后从已写入的位置继续下载,并校验文件在下载期间未被修改
+     * 下载内容先写入"文件保存路径.part",完成后重命名;失败后再次下载同一文件时从断点继续
+     *
+     * @param bucket   bucket
+     * @param fileName 文件名称
+     * @param path     文件保存路径
+     * @return 本次下载第一个响应的响应头
+     */
+    Headers resumableDownloadFile(String bucket, String fileName, String path);
+
+    /**
+     * 并行上传目录下的所有文件,文件名称为前缀加上相对目录的路径,大文件使用分片上传
+     *
+     * @param prefix    文件名称前缀,可为null
+     * @param directory 本地目录
+     * @return 上传结果,包含失败的文件
+     */
+    DirectoryTransferResult uploadDirectory(String prefix, String directory);
+
+    /**
+     * 并行上传目录下的所有文件,文件名称为前缀加上相对目录的路径,大文件使用分片上传
+     *
+     * @param bucket    bucket
+     * @param prefix    文件名称前缀,可为null
+     * @param directory 本地目录
+     * @return 上传结果,包含失败的文件
+     */
+    DirectoryTransferResult uploadDirectory(String bucket, String prefix, String directory);
+
+    /**
+     * 并行下载前缀下的所有文件到本地目录,本地路径为目录加上文件名称去掉前缀后的部分
+     *
+     * @param prefix    文件名称前缀,可为null
+     * @param directory 本地目录
+     * @return 下载结果,包含失败的文件
+     */
+    DirectoryTransferResult downloadDirectory(String prefix, String directory);
+
+    /**
+     * 并行下载前缀下的所有文件到本地目录,本地路径为目录加上文件名称去掉前缀后的部分
+     *
+     * @param bucket    bucket
+     * @param prefix    文件名称前缀,可为null
+     * @param directory 本地目录
+     * @return 下载结果,包含失败的文件
+     */
+    DirectoryTransferResult downloadDirectory(String bucket, String prefix, String directory);
+
     /**
      * 创建临时下载链接
      *
@@ -148,6 +271,7 @@ public interface MinioService {
 
     /**
      * 创建临时下载链接
+     * 相同文件和有效期的链接在剩余有效期足够时直接从缓存返回
      *
      * @param bucket   bucket
      * @param fileName 文件名
@@ -157,6 +281,29 @@ public interface MinioService {
      */
     String createTempDownloadUrl(String bucket, String fileName, int time, TimeUnit unit);
 
+    /**
+     * 批量创建临时下载链接
+     * 同一批次共用签名时间和签名密钥,文件较多时并行签名
+     *
+     * @param fileNames 文件名
+     * @param time      时间
+     * @param unit      时间单位
+     * @return 文件名与下载链接,顺序与输入一致
+     */
+    Map<String, String> createTempDownloadUrls(Collection<String> fileNames, int time, TimeUnit unit);
+
+    /**
+     * 批量创建临时下载链接
+     * 同一批次共用签名时间和签名密钥,文件较多时并行签名
+     *
+     * @param bucket    bucket
+     * @param fileNames 文件名
+     * @param time      时间
+     * @param unit      时间单位
+     * @return 文件名与下载链接,顺序与输入一致
+     */
+    Map<String, String> createTempDownloadUrls(String bucket, Collection<String> fileNames, int time, TimeUnit unit);
+
     /**
      * 删除文件
      *
@@ -172,27 +319,132 @@ public interface MinioService {
      */
     void remove(String bucket, String fileName);
 
+    /**
+     * 查询文件元数据(大小、ETag、类型、修改时间),启用元数据缓存时优先读取缓存
+     *
+     * @param fileName 文件名称
+     * @return 文件元数据,文件不存在时为null
+     */
+    StatObjectResponse statObject(String fileName);
+
+    /**
+     * 查询文件元数据(大小、ETag、类型、修改时间),启用元数据缓存时优先读取缓存
+     *
+     * @param bucket   bucket
+     * @param fileName 文件名称
+     * @return 文件元数据,文件不存在时为null
+     */
+    StatObjectResponse statObject(String bucket, String fileName);
+
+    /**
+     * 文件是否存在,启用元数据缓存时优先读取缓存
+     *
+     * @param fileName 文件名称
+     * @return 是否存在
+     */
+    boolean exists(String fileName);
+
+    /**
+     * 文件是否存在,启用元数据缓存时优先读取缓存
+     *
+     * @param bucket   bucket
+     * @param fileName 文件名称
+     * @return 是否存在
+     */
+    boolean exists(String bucket, String fileName);
+
+    /**
+     * 文件元数据缓存,可用于查看命中次数
+     *
+     * @return 元数据缓存
+     */
+    MetadataCache<StatObjectResponse> getMetadataCache();
+
+    /**
+     * 批量删除文件
+     * 文件名按需从迭代器取出,每批使用一次RemoveObjects请求,多个批次并行执行
+     *
+     * @param fileNames 文件名
+     * @return 删除失败的文件
+     */
+    List<DeleteError> removeFiles(Iterable<String> fileNames);
+
+    /**
+     * 批量删除文件
+     * 文件名按需从迭代器取出,每批使用一次RemoveObjects请求,多个批次并行执行
+     *
+     * @param bucket    bucket
+     * @param fileNames 文件名
+     * @return 删除失败的文件
+     */
+    List<DeleteError> removeFiles(String bucket, Iterable<String> fileNames);
+
+    /**
+     * 删除指定前缀下的所有文件,边列出边删除
+     *
+     * @param prefix 文件名前缀,不能为空
+     * @return 删除失败的文件
+     */
+    List<DeleteError> removeByPrefix(String prefix);
+
+    /**
+     * 删除指定前缀下的所有文件,边列出边删除
+     *
+     * @param bucket bucket
+     * @param prefix 文件名前缀,不能为空
+     * @return 删除失败的文件
+     */
+    List<DeleteError> removeByPrefix(String bucket, String prefix);
+
+    /**
+     * 创建原生分片上传
+     * 使用返回的uploadId调用multipartUpload时分片直接作为该上传的分片写入,
+     * mergeMultipart只需一次合并请求,不再复制分片数据;除最后一个分片外每个分片不能小于5MB。
+     * uploadId带有前缀和文件名,服务重启或在其他节点上仍可继续上传、合并和取消
+     *
+     * @param fileName 文件名
+     * @return uploadId
+     */
+    String createMultipartUploadId(String fileName);
+
+    /**
+     * 创建原生分片上传
+     * 使用返回的uploadId调用multipartUpload时分片直接作为该上传的分片写入,
+     * mergeMultipart只需一次合并请求,不再复制分片数据;除最后一个分片外每个分片不能小于5MB。
+     * uploadId带有前缀和文件名,服务重启或在其他节点上仍可继续上传、合并和取消
+     *
+     * @param bucket   bucket
+     * @param fileName 文件名
+     * @return uploadId
+     */
+    String createMultipartUploadId(String bucket, String fileName);
+
     /**
      * 分片上传
+     * uploadId由createMultipartUploadId创建时作为原生分片上传(分片序号为index + 1),
+     * 不带原生分片上传前缀的uploadId作为临时分片文件上传
      *
      * @param data     文件数据
      * @param uploadId uploadId
-     * @param index    分片索引
+     * @param index    分片索引,从0开始
      */
     void multipartUpload(byte[] data, String uploadId, int index);
 
     /**
      * 分片上传
+     * uploadId由createMultipartUploadId创建时作为原生分片上传(分片序号为index + 1),
+     * 不带原生分片上传前缀的uploadId作为临时分片文件上传
      *
      * @param bucket   bucket
      * @param data     文件数据
      * @param uploadId uploadId
-     * @param index    分片索引
+     * @param index    分片索引,从0开始
      */
     void multipartUpload(String bucket, byte[] data, String uploadId, int index);
 
     /**
      * 合并分片
+     * 原生分片上传按分片序号完成合并,临时分片文件按分片索引合并后删除
      *
      * @param fileName 文件名
      * @param uploadId uploadId
@@ -201,10 +453,47 @@ public interface MinioService {
 
     /**
      * 合并分片
+     * 原生分片上传按分片序号完成合并,临时分片文件按分片索引合并后删除
      *
      * @param bucket   bucket
      * @param fileName 文件名
      * @param uploadId uploadId
      */
     void mergeMultipart(String bucket, String fileName, String uploadId);
+
+    /**
+     * 取消原生分片上传
+     *
+     * @param uploadId uploadId
+     */
+    void abortMultipart(String uploadId);
+
+    /**
+     * 取消原生分片上传
+     *
+     * @param bucket   bucket
+     * @param uploadId uploadId
+     */
+    void abortMultipart(String bucket, String uploadId);
+
+    /**
+     * 按公共前缀分区并行列出文件,使用完毕后应关闭流
+     *
+     * @param prefix    文件名前缀,可为null
+     * @param delimiter 发现分区使用的分隔符,为null时使用"/"
+     * @param ordered   是否按文件名顺序输出,无序时先列出的先输出
+     * @return 文件流
+     */
+    Stream<Item> listFilesInParallel(String prefix, String delimiter, boolean ordered);
+
+    /**
+     * 按公共前缀分区并行列出文件,使用完毕后应关闭流
+     *
+     * @param bucket    bucket
+     * @param prefix    文件名前缀,可为null
+     * @param delimiter 发现分区使用的分隔符,为null时使用"/"
+     * @param ordered   是否按文件名顺序输出,无序时先列出的先输出
+     * @return 文件流
+     */
+    Stream<Item> listFilesInParallel(String bucket, String prefix, String delimiter, boolean ordered);
 }
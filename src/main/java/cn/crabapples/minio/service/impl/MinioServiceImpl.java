@@ -1,30 +1,105 @@
 package cn.crabapples.minio.service.impl;
 
+import cn.crabapples.cache.CachedObject;
+import cn.crabapples.cache.DiskObjectCache;
+import cn.crabapples.cache.MetadataCache;
+import cn.crabapples.cache.ObjectDownload;
+import cn.crabapples.limit.AdaptiveConcurrencyLimiter;
+import cn.crabapples.limit.RequestGate;
+import cn.crabapples.limit.StorageThrottle;
+import cn.crabapples.metrics.StorageMetrics;
 import cn.crabapples.minio.config.MinioConfigProperties;
 import cn.crabapples.minio.service.MinioService;
+import cn.crabapples.minio.transfer.MinioChecksums;
+import cn.crabapples.minio.transfer.MinioMultipartClient;
+import cn.crabapples.minio.transfer.MinioObjectLister;
+import cn.crabapples.minio.transfer.MinioStreamUploader;
+import cn.crabapples.utils.BatchExecutor;
+import cn.crabapples.utils.CountingInputStream;
+import cn.crabapples.utils.DirectoryTransfer;
+import cn.crabapples.utils.DirectoryTransferResult;
+import cn.crabapples.utils.MultipartRegistry;
+import cn.crabapples.utils.NamedThreadFactory;
+import cn.crabapples.utils.PresignedUrlCache;
+import cn.crabapples.utils.QueryStringPresigner;
+import cn.crabapples.utils.ResumableDownloader;
+import cn.crabapples.utils.StreamCopier;
 import io.minio.*;
+import io.minio.errors.ErrorResponseException;
+import io.minio.errors.ServerException;
+import io.minio.http.HttpUtils;
 import io.minio.http.Method;
 import io.minio.messages.Bucket;
 import io.minio.messages.DeleteError;
 import io.minio.messages.DeleteObject;
 import io.minio.messages.Item;
+import io.minio.messages.Part;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Headers;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 @Component
 public class MinioServiceImpl implements MinioService {
     private static final Logger logger = LoggerFactory.getLogger(MinioServiceImpl.class);
+    private static final String CHUNK_SUFFIX = ".chunk";
+    private static final String BACKEND = "minio";
     private final MinioConfigProperties config;
+    private final MultipartRegistry<Part> multipartRegistry = new MultipartRegistry<>();
+    private OkHttpClient httpClient;
     private MinioClient minioClient;
+    private MinioMultipartClient multipartClient;
+    private MinioStreamUploader streamUploader;
+    private StreamCopier streamCopier;
+    private ExecutorService listExecutor;
+    private MinioObjectLister objectLister;
+    private BatchExecutor deleteExecutor;
+    private DirectoryTransfer directoryTransfer;
+    private ResumableDownloader resumableDownloader;
+    private PresignedUrlCache<String> presignedUrlCache;
+    private QueryStringPresigner batchPresigner;
+    private DiskObjectCache<Headers> downloadCache;
+    private MetadataCache<StatObjectResponse> metadataCache;
+    private StorageMetrics storageMetrics = StorageMetrics.NOOP;
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private RequestGate gate;
+    private final StorageThrottle throttle = new StorageThrottle();
 
     @Override
     public MinioConfigProperties getConfig() {
@@ -36,17 +111,136 @@ public class MinioServiceImpl implements MinioService {
         return minioClient;
     }
 
+    @Override
+    public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    @Override
+    public StreamCopier getStreamCopier() {
+        return streamCopier;
+    }
+
+    @Override
+    public PresignedUrlCache<String> getPresignedUrlCache() {
+        return presignedUrlCache;
+    }
+
+    @Override
+    public DiskObjectCache<Headers> getDownloadCache() {
+        return downloadCache;
+    }
+
+    @Override
+    public MetadataCache<StatObjectResponse> getMetadataCache() {
+        return metadataCache;
+    }
+
     public MinioServiceImpl(MinioConfigProperties config) {
         this.config = config;
     }
 
+    /**
+     * 设置存储操作指标,容器中存在StorageMetrics时自动注入
+     *
+     * @param storageMetrics 存储操作指标
+     */
+    @Autowired(required = false)
+    public void setStorageMetrics(StorageMetrics storageMetrics) {
+        this.storageMetrics = storageMetrics;
+    }
+
 
     @PostConstruct
     public void init() {
+        this.httpClient = createHttpClient();
         this.minioClient = MinioClient.builder()
                 .endpoint(config.getUrl())
                 .credentials(config.getAccessKey(), config.getSecretKey())
+                .httpClient(httpClient)
                 .build();
+        this.multipartClient = new MinioMultipartClient(MinioAsyncClient.builder()
+                .endpoint(config.getUrl())
+                .credentials(config.getAccessKey(), config.getSecretKey())
+                .httpClient(httpClient)
+                .build());
+        MinioConfigProperties.Limit limit = config.getLimit();
+        if (limit.isEnabled()) {
+            this.concurrencyLimiter = new AdaptiveConcurrencyLimiter(limit.getInitialLimit(), limit.getMinLimit(), limit.getMaxLimit(),
+                    limit.getBackoffRatio(), limit.getLatencyTolerance(), limit.getMaxQueue(), limit.getQueueTimeout());
+        }
+        this.gate = new RequestGate(concurrencyLimiter, throttle, MinioServiceImpl::isThrottled);
+        MinioConfigProperties.Multipart multipart = config.getMultipart();
+        this.streamUploader = new MinioStreamUploader(multipartClient, multipart.getPartSize(), multipart.getParallelism(),
+                config.getChecksum().isEnabled(), gate);
+        MinioConfigProperties.Buffer buffer = config.getBuffer();
+        this.streamCopier = new StreamCopier(buffer.getSize(), buffer.getPoolSize(), buffer.isDirect());
+        MinioConfigProperties.Listing listing = config.getListing();
+        ThreadPoolExecutor listPool = new ThreadPoolExecutor(listing.getConcurrency(), listing.getConcurrency(), 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new NamedThreadFactory("minio-list"));
+        listPool.allowCoreThreadTimeOut(true);
+        this.listExecutor = listPool;
+        this.objectLister = new MinioObjectLister(minioClient, listExecutor, listing.getConcurrency(), listing.getQueueCapacity(), gate);
+        MinioConfigProperties.Delete delete = config.getDelete();
+        this.deleteExecutor = new BatchExecutor("minio-delete", delete.getBatchSize(), delete.getParallelism());
+        this.directoryTransfer = new DirectoryTransfer("minio-directory", config.getDirectory().getParallelism());
+        MinioConfigProperties.Resume resume = config.getResume();
+        this.resumableDownloader = new ResumableDownloader(resume.getMaxRetries(), resume.getRetryDelay());
+        MinioConfigProperties.Presign presign = config.getPresign();
+        this.presignedUrlCache = new PresignedUrlCache<>(presign.getCacheSize(), presign.getMinRemainingRatio());
+        this.batchPresigner = new QueryStringPresigner(config.getUrl(), config.getAccessKey(), config.getSecretKey(),
+                config.getRegion(), presign.getParallelism());
+        for (MinioConfigProperties.Throttle.Rule rule : config.getThrottle().getRules()) {
+            throttle.addRule(rule.getBucket(), rule.getOperation(), rule.getRequestsPerSecond(), rule.getBytesPerSecond());
+        }
+        MinioConfigProperties.Stat stat = config.getStat();
+        this.metadataCache = new MetadataCache<>(stat.getCacheSize(), stat.getTtl(), stat.getNegativeTtl());
+        MinioConfigProperties.Cache cache = config.getCache();
+        if (cache.isEnabled()) {
+            this.downloadCache = new DiskObjectCache<>(Paths.get(cache.getDirectory()), cache.getMaxSize(),
+                    cache.getMaxObjectSize(), cache.getRevalidateAfter());
+        }
+    }
+
+    /**
+     * 同步和异步客户端共用的OkHttpClient
+     * 以Minio默认客户端为基础(保留证书等设置),调整连接池、调度器并发数、超时时间和协议
+     */
+    private OkHttpClient createHttpClient() {
+        MinioConfigProperties.Http http = config.getHttp();
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(http.getMaxRequests());
+        dispatcher.setMaxRequestsPerHost(http.getMaxRequestsPerHost());
+        OkHttpClient.Builder builder = HttpUtils.newDefaultHttpClient(
+                        http.getConnectTimeout().toMillis(), http.getWriteTimeout().toMillis(), http.getReadTimeout().toMillis())
+                .newBuilder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(http.getMaxIdleConnections(), http.getKeepAlive().toMillis(), TimeUnit.MILLISECONDS));
+        if (http.isHttp2()) {
+            builder.protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+        }
+        return builder.build();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        logger.info("关闭Minio服务");
+        if (listExecutor != null) {
+            listExecutor.shutdownNow();
+        }
+        if (deleteExecutor != null) {
+            deleteExecutor.shutdown();
+        }
+        if (directoryTransfer != null) {
+            directoryTransfer.shutdown();
+        }
+        if (batchPresigner != null) {
+            batchPresigner.shutdown();
+        }
+        if (httpClient != null) {
+            httpClient.dispatcher().executorService().shutdown();
+            httpClient.connectionPool().evictAll();
+        }
     }
 
     public MinioClient getMinioClient() {
@@ -55,11 +249,13 @@ public class MinioServiceImpl implements MinioService {
 
     @Override
     public List<Bucket> listBuckets() {
-        try {
-            return minioClient.listBuckets();
-        } catch (Exception e) {
-            throw new RuntimeException("Bucket 获取失败", e);
-        }
+        return execute(StorageMetrics.BUCKET, null, () -> {
+            try {
+                return minioClient.listBuckets();
+            } catch (Exception e) {
+                throw new RuntimeException("Bucket 获取失败", e);
+            }
+        });
     }
 
     @Override
@@ -69,11 +265,13 @@ public class MinioServiceImpl implements MinioService {
 
     @Override
     public void createBucket(String bucket) {
-        try {
-            minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucket).build());
-        } catch (Exception e) {
-            throw new RuntimeException("Bucket 创建失败", e);
-        }
+        run(StorageMetrics.BUCKET, bucket, () -> {
+            try {
+                minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucket).build());
+            } catch (Exception e) {
+                throw new RuntimeException("Bucket 创建失败", e);
+            }
+        });
     }
 
     @Override
@@ -83,11 +281,13 @@ public class MinioServiceImpl implements MinioService {
 
     @Override
     public void removeBucket(String bucket) {
-        try {
-            minioClient.removeBucket(RemoveBucketArgs.builder().bucket(bucket).build());
-        } catch (Exception e) {
-            throw new RuntimeException("Bucket 删除失败", e);
-        }
+        run(StorageMetrics.BUCKET, bucket, () -> {
+            try {
+                minioClient.removeBucket(RemoveBucketArgs.builder().bucket(bucket).build());
+            } catch (Exception e) {
+                throw new RuntimeException("Bucket 删除失败", e);
+            }
+        });
     }
 
     @Override
@@ -98,18 +298,31 @@ public class MinioServiceImpl implements MinioService {
     @Override
     public ObjectWriteResponse uploadFile(String bucket, String fileName, String path) {
         logger.debug("开始上传文件到Minio:[{}]", fileName);
-        try {
-            UploadObjectArgs args = UploadObjectArgs.builder()
-                    .bucket(bucket)
-                    .object(fileName)
-                    .filename(path)
-                    .build();
-            ObjectWriteResponse objectWriteResponse = minioClient.uploadObject(args);
-            return objectWriteResponse;
-        } catch (Exception e) {
-            logger.error("文件上传失败", e);
-            throw new RuntimeException(e);
+        if (throttle.limitsBytes(StorageMetrics.UPLOAD, bucket)) {
+            // 限制传输速率时通过限速输入流上传
+            try {
+                Path file = Paths.get(path);
+                return uploadFile(bucket, fileName, Files.newInputStream(file), Files.size(file));
+            } catch (IOException e) {
+                throw new RuntimeException("读取上传文件失败", e);
+            }
         }
+        ObjectWriteResponse result = execute(StorageMetrics.UPLOAD, bucket, response -> new File(path).length(), () -> {
+            try {
+                UploadObjectArgs args = UploadObjectArgs.builder()
+                        .bucket(bucket)
+                        .object(fileName)
+                        .filename(path)
+                        .build();
+                ObjectWriteResponse objectWriteResponse = minioClient.uploadObject(args);
+                return objectWriteResponse;
+            } catch (Exception e) {
+                logger.error("文件上传失败", e);
+                throw new RuntimeException(e);
+            }
+        });
+        invalidateCache(bucket, fileName);
+        return result;
     }
 
 
@@ -120,19 +333,41 @@ public class MinioServiceImpl implements MinioService {
 
     @Override
     public ObjectWriteResponse uploadFile(String bucket, String fileName, InputStream inputStream) {
+        logger.debug("开始流式上传文件到Minio:[{}]", fileName);
+        CountingInputStream counting = new CountingInputStream(throttle.throttle(StorageMetrics.UPLOAD, bucket, inputStream));
+        ObjectWriteResponse result = executeFanOut(StorageMetrics.UPLOAD, bucket, response -> counting.getCount(), () -> {
+            try (InputStream stream = counting) {
+                return streamUploader.upload(bucket, fileName, stream);
+            } catch (IOException e) {
+                throw new RuntimeException("文件上传失败", e);
+            }
+        });
+        invalidateCache(bucket, fileName);
+        return result;
+    }
+
+    @Override
+    public ObjectWriteResponse uploadFile(String fileName, InputStream inputStream, long size) {
+        return uploadFile(config.getBucketName(), fileName, inputStream, size);
+    }
+
+    @Override
+    public ObjectWriteResponse uploadFile(String bucket, String fileName, InputStream inputStream, long size) {
         logger.debug("开始上传文件到Minio:[{}]", fileName);
-        try {
-            PutObjectArgs args = PutObjectArgs.builder()
-                    .bucket(bucket)
-                    .object(fileName)
-                    .stream(inputStream, inputStream.available(), -1)
-                    .build();
-            ObjectWriteResponse objectWriteResponse = minioClient.putObject(args);
-            inputStream.close();
-            return objectWriteResponse;
-        } catch (Exception e) {
-            throw new RuntimeException("文件上传失败", e);
-        }
+        ObjectWriteResponse result = execute(StorageMetrics.UPLOAD, bucket, response -> size, () -> {
+            try (InputStream stream = throttle.throttle(StorageMetrics.UPLOAD, bucket, inputStream)) {
+                PutObjectArgs args = PutObjectArgs.builder()
+                        .bucket(bucket)
+                        .object(fileName)
+                        .stream(stream, size, -1)
+                        .build();
+                return minioClient.putObject(args);
+            } catch (Exception e) {
+                throw new RuntimeException("文件上传失败", e);
+            }
+        });
+        invalidateCache(bucket, fileName);
+        return result;
     }
 
     @Override
@@ -143,19 +378,27 @@ public class MinioServiceImpl implements MinioService {
     @Override
     public void downloadAsStream(String bucket, String fileName, OutputStream outputStream) {
         logger.debug("开始从Minio下载文件:[{}]", fileName);
-        try (BufferedOutputStream stream = new BufferedOutputStream(outputStream)) {
-            GetObjectResponse object = downloadFile(bucket, fileName);
-            byte[] data = new byte[1024];
-            for (int i = object.read(data); i != -1; i = object.read(data)) {
-                stream.write(data, 0, i);
+        if (downloadCache != null) {
+            try (OutputStream stream = outputStream) {
+                long bytes = downloadCache.get(bucket, fileName, etag -> loadObject(bucket, fileName, etag)).transferTo(stream);
+                logger.debug("从Minio下载文件[{}]完成,大小:[{}]", fileName, bytes);
+            } catch (IOException e) {
+                logger.error("从Minio下载文件[{}]失败", fileName, e);
+                throw new RuntimeException(e);
             }
-            stream.flush();
-            object.close();
-            logger.debug("从Minio下载文件[{}]完成", fileName);
-        } catch (Exception e) {
-            logger.error("从Minio下载文件[{}]失败", fileName, e);
-            throw new RuntimeException(e);
+            return;
         }
+        execute(StorageMetrics.DOWNLOAD, bucket, StreamCopier.CopyStats::getBytes, () -> {
+            try (OutputStream stream = outputStream;
+                 GetObjectResponse object = getObject(bucket, fileName)) {
+                StreamCopier.CopyStats stats = streamCopier.copy(throttle.throttle(StorageMetrics.DOWNLOAD, bucket, object), stream);
+                logger.debug("从Minio下载文件[{}]完成,大小:[{}],速率:[{}]B/s", fileName, stats.getBytes(), stats.getBytesPerSecond());
+                return stats;
+            } catch (Exception e) {
+                logger.error("从Minio下载文件[{}]失败", fileName, e);
+                throw new RuntimeException(e);
+            }
+        });
     }
 
     @Override
@@ -166,17 +409,177 @@ public class MinioServiceImpl implements MinioService {
     @Override
     public GetObjectResponse downloadFile(String bucket, String fileName) {
         logger.debug("开始从Minio下载文件:[{}]", fileName);
+        if (downloadCache == null) {
+            return execute(StorageMetrics.DOWNLOAD, bucket, MinioServiceImpl::contentLength, () -> {
+                GetObjectResponse response = getObject(bucket, fileName);
+                if (!throttle.limitsBytes(StorageMetrics.DOWNLOAD, bucket)) {
+                    return response;
+                }
+                return new GetObjectResponse(response.headers(), bucket, config.getRegion(), fileName,
+                        throttle.throttle(StorageMetrics.DOWNLOAD, bucket, response));
+            });
+        }
+        CachedObject<Headers> object = downloadCache.get(bucket, fileName, etag -> loadObject(bucket, fileName, etag));
+        return new GetObjectResponse(object.getMetadata(), bucket, config.getRegion(), fileName, object.getInputStream());
+    }
+
+    @Override
+    public Headers resumableDownloadFile(String fileName, String path) {
+        return resumableDownloadFile(config.getBucketName(), fileName, path);
+    }
+
+    @Override
+    public Headers resumableDownloadFile(String bucket, String fileName, String path) {
+        logger.debug("开始从Minio续传下载文件:[{}]", fileName);
+        return execute(StorageMetrics.DOWNLOAD, bucket, headers -> parseLength(headers.get("Content-Length")),
+                () -> resumableDownloader.download((offset, eTag) -> {
+                    GetObjectArgs.Builder args = GetObjectArgs.builder()
+                            .bucket(bucket)
+                            .object(fileName);
+                    if (offset > 0) {
+                        args.offset(offset);
+                    }
+                    if (eTag != null) {
+                        args.matchETag(eTag);
+                    }
+                    try {
+                        GetObjectResponse response = minioClient.getObject(args.build());
+                        Headers headers = response.headers();
+                        long contentLength = parseLength(headers.get("Content-Length"));
+                        long totalLength = ResumableDownloader.RangeResponse.totalLength(headers.get("Content-Range"), contentLength);
+                        // 返回的响应头和字节数指标描述整个文件,而不是最后一次Range请求
+                        Headers.Builder whole = headers.newBuilder().removeAll("Content-Range");
+                        if (totalLength >= 0) {
+                            whole.set("Content-Length", String.valueOf(totalLength));
+                        }
+                        return ResumableDownloader.RangeResponse.of(whole.build(), headers.get("ETag"), headers.get("Content-Range"),
+                                contentLength, throttle.throttle(StorageMetrics.DOWNLOAD, bucket, response));
+                    } catch (ErrorResponseException e) {
+                        int code = e.response().code();
+                        if (code == 412 || code == 416) {
+                            throw new ResumableDownloader.ObjectChangedException("文件已修改: " + fileName, e);
+                        }
+                        throw new RuntimeException(e);
+                    } catch (Exception e) {
+                        logger.error("从Minio下载文件[{}]失败", fileName, e);
+                        throw new RuntimeException(e);
+                    }
+                }, Paths.get(path)));
+    }
+
+    @Override
+    public DirectoryTransferResult uploadDirectory(String prefix, String directory) {
+        return uploadDirectory(config.getBucketName(), prefix, directory);
+    }
+
+    @Override
+    public DirectoryTransferResult uploadDirectory(String bucket, String prefix, String directory) {
+        logger.debug("开始上传目录到Minio:[{}],前缀:[{}]", directory, prefix);
+        int partSize = config.getMultipart().getPartSize();
+        DirectoryTransferResult result = directoryTransfer.upload(Paths.get(directory), prefix, (attrs, key, file) -> {
+            if (attrs.size() > partSize) {
+                uploadFile(bucket, key, Files.newInputStream(file));
+            } else {
+                uploadFile(bucket, key, file.toString());
+            }
+            return attrs.size();
+        });
+        logger.debug("上传目录到Minio:[{}]完成,成功:[{}],失败:[{}]", directory, result.getSucceeded(), result.getFailures().size());
+        return result;
+    }
+
+    @Override
+    public DirectoryTransferResult downloadDirectory(String prefix, String directory) {
+        return downloadDirectory(config.getBucketName(), prefix, directory);
+    }
+
+    @Override
+    public DirectoryTransferResult downloadDirectory(String bucket, String prefix, String directory) {
+        logger.debug("开始从Minio下载目录:[{}],前缀:[{}]", directory, prefix);
+        Iterator<Item> items = executeFanOut(StorageMetrics.LIST, bucket, null, () ->
+                objectLister.iterator(bucket, DirectoryTransfer.normalizePrefix(prefix), true, null));
+        DirectoryTransferResult result = directoryTransfer.download(items, Item::objectName, prefix, Paths.get(directory), (item, key, file) -> {
+            try (GetObjectResponse object = downloadFile(bucket, key)) {
+                Files.copy(object, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return item.size();
+        });
+        logger.debug("从Minio下载目录:[{}]完成,成功:[{}],失败:[{}]", directory, result.getSucceeded(), result.getFailures().size());
+        return result;
+    }
+
+    /**
+     * 下载缓存的下载操作,携带ETag时文件未修改返回null
+     * 只有缓存未命中或需要重新验证时才访问存储,命中缓存不经过限流、并发限制和指标
+     */
+    private ObjectDownload<Headers> loadObject(String bucket, String fileName, String etag) {
+        return execute(StorageMetrics.DOWNLOAD, bucket, download -> Math.max(0, download.getLength()),
+                () -> requestObject(bucket, fileName, etag));
+    }
+
+    private ObjectDownload<Headers> requestObject(String bucket, String fileName, String etag) {
+        GetObjectArgs.Builder args = GetObjectArgs.builder()
+                .bucket(bucket)
+                .object(fileName);
+        if (etag != null) {
+            args.notMatchETag(etag);
+        }
+        if (config.getChecksum().isEnabled()) {
+            args.extraHeaders(MinioChecksums.checksumMode());
+        }
         try {
-            GetObjectArgs args = GetObjectArgs.builder()
+            GetObjectResponse response = minioClient.getObject(args.build());
+            String length = response.headers().get("Content-Length");
+            InputStream body = throttle.throttle(StorageMetrics.DOWNLOAD, bucket, verify(response, fileName));
+            return new ObjectDownload<>(response.headers(), response.headers().get("ETag"),
+                    length == null ? -1 : Long.parseLong(length), body);
+        } catch (ServerException e) {
+            if (e.statusCode() == 304) {
+                return null;
+            }
+            throw new RuntimeException(e);
+        } catch (Exception e) {
+            logger.error("从Minio下载文件[{}]失败", fileName, e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 通过本服务修改或删除文件后移除缓存
+     */
+    private void invalidateCache(String bucket, String fileName) {
+        if (downloadCache != null) {
+            downloadCache.invalidate(bucket, fileName);
+        }
+        metadataCache.invalidate(bucket, fileName);
+    }
+
+    /**
+     * 获取下载流,启用校验和时读取过程中计算CRC32C,读到末尾时与服务端的校验和不一致则抛出IOException
+     */
+    private GetObjectResponse getObject(String bucket, String fileName) {
+        try {
+            GetObjectArgs.Builder args = GetObjectArgs.builder()
                     .bucket(bucket)
-                    .object(fileName).build();
-            return minioClient.getObject(args);
+                    .object(fileName);
+            if (!config.getChecksum().isEnabled()) {
+                return minioClient.getObject(args.build());
+            }
+            GetObjectResponse response = minioClient.getObject(args.extraHeaders(MinioChecksums.checksumMode()).build());
+            return new GetObjectResponse(response.headers(), bucket, config.getRegion(), fileName, verify(response, fileName));
         } catch (Exception e) {
             logger.error("从Minio下载文件[{}]失败", fileName, e);
             throw new RuntimeException(e);
         }
     }
 
+    private InputStream verify(GetObjectResponse response, String fileName) {
+        if (!config.getChecksum().isEnabled()) {
+            return response;
+        }
+        return MinioChecksums.verify(response.headers(), response, fileName);
+    }
+
     @Override
     public String createTempDownloadUrl(String fileName) {
         return createTempDownloadUrl(fileName, 30, TimeUnit.MINUTES);
@@ -194,6 +597,10 @@ public class MinioServiceImpl implements MinioService {
 
     @Override
     public String createTempDownloadUrl(String bucket, String fileName, int time, TimeUnit unit) {
+        return execute(StorageMetrics.PRESIGN, bucket, () -> presign(bucket, fileName, time, unit));
+    }
+
+    private String presign(String bucket, String fileName, int time, TimeUnit unit) {
         try {
             logger.debug("开始从Minio获取文件分享连接:[{}]", fileName);
             GetPresignedObjectUrlArgs args = GetPresignedObjectUrlArgs.builder()
@@ -202,7 +609,14 @@ public class MinioServiceImpl implements MinioService {
                     .method(Method.GET)
                     .expiry(time, unit)
                     .build();
-            String shareUrl = minioClient.getPresignedObjectUrl(args);
+            Duration duration = Duration.ofMillis(unit.toMillis(time));
+            String shareUrl = presignedUrlCache.get(bucket, fileName, Method.GET.name(), duration, () -> {
+                try {
+                    return minioClient.getPresignedObjectUrl(args);
+                } catch (Exception e) {
+                    throw new RuntimeException("文件分享失败", e);
+                }
+            });
             logger.debug("从Minio获取文件分享连接:[{}]完成,分享地址为:[{}]", fileName, shareUrl);
             return shareUrl;
         } catch (Exception e) {
@@ -210,6 +624,18 @@ public class MinioServiceImpl implements MinioService {
         }
     }
 
+    @Override
+    public Map<String, String> createTempDownloadUrls(Collection<String> fileNames, int time, TimeUnit unit) {
+        return createTempDownloadUrls(config.getBucketName(), fileNames, time, unit);
+    }
+
+    @Override
+    public Map<String, String> createTempDownloadUrls(String bucket, Collection<String> fileNames, int time, TimeUnit unit) {
+        logger.debug("开始从Minio批量获取文件分享连接:[{}],数量:[{}]", bucket, fileNames.size());
+        return execute(StorageMetrics.PRESIGN, bucket, () ->
+                batchPresigner.presignGet(bucket, fileNames, Duration.ofMillis(unit.toMillis(time))));
+    }
+
     @Override
     public void remove(String fileName) {
         remove(config.getBucketName(), fileName);
@@ -217,16 +643,140 @@ public class MinioServiceImpl implements MinioService {
 
     @Override
     public void remove(String bucket, String fileName) {
-        try {
-            logger.debug("开始从Minio删除文件:[{}]", fileName);
-            RemoveObjectArgs args = RemoveObjectArgs.builder()
-                    .bucket(bucket)
-                    .object(fileName).build();
-            minioClient.removeObject(args);
-            logger.debug("从Minio删除文件:[{}]完成", fileName);
-        } catch (Exception e) {
-            throw new RuntimeException("文件分享失败", e);
+        run(StorageMetrics.DELETE, bucket, () -> {
+            try {
+                logger.debug("开始从Minio删除文件:[{}]", fileName);
+                RemoveObjectArgs args = RemoveObjectArgs.builder()
+                        .bucket(bucket)
+                        .object(fileName).build();
+                minioClient.removeObject(args);
+                logger.debug("从Minio删除文件:[{}]完成", fileName);
+            } catch (Exception e) {
+                throw new RuntimeException("文件删除失败", e);
+            }
+        });
+        invalidateCache(bucket, fileName);
+    }
+
+    @Override
+    public StatObjectResponse statObject(String fileName) {
+        return statObject(config.getBucketName(), fileName);
+    }
+
+    @Override
+    public StatObjectResponse statObject(String bucket, String fileName) {
+        return metadataCache.get(bucket, fileName, () -> execute(StorageMetrics.STAT, bucket, () -> {
+            try {
+                return minioClient.statObject(StatObjectArgs.builder()
+                        .bucket(bucket)
+                        .object(fileName)
+                        .build());
+            } catch (ErrorResponseException e) {
+                if (e.response().code() == 404) {
+                    return null;
+                }
+                throw new RuntimeException("查询文件信息失败", e);
+            } catch (Exception e) {
+                throw new RuntimeException("查询文件信息失败", e);
+            }
+        }));
+    }
+
+    @Override
+    public boolean exists(String fileName) {
+        return exists(config.getBucketName(), fileName);
+    }
+
+    @Override
+    public boolean exists(String bucket, String fileName) {
+        return statObject(bucket, fileName) != null;
+    }
+
+    @Override
+    public List<DeleteError> removeFiles(Iterable<String> fileNames) {
+        return removeFiles(config.getBucketName(), fileNames);
+    }
+
+    @Override
+    public List<DeleteError> removeFiles(String bucket, Iterable<String> fileNames) {
+        logger.debug("开始从Minio批量删除文件:[{}]", bucket);
+        return executeFanOut(StorageMetrics.DELETE, bucket, null, () -> removeBatches(bucket, fileNames.iterator(), name -> name));
+    }
+
+    @Override
+    public List<DeleteError> removeByPrefix(String prefix) {
+        return removeByPrefix(config.getBucketName(), prefix);
+    }
+
+    @Override
+    public List<DeleteError> removeByPrefix(String bucket, String prefix) {
+        if (prefix == null || prefix.isEmpty()) {
+            throw new RuntimeException("删除前缀不能为空");
         }
+        logger.debug("开始从Minio删除前缀下的文件:[{}],前缀:[{}]", bucket, prefix);
+        return executeFanOut(StorageMetrics.DELETE, bucket, null, () ->
+                removeBatches(bucket, objectLister.iterator(bucket, prefix, true, null), Item::objectName));
+    }
+
+    private <T> List<DeleteError> removeBatches(String bucket, Iterator<T> items, Function<T, String> name) {
+        List<DeleteError> errors = deleteExecutor.execute(items, batch -> {
+            List<String> names = batch.stream()
+                    .map(name)
+                    .collect(Collectors.toList());
+            List<DeleteObject> objects = names.stream()
+                    .map(DeleteObject::new)
+                    .collect(Collectors.toList());
+            // removeObjects在迭代结果时才发起请求
+            List<DeleteError> batchErrors = gate.call(StorageMetrics.DELETE, bucket, () -> {
+                Iterable<Result<DeleteError>> results = minioClient.removeObjects(RemoveObjectsArgs.builder()
+                        .bucket(bucket)
+                        .objects(objects)
+                        .build());
+                List<DeleteError> deleteErrors = new ArrayList<>();
+                try {
+                    for (Result<DeleteError> result : results) {
+                        deleteErrors.add(result.get());
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException("批量删除文件失败", e);
+                }
+                return deleteErrors;
+            });
+            names.forEach(objectName -> invalidateCache(bucket, objectName));
+            logger.debug("从Minio批量删除文件:[{}],本批数量:[{}],失败数量:[{}]", bucket, objects.size(), batchErrors.size());
+            return batchErrors;
+        });
+        logger.debug("从Minio批量删除文件:[{}]完成,失败数量:[{}]", bucket, errors.size());
+        return errors;
+    }
+
+    @Override
+    public Stream<Item> listFilesInParallel(String prefix, String delimiter, boolean ordered) {
+        return listFilesInParallel(config.getBucketName(), prefix, delimiter, ordered);
+    }
+
+    @Override
+    public Stream<Item> listFilesInParallel(String bucket, String prefix, String delimiter, boolean ordered) {
+        logger.debug("开始并行列出Minio文件:[{}],前缀:[{}]", bucket, prefix);
+        return executeFanOut(StorageMetrics.LIST, bucket, null, () ->
+                objectLister.parallelStream(bucket, prefix, delimiter == null ? "/" : delimiter, ordered));
+    }
+
+    @Override
+    public String createMultipartUploadId(String fileName) {
+        return createMultipartUploadId(config.getBucketName(), fileName);
+    }
+
+    @Override
+    public String createMultipartUploadId(String bucket, String fileName) {
+        logger.debug("开始创建Minio分片上传:[{}]", fileName);
+        String serverUploadId = execute(StorageMetrics.MULTIPART_CREATE, bucket, () ->
+                join(multipartClient.createMultipartUpload(bucket, fileName,
+                        config.getChecksum().isEnabled() ? MinioChecksums.checksumAlgorithm() : null)));
+        String uploadId = NativeUpload.id(fileName, serverUploadId);
+        multipartRegistry.register(uploadId);
+        logger.debug("创建Minio分片上传:[{}]完成,uploadId:[{}]", fileName, uploadId);
+        return uploadId;
     }
 
     /**
@@ -243,18 +793,39 @@ public class MinioServiceImpl implements MinioService {
 
     @Override
     public void multipartUpload(String bucket, byte[] data, String uploadId, int index) {
-        logger.debug("开始上传Minio分片文件:[{}],index:[{}]", uploadId, index);
-        try {
-            PutObjectArgs args = PutObjectArgs.builder()
-                    .bucket(bucket)
-                    .object(uploadId + "/" + index + ".chunk")
-                    .stream(new ByteArrayInputStream(data), data.length, -1)
-                    .build();
-            minioClient.putObject(args);
-            logger.debug("上传分片文件:[{}],index:[{}]完成", uploadId, index);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+        NativeUpload upload = NativeUpload.parse(uploadId);
+        throttle.acquireBytes(StorageMetrics.MULTIPART_PART, bucket, data.length);
+        if (upload != null) {
+            int partNumber = index + 1;
+            logger.debug("开始上传Minio分片:[{}],partNumber:[{}]", uploadId, partNumber);
+            Map<String, String> headers = config.getChecksum().isEnabled() ? MinioChecksums.headers(data, data.length) : null;
+            UploadPartResponse response = execute(StorageMetrics.MULTIPART_PART, bucket, r -> data.length, () ->
+                    join(multipartClient.uploadPart(bucket, upload.objectName, upload.uploadId, partNumber, data, data.length, headers)));
+            // 本节点登记的分片上传记录分片的校验和,合并时补充服务端未返回的校验和
+            if (multipartRegistry.contains(uploadId)) {
+                multipartRegistry.putPart(uploadId, partNumber, new MinioMultipartClient.ChecksumPart(partNumber, response.etag(),
+                        headers == null ? null : headers.get(MinioChecksums.CRC32C_HEADER)));
+            }
+            logger.debug("上传Minio分片:[{}],partNumber:[{}]完成", uploadId, partNumber);
+            return;
         }
+        logger.debug("开始上传Minio分片文件:[{}],index:[{}]", uploadId, index);
+        execute(StorageMetrics.MULTIPART_PART, bucket, response -> data.length, () -> {
+            try {
+                PutObjectArgs.Builder args = PutObjectArgs.builder()
+                        .bucket(bucket)
+                        .object(uploadId + "/" + index + CHUNK_SUFFIX)
+                        .stream(new ByteArrayInputStream(data), data.length, -1);
+                if (config.getChecksum().isEnabled()) {
+                    args.headers(MinioChecksums.headers(data, data.length));
+                }
+                ObjectWriteResponse response = minioClient.putObject(args.build());
+                logger.debug("上传分片文件:[{}],index:[{}]完成", uploadId, index);
+                return response;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
     }
 
     @Override
@@ -264,45 +835,255 @@ public class MinioServiceImpl implements MinioService {
 
     @Override
     public void mergeMultipart(String bucket, String fileName, String uploadId) {
-        try {
-            Iterable<Result<Item>> results = minioClient.listObjects(
-                    ListObjectsArgs.builder()
-                            .bucket(bucket)
-                            .prefix(uploadId)
-                            .delimiter("/")
-                            .recursive(true)
-                            .build());
-            List<Item> items = new ArrayList<>();
-            for (Result<Item> result : results) {
-                items.add(result.get());
+        NativeUpload upload = NativeUpload.parse(uploadId);
+        if (upload != null) {
+            if (!upload.objectName.equals(fileName)) {
+                throw new RuntimeException("文件名与分片上传不一致: " + fileName);
             }
+            logger.debug("开始完成Minio分片上传:[{}],uploadId:[{}]", fileName, uploadId);
+            // 分片可能经其他节点上传,以服务端的分片列表为准,本地记录只用于补充服务端未返回的校验和
+            List<Part> listed = execute(StorageMetrics.LIST, bucket, () ->
+                    join(multipartClient.listParts(bucket, fileName, upload.uploadId)));
+            Part[] parts = withLocalChecksums(listed, multipartRegistry.parts(uploadId));
+            execute(StorageMetrics.MULTIPART_COMPLETE, bucket, () ->
+                    join(multipartClient.completeMultipartUpload(bucket, fileName, upload.uploadId, parts)));
+            multipartRegistry.remove(uploadId);
+            invalidateCache(bucket, fileName);
+            logger.debug("完成Minio分片上传:[{}],分片数:[{}]", fileName, parts.length);
+            return;
+        }
+        // 列出、合并、删除分片文件依次发起请求,每个请求分别获取请求速率令牌和并发许可
+        executeFanOut(StorageMetrics.MULTIPART_COMPLETE, bucket, null, () -> {
+            List<Item> items = new ArrayList<>();
+            objectLister.iterator(bucket, uploadId + "/", true, null).forEachRemaining(items::add);
             List<ComposeSource> composeSources = items.stream()
-                    .sorted((a, b) -> a.lastModified().isAfter(b.lastModified()) ? 1 : -1)
+                    .sorted(Comparator.comparingInt(item -> chunkIndex(item.objectName())))
                     .map(item -> ComposeSource.builder().object(item.objectName()).bucket(bucket).build())
                     .peek(composeSource -> logger.debug("合并分片文件:[{}]", composeSource.object()))
                     .collect(Collectors.toList());
             logger.debug("开始合并Minio分片文件:[{}]", fileName);
-            ComposeObjectArgs args = ComposeObjectArgs.builder()
-                    .bucket(bucket)
-                    .object(fileName)
-                    .sources(composeSources)
-                    .build();
-            minioClient.composeObject(args);
-            List<DeleteObject> deleteObjectList = composeSources.stream()
-                    .map(e -> new DeleteObject(e.object()))
-                    .collect(Collectors.toList());
-            Iterable<Result<DeleteError>> removed = minioClient.removeObjects(RemoveObjectsArgs
-                    .builder()
-                    .bucket(bucket)
-                    .objects(deleteObjectList)
-                    .build());
-            for (Result<DeleteError> result : removed) {
-                DeleteError deleteError = result.get();
-                logger.debug("删除分片文件:[{}]", deleteError.objectName());
-            }
+            ObjectWriteResponse response = gate.call(StorageMetrics.MULTIPART_COMPLETE, bucket, () -> {
+                try {
+                    return minioClient.composeObject(ComposeObjectArgs.builder()
+                            .bucket(bucket)
+                            .object(fileName)
+                            .sources(composeSources)
+                            .build());
+                } catch (Exception e) {
+                    throw new RuntimeException("文件合并失败", e);
+                }
+            });
+            invalidateCache(bucket, fileName);
+            removeBatches(bucket, composeSources.iterator(), ComposeSource::object);
             logger.debug("合并Minio分片文件:[{}]完成", fileName);
-        } catch (Exception e) {
-            throw new RuntimeException("文件合并失败", e);
+            return response;
+        });
+    }
+
+    /**
+     * 服务端返回的分片没有校验和时,使用本节点上传该分片时计算的CRC32C
+     *
+     * @param listed 服务端的分片列表
+     * @param local  本节点登记的分片
+     * @return 按分片序号排序的分片
+     */
+    private static Part[] withLocalChecksums(List<Part> listed, List<Part> local) {
+        Map<Integer, Part> localParts = new HashMap<>();
+        for (Part part : local) {
+            localParts.put(part.partNumber(), part);
+        }
+        Part[] parts = new Part[listed.size()];
+        for (int i = 0; i < parts.length; i++) {
+            Part part = listed.get(i);
+            Part localPart = localParts.get(part.partNumber());
+            boolean missing = !(part instanceof MinioMultipartClient.ChecksumPart)
+                    || ((MinioMultipartClient.ChecksumPart) part).checksumCrc32c() == null;
+            if (missing && localPart instanceof MinioMultipartClient.ChecksumPart
+                    && unquote(localPart.etag()).equals(unquote(part.etag()))) {
+                part = new MinioMultipartClient.ChecksumPart(part.partNumber(), part.etag(),
+                        ((MinioMultipartClient.ChecksumPart) localPart).checksumCrc32c());
+            }
+            parts[i] = part;
+        }
+        return parts;
+    }
+
+    private static String unquote(String eTag) {
+        return eTag == null ? "" : eTag.replace("\"", "");
+    }
+
+    @Override
+    public void abortMultipart(String uploadId) {
+        abortMultipart(config.getBucketName(), uploadId);
+    }
+
+    @Override
+    public void abortMultipart(String bucket, String uploadId) {
+        NativeUpload upload = NativeUpload.parse(uploadId);
+        if (upload == null) {
+            throw new RuntimeException("不是原生分片上传: " + uploadId);
+        }
+        multipartRegistry.remove(uploadId);
+        logger.debug("开始取消Minio分片上传:[{}],uploadId:[{}]", upload.objectName, uploadId);
+        execute(StorageMetrics.MULTIPART_ABORT, bucket, () ->
+                join(multipartClient.abortMultipartUpload(bucket, upload.objectName, upload.uploadId)));
+        logger.debug("取消Minio分片上传:[{}]完成", upload.objectName);
+    }
+
+    /**
+     * 原生分片上传的uploadId,由前缀、Base64编码的文件名和服务端的uploadId组成;
+     * 服务重启或在其他节点创建的原生分片上传也能识别,只有不带前缀的uploadId作为临时分片文件上传
+     */
+    private static final class NativeUpload {
+        private static final String PREFIX = "mpu.";
+        private final String objectName;
+        private final String uploadId;
+
+        private NativeUpload(String objectName, String uploadId) {
+            this.objectName = objectName;
+            this.uploadId = uploadId;
+        }
+
+        static String id(String objectName, String uploadId) {
+            return PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(objectName.getBytes(StandardCharsets.UTF_8))
+                    + "." + uploadId;
+        }
+
+        /**
+         * @return 不是原生分片上传时返回null
+         */
+        static NativeUpload parse(String id) {
+            if (!id.startsWith(PREFIX)) {
+                return null;
+            }
+            int separator = id.indexOf('.', PREFIX.length());
+            if (separator < 0) {
+                throw new RuntimeException("分片上传ID格式错误: " + id);
+            }
+            try {
+                String objectName = new String(Base64.getUrlDecoder().decode(id.substring(PREFIX.length(), separator)), StandardCharsets.UTF_8);
+                return new NativeUpload(objectName, id.substring(separator + 1));
+            } catch (IllegalArgumentException e) {
+                throw new RuntimeException("分片上传ID格式错误: " + id, e);
+            }
+        }
+    }
+
+    /**
+     * 从临时分片文件名(uploadId/index.chunk)中取出分片索引
+     */
+    private static int chunkIndex(String objectName) {
+        String name = objectName.substring(objectName.lastIndexOf('/') + 1);
+        return Integer.parseInt(name.substring(0, name.length() - CHUNK_SUFFIX.length()));
+    }
+
+    /**
+     * 记录指标的统一入口,所有访问存储的操作都经过这里
+     *
+     * @param operation 操作名称
+     * @param bucket    bucket
+     * @param bytes     根据结果计算传输的字节数,为null时不记录字节数
+     * @param action    操作
+     * @return 操作结果
+     */
+    private <T> T execute(String operation, String bucket, ToLongFunction<? super T> bytes, Supplier<T> action) {
+        return execute(operation, bucket, bytes, action, true);
+    }
+
+    /**
+     * 同时发起多个请求的操作,由流式上传、批量删除和列表组件对每个请求分别获取请求速率令牌和并发许可
+     */
+    private <T> T executeFanOut(String operation, String bucket, ToLongFunction<? super T> bytes, Supplier<T> action) {
+        return execute(operation, bucket, bytes, action, false);
+    }
+
+    private <T> T execute(String operation, String bucket, ToLongFunction<? super T> bytes, Supplier<T> action, boolean limited) {
+        if (limited) {
+            throttle.acquireRequest(operation, bucket);
+        }
+        AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter == null || !limited ? null : concurrencyLimiter.acquire(operation);
+        StorageMetrics.Sample sample = storageMetrics.start(BACKEND, operation, bucket);
+        T result;
+        try {
+            result = action.get();
+        } catch (RuntimeException | Error e) {
+            sample.failure(e);
+            if (permit != null) {
+                if (isThrottled(e)) {
+                    permit.dropped();
+                } else {
+                    permit.ignore();
+                }
+            }
+            throw e;
+        }
+        long transferred = bytes == null || result == null ? 0 : bytes.applyAsLong(result);
+        if (permit != null) {
+            permit.success(transferred);
+        }
+        sample.success(transferred);
+        return result;
+    }
+
+    /**
+     * 是否被限流或超时,服务端过载时返回503 SlowDown或429
+     */
+    private static boolean isThrottled(Throwable error) {
+        for (Throwable e = error; e != null; e = e.getCause()) {
+            if (e instanceof ErrorResponseException) {
+                ErrorResponseException responseException = (ErrorResponseException) e;
+                int code = responseException.response().code();
+                if (code == 503 || code == 429 || "SlowDown".equals(responseException.errorResponse().code())) {
+                    return true;
+                }
+            }
+            if (e instanceof ServerException) {
+                int code = ((ServerException) e).statusCode();
+                if (code == 503 || code == 429) {
+                    return true;
+                }
+            }
+            if (e instanceof InterruptedIOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private <T> T execute(String operation, String bucket, Supplier<T> action) {
+        return execute(operation, bucket, null, action);
+    }
+
+    private void run(String operation, String bucket, Runnable action) {
+        execute(operation, bucket, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * 下载响应头中的文件大小,没有时返回0
+     */
+    private static long contentLength(GetObjectResponse response) {
+        return Math.max(0, parseLength(response.headers().get("Content-Length")));
+    }
+
+    /**
+     * 解析Content-Length,缺失或无效时为-1
+     */
+    private static long parseLength(String value) {
+        try {
+            return value == null ? -1 : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw new RuntimeException("分片上传失败", e.getCause());
         }
     }
 }
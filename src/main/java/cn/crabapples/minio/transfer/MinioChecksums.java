@@ -0,0 +1,68 @@
+package cn.crabapples.minio.transfer;
+
+import cn.crabapples.utils.ChecksumVerifyingInputStream;
+import cn.crabapples.utils.Crc32c;
+import okhttp3.Headers;
+
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * MinIO端到端CRC32C校验
+ * 上传时通过请求头x-amz-checksum-crc32c携带已在内存中的数据的校验和,由服务端校验;
+ * 分片上传在创建时声明x-amz-checksum-algorithm,合并时携带各分片的校验和,服务端生成组合校验和;
+ * 下载时通过请求头x-amz-checksum-mode获取文件的校验和,边读取边计算。
+ * 客户端不支持GetObjectAttributes,分片上传文件的组合校验和不校验
+ */
+public final class MinioChecksums {
+    /**
+     * CRC32C请求头和响应头
+     */
+    public static final String CRC32C_HEADER = "x-amz-checksum-crc32c";
+    private static final Map<String, String> CHECKSUM_MODE = Collections.singletonMap("x-amz-checksum-mode", "ENABLED");
+    private static final Map<String, String> CHECKSUM_ALGORITHM = Collections.singletonMap("x-amz-checksum-algorithm", "CRC32C");
+
+    private MinioChecksums() {
+    }
+
+    /**
+     * 下载请求的请求头,响应中返回文件的校验和
+     */
+    public static Map<String, String> checksumMode() {
+        return CHECKSUM_MODE;
+    }
+
+    /**
+     * 创建分片上传的请求头,声明分片使用CRC32C
+     */
+    public static Map<String, String> checksumAlgorithm() {
+        return CHECKSUM_ALGORITHM;
+    }
+
+    /**
+     * 上传请求的请求头
+     *
+     * @param data   数据
+     * @param length 数据长度,从下标0开始
+     */
+    public static Map<String, String> headers(byte[] data, int length) {
+        return Collections.singletonMap(CRC32C_HEADER, Crc32c.encode(Crc32c.compute(data, 0, length)));
+    }
+
+    /**
+     * 响应中有完整文件的CRC32C时,读到末尾时校验
+     *
+     * @param headers 响应头
+     * @param in      响应内容
+     * @param name    文件名称
+     * @return 校验的输入流,没有CRC32C或为组合校验和时返回原输入流
+     */
+    public static InputStream verify(Headers headers, InputStream in, String name) {
+        String checksum = headers.get(CRC32C_HEADER);
+        if (checksum == null || Crc32c.isComposite(checksum)) {
+            return in;
+        }
+        return new ChecksumVerifyingInputStream(in, Crc32c.decode(checksum), name);
+    }
+}
@@ -0,0 +1,286 @@
+package cn.crabapples.minio.transfer;
+
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
+import io.minio.*;
+import io.minio.errors.ErrorResponseException;
+import io.minio.http.Method;
+import io.minio.messages.CompleteMultipartUploadOutput;
+import io.minio.messages.ErrorResponse;
+import io.minio.messages.Part;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.simpleframework.xml.Element;
+import org.simpleframework.xml.ElementList;
+import org.simpleframework.xml.Root;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 开放MinIO原生分片上传接口的客户端
+ * MinioAsyncClient只在内部使用createMultipartUpload/uploadPart等方法,这里通过继承将其公开
+ */
+public class MinioMultipartClient extends MinioAsyncClient {
+    private static final int MAX_PARTS = 1000;
+
+    public MinioMultipartClient(MinioAsyncClient client) {
+        super(client);
+    }
+
+    /**
+     * 创建分片上传
+     *
+     * @param bucket Bucket名称
+     * @param object 文件名称
+     * @return 分片上传ID
+     */
+    public CompletableFuture<String> createMultipartUpload(String bucket, String object) {
+        return createMultipartUpload(bucket, object, null);
+    }
+
+    /**
+     * 创建分片上传
+     *
+     * @param bucket  Bucket名称
+     * @param object  文件名称
+     * @param headers 额外的请求头,如校验和算法,可为null
+     * @return 分片上传ID
+     */
+    public CompletableFuture<String> createMultipartUpload(String bucket, String object, Map<String, String> headers) {
+        try {
+            return createMultipartUploadAsync(bucket, null, object, headers == null ? null : Multimaps.forMap(headers), null)
+                    .thenApply(response -> response.result().uploadId());
+        } catch (Exception e) {
+            throw new RuntimeException("创建分片上传失败", e);
+        }
+    }
+
+    /**
+     * 上传分片
+     *
+     * @param bucket     Bucket名称
+     * @param object     文件名称
+     * @param uploadId   分片上传ID
+     * @param partNumber 分片序号(从1开始)
+     * @param data       分片数据,从下标0开始
+     * @param length     分片长度
+     * @return 上传分片的响应结果
+     */
+    public CompletableFuture<UploadPartResponse> uploadPart(String bucket, String object, String uploadId,
+                                                           int partNumber, byte[] data, int length) {
+        return uploadPart(bucket, object, uploadId, partNumber, data, length, null);
+    }
+
+    /**
+     * 上传分片
+     *
+     * @param bucket     Bucket名称
+     * @param object     文件名称
+     * @param uploadId   分片上传ID
+     * @param partNumber 分片序号(从1开始)
+     * @param data       分片数据,从下标0开始
+     * @param length     分片长度
+     * @param headers    额外的请求头,如校验和,可为null
+     * @return 上传分片的响应结果
+     */
+    public CompletableFuture<UploadPartResponse> uploadPart(String bucket, String object, String uploadId,
+                                                           int partNumber, byte[] data, int length, Map<String, String> headers) {
+        try {
+            return uploadPartAsync(bucket, null, object, data, length, uploadId, partNumber,
+                    headers == null ? null : Multimaps.forMap(headers), null);
+        } catch (Exception e) {
+            throw new RuntimeException("上传分片失败", e);
+        }
+    }
+
+    /**
+     * 合并分片
+     * 分片为带有CRC32C的ChecksumPart时,请求中携带各分片的ChecksumCRC32C,
+     * 客户端的Part没有校验和字段,此时自行生成请求内容
+     *
+     * @param bucket   Bucket名称
+     * @param object   文件名称
+     * @param uploadId 分片上传ID
+     * @param parts    按分片序号排序的分片
+     * @return 合并分片的响应结果
+     */
+    public CompletableFuture<ObjectWriteResponse> completeMultipartUpload(String bucket, String object, String uploadId,
+                                                                          Part[] parts) {
+        try {
+            if (!hasChecksum(parts)) {
+                return completeMultipartUploadAsync(bucket, null, object, uploadId, parts, null, null);
+            }
+            String body = completeBody(parts);
+            Multimap<String, String> queryParams = newMultimap("uploadId", uploadId);
+            return getRegionAsync(bucket, null)
+                    .thenCompose(region -> {
+                        try {
+                            return executeAsync(Method.POST, bucket, object, region, httpHeaders(newMultimap()), queryParams, body, 0);
+                        } catch (Exception e) {
+                            throw new CompletionException(e);
+                        }
+                    })
+                    .thenApply(response -> completeResponse(bucket, object, response));
+        } catch (Exception e) {
+            throw new RuntimeException("合并分片失败", e);
+        }
+    }
+
+    private static boolean hasChecksum(Part[] parts) {
+        for (Part part : parts) {
+            if (part instanceof ChecksumPart && ((ChecksumPart) part).checksumCrc32c() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String completeBody(Part[] parts) {
+        StringBuilder body = new StringBuilder("<CompleteMultipartUpload xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">");
+        for (Part part : parts) {
+            body.append("<Part><PartNumber>").append(part.partNumber()).append("</PartNumber>")
+                    .append("<ETag>").append(escape(part.etag())).append("</ETag>");
+            String checksum = part instanceof ChecksumPart ? ((ChecksumPart) part).checksumCrc32c() : null;
+            if (checksum != null) {
+                body.append("<ChecksumCRC32C>").append(checksum).append("</ChecksumCRC32C>");
+            }
+            body.append("</Part>");
+        }
+        return body.append("</CompleteMultipartUpload>").toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    /**
+     * 合并分片的响应可能在200状态码中返回错误
+     */
+    private static ObjectWriteResponse completeResponse(String bucket, String object, Response response) {
+        try (ResponseBody responseBody = response.body()) {
+            String body = responseBody == null ? "" : responseBody.string();
+            if (Xml.validate(ErrorResponse.class, body)) {
+                throw new ErrorResponseException(Xml.unmarshal(ErrorResponse.class, body), response, null);
+            }
+            CompleteMultipartUploadOutput output = Xml.unmarshal(CompleteMultipartUploadOutput.class, body);
+            return new ObjectWriteResponse(response.headers(), output.bucket(), output.location(), output.object(),
+                    output.etag(), response.header("x-amz-version-id"));
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * 列出已上传的分片,用于合并本服务未登记的分片上传
+     * 客户端的ListParts结果不含校验和,这里自行解析响应以保留各分片的ChecksumCRC32C
+     *
+     * @param bucket   Bucket名称
+     * @param object   文件名称
+     * @param uploadId 分片上传ID
+     * @return 按分片序号排序的分片
+     */
+    public CompletableFuture<List<Part>> listParts(String bucket, String object, String uploadId) {
+        return listParts(bucket, object, uploadId, 0, new ArrayList<>());
+    }
+
+    private CompletableFuture<List<Part>> listParts(String bucket, String object, String uploadId, int marker, List<Part> parts) {
+        Multimap<String, String> queryParams = newMultimap("uploadId", uploadId, "max-parts", String.valueOf(MAX_PARTS));
+        if (marker > 0) {
+            queryParams.put("part-number-marker", String.valueOf(marker));
+        }
+        try {
+            return getRegionAsync(bucket, null)
+                    .thenCompose(region -> {
+                        try {
+                            return executeAsync(Method.GET, bucket, object, region, httpHeaders(newMultimap()), queryParams, null, 0);
+                        } catch (Exception e) {
+                            throw new CompletionException(e);
+                        }
+                    })
+                    .thenCompose(response -> {
+                        ListedParts result = listPartsResponse(response);
+                        for (ListedPart part : result.parts) {
+                            parts.add(new ChecksumPart(part.partNumber, part.etag, part.checksumCrc32c));
+                        }
+                        if (result.truncated) {
+                            return listParts(bucket, object, uploadId, result.nextPartNumberMarker, parts);
+                        }
+                        return CompletableFuture.completedFuture(parts);
+                    });
+        } catch (Exception e) {
+            throw new RuntimeException("列出分片失败", e);
+        }
+    }
+
+    private static ListedParts listPartsResponse(Response response) {
+        try (ResponseBody responseBody = response.body()) {
+            return Xml.unmarshal(ListedParts.class, responseBody == null ? "" : responseBody.string());
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * 取消分片上传
+     *
+     * @param bucket   Bucket名称
+     * @param object   文件名称
+     * @param uploadId 分片上传ID
+     * @return 取消分片上传的响应结果
+     */
+    public CompletableFuture<AbortMultipartUploadResponse> abortMultipartUpload(String bucket, String object, String uploadId) {
+        try {
+            return abortMultipartUploadAsync(bucket, null, object, uploadId, null, null);
+        } catch (Exception e) {
+            throw new RuntimeException("取消分片上传失败", e);
+        }
+    }
+
+    /**
+     * 带有CRC32C的分片
+     */
+    public static class ChecksumPart extends Part {
+        private final String checksumCrc32c;
+
+        /**
+         * @param partNumber     分片序号
+         * @param etag           分片ETag
+         * @param checksumCrc32c 分片的CRC32C,为null时不携带
+         */
+        public ChecksumPart(int partNumber, String etag, String checksumCrc32c) {
+            super(partNumber, etag);
+            this.checksumCrc32c = checksumCrc32c;
+        }
+
+        public String checksumCrc32c() {
+            return checksumCrc32c;
+        }
+    }
+
+    /**
+     * ListParts的响应
+     */
+    @Root(name = "ListPartsResult", strict = false)
+    private static class ListedParts {
+        @Element(name = "IsTruncated", required = false)
+        private boolean truncated;
+        @Element(name = "NextPartNumberMarker", required = false)
+        private int nextPartNumberMarker;
+        @ElementList(entry = "Part", inline = true, required = false)
+        private List<ListedPart> parts = new ArrayList<>();
+    }
+
+    @Root(name = "Part", strict = false)
+    private static class ListedPart {
+        @Element(name = "PartNumber")
+        private int partNumber;
+        @Element(name = "ETag")
+        private String etag;
+        @Element(name = "ChecksumCRC32C", required = false)
+        private String checksumCrc32c;
+    }
+}
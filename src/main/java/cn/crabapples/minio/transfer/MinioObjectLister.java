@@ -0,0 +1,150 @@
+package cn.crabapples.minio.transfer;
+
+import cn.crabapples.limit.RequestGate;
+import cn.crabapples.metrics.StorageMetrics;
+import cn.crabapples.utils.PartitionedLister;
+import cn.crabapples.utils.PartitionedLister.Partition;
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import io.minio.Result;
+import io.minio.messages.Item;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Stream;
+
+/**
+ * 文件列表
+ * 并行列表先按分隔符发现公共前缀,再同时列出各前缀下的文件,翻页请求分别获取并发许可
+ */
+public class MinioObjectLister {
+    private static final Logger logger = LoggerFactory.getLogger(MinioObjectLister.class);
+    private static final int PAGE_SIZE = 1000;
+    private final MinioClient minioClient;
+    private final int batchSize;
+    private final PartitionedLister<Item> partitionedLister;
+    private final RequestGate gate;
+
+    /**
+     * @param minioClient   Minio客户端
+     * @param executor      并行列表使用的线程池
+     * @param concurrency   同时列出的前缀数
+     * @param queueCapacity 每个分区缓冲的文件数
+     */
+    public MinioObjectLister(MinioClient minioClient, ExecutorService executor, int concurrency, int queueCapacity) {
+        this(minioClient, executor, concurrency, queueCapacity, RequestGate.none());
+    }
+
+    /**
+     * @param minioClient   Minio客户端
+     * @param executor      并行列表使用的线程池
+     * @param concurrency   同时列出的前缀数
+     * @param queueCapacity 每个分区缓冲的文件数
+     * @param gate          翻页请求的并发许可
+     */
+    public MinioObjectLister(MinioClient minioClient, ExecutorService executor, int concurrency, int queueCapacity,
+                             RequestGate gate) {
+        this.minioClient = minioClient;
+        this.gate = gate;
+        this.batchSize = queueCapacity;
+        this.partitionedLister = new PartitionedLister<>(executor, concurrency, queueCapacity);
+    }
+
+    /**
+     * 顺序列出文件(Minio客户端按需翻页)
+     *
+     * @param bucket    bucket
+     * @param prefix    文件名前缀,可为null
+     * @param recursive 是否列出所有层级
+     * @param delimiter 非递归时使用的分隔符,可为null
+     * @return 文件迭代器
+     */
+    public Iterator<Item> iterator(String bucket, String prefix, boolean recursive, String delimiter) {
+        ListObjectsArgs.Builder builder = ListObjectsArgs.builder()
+                .bucket(bucket)
+                .prefix(prefix)
+                .maxKeys(PAGE_SIZE)
+                .recursive(recursive);
+        if (!recursive && delimiter != null) {
+            builder.delimiter(delimiter);
+        }
+        Iterator<Result<Item>> results = minioClient.listObjects(builder.build()).iterator();
+        return new Iterator<Item>() {
+            /**
+             * 当前页未取出的文件数,取完时下一次检查会发起翻页请求
+             */
+            private int buffered;
+
+            @Override
+            public boolean hasNext() {
+                // 客户端在缓冲的一页取完后才发起请求,每次检查都获取许可,一页取完时获取请求速率令牌
+                if (buffered == 0) {
+                    gate.acquireRequest(StorageMetrics.LIST, bucket);
+                    buffered = PAGE_SIZE;
+                }
+                return gate.callUnmeasured(StorageMetrics.LIST, results::hasNext);
+            }
+
+            @Override
+            public Item next() {
+                buffered--;
+                try {
+                    return results.next().get();
+                } catch (NoSuchElementException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new RuntimeException("列出文件失败", e);
+                }
+            }
+        };
+    }
+
+    /**
+     * 按公共前缀分区并行列出文件
+     *
+     * @param bucket    bucket
+     * @param prefix    文件名前缀,可为null
+     * @param delimiter 发现分区使用的分隔符
+     * @param ordered   是否按文件名顺序输出
+     * @return 文件流
+     */
+    public Stream<Item> parallelStream(String bucket, String prefix, String delimiter, boolean ordered) {
+        Iterator<Item> entries = iterator(bucket, prefix, false, delimiter);
+        Iterator<Partition<Item>> partitions = new Iterator<Partition<Item>>() {
+            private Item pending;
+
+            @Override
+            public boolean hasNext() {
+                return pending != null || entries.hasNext();
+            }
+
+            @Override
+            public Partition<Item> next() {
+                Item item = pending != null ? pending : entries.next();
+                pending = null;
+                if (item.isDir()) {
+                    String partitionPrefix = item.objectName();
+                    logger.debug("发现列表分区: [{}],前缀:[{}]", bucket, partitionPrefix);
+                    return Partition.of(() -> iterator(bucket, partitionPrefix, true, null));
+                }
+                List<Item> items = new ArrayList<>();
+                items.add(item);
+                while (items.size() < batchSize && entries.hasNext()) {
+                    Item next = entries.next();
+                    if (next.isDir()) {
+                        pending = next;
+                        break;
+                    }
+                    items.add(next);
+                }
+                return Partition.ofItems(items);
+            }
+        };
+        return partitionedLister.list(partitions, ordered);
+    }
+}
@@ -0,0 +1,202 @@
+package cn.crabapples.minio.transfer;
+
+import cn.crabapples.limit.RequestGate;
+import cn.crabapples.metrics.StorageMetrics;
+import cn.crabapples.utils.BufferPool;
+import io.minio.ObjectWriteResponse;
+import io.minio.PutObjectArgs;
+import io.minio.UploadPartResponse;
+import io.minio.messages.Part;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 长度未知输入流的流式上传
+ * 输入流按固定大小读入池化的分片缓冲区,读取下一分片的同时上传已读取的分片,
+ * 所有上传共享同一个缓冲区池,峰值内存不超过 并发数 × 分片大小
+ * <p>
+ * 启用校验和时每个分片读入缓冲区后计算CRC32C,随请求发送由服务端校验;每个请求分别获取并发许可
+ */
+public class MinioStreamUploader {
+    private static final Logger logger = LoggerFactory.getLogger(MinioStreamUploader.class);
+    private final MinioMultipartClient client;
+    private final BufferPool bufferPool;
+    private final boolean checksum;
+    private final RequestGate gate;
+
+    public MinioStreamUploader(MinioMultipartClient client, int partSize, int parallelism) {
+        this(client, partSize, parallelism, false, RequestGate.none());
+    }
+
+    /**
+     * @param checksum 是否为分片计算CRC32C
+     * @param gate     每个请求的并发许可
+     */
+    public MinioStreamUploader(MinioMultipartClient client, int partSize, int parallelism, boolean checksum, RequestGate gate) {
+        this.client = client;
+        this.checksum = checksum;
+        this.gate = gate;
+        this.bufferPool = new BufferPool(partSize, parallelism, false);
+    }
+
+    /**
+     * 上传输入流
+     * 数据不足一个分片时直接上传,否则使用原生分片上传
+     *
+     * @param bucket      Bucket名称
+     * @param object      文件名称
+     * @param inputStream 输入流
+     * @return 上传文件响应对象
+     */
+    public ObjectWriteResponse upload(String bucket, String object, InputStream inputStream) {
+        ByteBuffer first = acquire();
+        int length;
+        try {
+            length = readFully(inputStream, first.array());
+        } catch (IOException e) {
+            bufferPool.release(first);
+            throw new RuntimeException("读取上传数据失败", e);
+        }
+        if (length < first.capacity()) {
+            try {
+                return putObject(bucket, object, first.array(), length);
+            } finally {
+                bufferPool.release(first);
+            }
+        }
+        return uploadMultipart(bucket, object, inputStream, first);
+    }
+
+    private ObjectWriteResponse uploadMultipart(String bucket, String object, InputStream inputStream, ByteBuffer first) {
+        String uploadId;
+        try {
+            Map<String, String> headers = checksum ? MinioChecksums.checksumAlgorithm() : null;
+            uploadId = gate.callAsync(StorageMetrics.MULTIPART_CREATE, bucket, 0, () -> client.createMultipartUpload(bucket, object, headers)).get();
+        } catch (Exception e) {
+            bufferPool.release(first);
+            throw new RuntimeException("创建分片上传失败", unwrap(e));
+        }
+        logger.debug("开始流式分片上传:[{}],uploadId:[{}]", object, uploadId);
+        List<CompletableFuture<Part>> futures = new ArrayList<>();
+        try {
+            ByteBuffer buffer = first;
+            int length = buffer.capacity();
+            int partNumber = 1;
+            while (true) {
+                futures.add(submitPart(bucket, object, uploadId, partNumber++, buffer, length));
+                if (length < bufferPool.getBufferSize()) {
+                    break;
+                }
+                buffer = acquire();
+                try {
+                    length = readFully(inputStream, buffer.array());
+                } catch (IOException e) {
+                    bufferPool.release(buffer);
+                    throw e;
+                }
+                if (length == 0) {
+                    bufferPool.release(buffer);
+                    break;
+                }
+            }
+            Part[] parts = new Part[futures.size()];
+            for (int i = 0; i < parts.length; i++) {
+                parts[i] = futures.get(i).get();
+            }
+            ObjectWriteResponse response = gate.callAsync(StorageMetrics.MULTIPART_COMPLETE, bucket, 0,
+                    () -> client.completeMultipartUpload(bucket, object, uploadId, parts)).get();
+            logger.debug("流式分片上传:[{}]完成,分片数:[{}]", object, parts.length);
+            return response;
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            futures.forEach(future -> future.cancel(true));
+            abort(bucket, object, uploadId);
+            throw new RuntimeException("文件上传失败", unwrap(e));
+        }
+    }
+
+    private CompletableFuture<Part> submitPart(String bucket, String object, String uploadId,
+                                               int partNumber, ByteBuffer buffer, int length) {
+        CompletableFuture<UploadPartResponse> future;
+        String crc32c;
+        try {
+            Map<String, String> headers = checksum ? MinioChecksums.headers(buffer.array(), length) : null;
+            crc32c = headers == null ? null : headers.get(MinioChecksums.CRC32C_HEADER);
+            future = gate.callAsync(StorageMetrics.MULTIPART_PART, bucket, length,
+                    () -> client.uploadPart(bucket, object, uploadId, partNumber, buffer.array(), length, headers));
+        } catch (RuntimeException e) {
+            bufferPool.release(buffer);
+            throw e;
+        }
+        return future.whenComplete((response, error) -> bufferPool.release(buffer))
+                .thenApply(response -> new MinioMultipartClient.ChecksumPart(partNumber, response.etag(), crc32c));
+    }
+
+    private ObjectWriteResponse putObject(String bucket, String object, byte[] data, int length) {
+        try {
+            PutObjectArgs.Builder args = PutObjectArgs.builder()
+                    .bucket(bucket)
+                    .object(object)
+                    .stream(new ByteArrayInputStream(data, 0, length), length, -1);
+            if (checksum) {
+                args.headers(MinioChecksums.headers(data, length));
+            }
+            PutObjectArgs request = args.build();
+            return gate.callAsync(StorageMetrics.UPLOAD, bucket, length, () -> {
+                try {
+                    return client.putObject(request);
+                } catch (Exception e) {
+                    throw new RuntimeException("文件上传失败", e);
+                }
+            }).get();
+        } catch (Exception e) {
+            throw new RuntimeException("文件上传失败", unwrap(e));
+        }
+    }
+
+    private void abort(String bucket, String object, String uploadId) {
+        try {
+            gate.callAsync(StorageMetrics.MULTIPART_ABORT, bucket, 0, () -> client.abortMultipartUpload(bucket, object, uploadId)).get();
+            logger.warn("流式分片上传失败,已取消:[{}],uploadId:[{}]", object, uploadId);
+        } catch (Exception e) {
+            logger.error("取消分片上传失败:[{}],uploadId:[{}]", object, uploadId, unwrap(e));
+        }
+    }
+
+    private ByteBuffer acquire() {
+        try {
+            return bufferPool.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("等待分片缓冲区时被中断", e);
+        }
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    private static int readFully(InputStream inputStream, byte[] buffer) throws IOException {
+        int total = 0;
+        while (total < buffer.length) {
+            int read = inputStream.read(buffer, total, buffer.length - total);
+            if (read == -1) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+}
@@ -2,6 +2,10 @@ package cn.crabapples.s3.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 @ConfigurationProperties(prefix = "crabapples.upload.s3")
 public class S3ConfigProperties {
     private String accessKey;
@@ -9,6 +13,23 @@ public class S3ConfigProperties {
     private String bucketName;
     private String region;
     private String url;
+    private final Multipart multipart = new Multipart();
+    private final Async async = new Async();
+    private final Download download = new Download();
+    private final Listing listing = new Listing();
+    private final Delete delete = new Delete();
+    private final Presign presign = new Presign();
+    private final Http http = new Http();
+    private final Cache cache = new Cache();
+    private final Stat stat = new Stat();
+    private final Limit limit = new Limit();
+    private final MemoryCache memoryCache = new MemoryCache();
+    private final Throttle throttle = new Throttle();
+    private final Directory directory = new Directory();
+    private final Resume resume = new Resume();
+    private final Checksum checksum = new Checksum();
+    private final Checkpoint checkpoint = new Checkpoint();
+    private final Hedge hedge = new Hedge();
 
     public String getAccessKey() {
         return accessKey;
@@ -50,5 +71,864 @@ public class S3ConfigProperties {
     public void setUrl(String url) {
         this.url = url;
     }
-}
 
+    public Multipart getMultipart() {
+        return multipart;
+    }
+
+    public Async getAsync() {
+        return async;
+    }
+
+    public Download getDownload() {
+        return download;
+    }
+
+    public Listing getListing() {
+        return listing;
+    }
+
+    public Delete getDelete() {
+        return delete;
+    }
+
+    public Presign getPresign() {
+        return presign;
+    }
+
+    public Http getHttp() {
+        return http;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Stat getStat() {
+        return stat;
+    }
+
+    public Limit getLimit() {
+        return limit;
+    }
+
+    public MemoryCache getMemoryCache() {
+        return memoryCache;
+    }
+
+    public Throttle getThrottle() {
+        return throttle;
+    }
+
+    public Directory getDirectory() {
+        return directory;
+    }
+
+    public Resume getResume() {
+        return resume;
+    }
+
+    public Checksum getChecksum() {
+        return checksum;
+    }
+
+    public Checkpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    public Hedge getHedge() {
+        return hedge;
+    }
+
+    /**
+     * 并行分片上传配置
+     */
+    public static class Multipart {
+        /**
+         * 分片大小(字节),S3要求除最后一个分片外不小于5MB
+         */
+        private long partSize = 8 * 1024 * 1024;
+        /**
+         * 同时上传的分片数
+         */
+        private int parallelism = 4;
+
+        public long getPartSize() {
+            return partSize;
+        }
+
+        public void setPartSize(long partSize) {
+            this.partSize = partSize;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+    }
+
+    /**
+     * 异步客户端(Netty NIO)配置
+     */
+    public static class Async {
+        /**
+         * 最大并发请求(连接)数
+         */
+        private int maxConcurrency = 1000;
+        /**
+         * 等待获取连接的最大请求数
+         */
+        private int maxPendingConnectionAcquires = 10000;
+        /**
+         * EventLoop线程数,0表示使用Netty默认值
+         */
+        private int eventLoopThreads = 0;
+
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        public void setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        public int getMaxPendingConnectionAcquires() {
+            return maxPendingConnectionAcquires;
+        }
+
+        public void setMaxPendingConnectionAcquires(int maxPendingConnectionAcquires) {
+            this.maxPendingConnectionAcquires = maxPendingConnectionAcquires;
+        }
+
+        public int getEventLoopThreads() {
+            return eventLoopThreads;
+        }
+
+        public void setEventLoopThreads(int eventLoopThreads) {
+            this.eventLoopThreads = eventLoopThreads;
+        }
+    }
+
+    /**
+     * 并行分段下载配置
+     */
+    public static class Download {
+        /**
+         * 分段大小(字节)
+         */
+        private long partSize = 8 * 1024 * 1024;
+        /**
+         * 同时下载的分段数
+         */
+        private int parallelism = 4;
+
+        public long getPartSize() {
+            return partSize;
+        }
+
+        public void setPartSize(long partSize) {
+            this.partSize = partSize;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+    }
+
+    /**
+     * 文件列表配置
+     */
+    public static class Listing {
+        /**
+         * 每页文件数,S3单页最多1000
+         */
+        private int pageSize = 1000;
+        /**
+         * 并行列表同时列出的前缀数
+         */
+        private int concurrency = 8;
+
+        public int getPageSize() {
+            return pageSize;
+        }
+
+        public void setPageSize(int pageSize) {
+            this.pageSize = pageSize;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+        }
+    }
+
+    /**
+     * 批量删除配置
+     */
+    public static class Delete {
+        /**
+         * 每个删除请求包含的文件数,S3单个请求最多1000
+         */
+        private int batchSize = 1000;
+        /**
+         * 同时执行的删除请求数
+         */
+        private int parallelism = 4;
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+    }
+
+    /**
+     * 预签名地址配置
+     */
+    public static class Presign {
+        /**
+         * 缓存的下载地址数,为0时不缓存
+         */
+        private int cacheSize = 10000;
+        /**
+         * 返回缓存地址时剩余有效期占有效期的最小比例
+         */
+        private double minRemainingRatio = 0.5;
+        /**
+         * 批量生成地址时并行签名的线程数
+         */
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+
+        public int getCacheSize() {
+            return cacheSize;
+        }
+
+        public void setCacheSize(int cacheSize) {
+            this.cacheSize = cacheSize;
+        }
+
+        public double getMinRemainingRatio() {
+            return minRemainingRatio;
+        }
+
+        public void setMinRemainingRatio(double minRemainingRatio) {
+            this.minRemainingRatio = minRemainingRatio;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+    }
+
+    /**
+     * HTTP连接池配置
+     */
+    public static class Http {
+        /**
+         * 最大连接数,应不小于各传输线程池同时发出的请求数
+         */
+        private int maxConnections = 50;
+        /**
+         * 从连接池获取连接的超时时间
+         */
+        private Duration connectionAcquisitionTimeout = Duration.ofSeconds(10);
+        /**
+         * 建立连接的超时时间
+         */
+        private Duration connectionTimeout = Duration.ofSeconds(2);
+        /**
+         * 读写数据的超时时间
+         */
+        private Duration socketTimeout = Duration.ofSeconds(30);
+        /**
+         * 空闲连接的最长保留时间
+         */
+        private Duration connectionMaxIdleTime = Duration.ofSeconds(60);
+        /**
+         * 连接的最长存活时间,为空时不限制
+         */
+        private Duration connectionTimeToLive;
+        /**
+         * 是否在后台清理空闲连接
+         */
+        private boolean useIdleConnectionReaper = true;
+        /**
+         * 是否开启TCP keep-alive
+         */
+        private boolean tcpKeepAlive = false;
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public Duration getConnectionAcquisitionTimeout() {
+            return connectionAcquisitionTimeout;
+        }
+
+        public void setConnectionAcquisitionTimeout(Duration connectionAcquisitionTimeout) {
+            this.connectionAcquisitionTimeout = connectionAcquisitionTimeout;
+        }
+
+        public Duration getConnectionTimeout() {
+            return connectionTimeout;
+        }
+
+        public void setConnectionTimeout(Duration connectionTimeout) {
+            this.connectionTimeout = connectionTimeout;
+        }
+
+        public Duration getSocketTimeout() {
+            return socketTimeout;
+        }
+
+        public void setSocketTimeout(Duration socketTimeout) {
+            this.socketTimeout = socketTimeout;
+        }
+
+        public Duration getConnectionMaxIdleTime() {
+            return connectionMaxIdleTime;
+        }
+
+        public void setConnectionMaxIdleTime(Duration connectionMaxIdleTime) {
+            this.connectionMaxIdleTime = connectionMaxIdleTime;
+        }
+
+        public Duration getConnectionTimeToLive() {
+            return connectionTimeToLive;
+        }
+
+        public void setConnectionTimeToLive(Duration connectionTimeToLive) {
+            this.connectionTimeToLive = connectionTimeToLive;
+        }
+
+        public boolean isUseIdleConnectionReaper() {
+            return useIdleConnectionReaper;
+        }
+
+        public void setUseIdleConnectionReaper(boolean useIdleConnectionReaper) {
+            this.useIdleConnectionReaper = useIdleConnectionReaper;
+        }
+
+        public boolean isTcpKeepAlive() {
+            return tcpKeepAlive;
+        }
+
+        public void setTcpKeepAlive(boolean tcpKeepAlive) {
+            this.tcpKeepAlive = tcpKeepAlive;
+        }
+    }
+
+    /**
+     * 本地磁盘下载缓存配置
+     */
+    public static class Cache {
+        /**
+         * 是否启用
+         */
+        private boolean enabled = false;
+        /**
+         * 缓存目录,由缓存独占,启动时会清空其中的缓存文件
+         */
+        private String directory = System.getProperty("java.io.tmpdir") + "/crabapples-s3-cache";
+        /**
+         * 缓存文件的总大小上限(字节)
+         */
+        private long maxSize = 1024L * 1024 * 1024;
+        /**
+         * 单个文件的大小上限(字节),更大的文件不缓存
+         */
+        private long maxObjectSize = 64L * 1024 * 1024;
+        /**
+         * 缓存文件校验后不访问存储服务的时间,超过后使用ETag条件下载校验
+         */
+        private Duration revalidateAfter = Duration.ofMinutes(1);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public long getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(long maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public long getMaxObjectSize() {
+            return maxObjectSize;
+        }
+
+        public void setMaxObjectSize(long maxObjectSize) {
+            this.maxObjectSize = maxObjectSize;
+        }
+
+        public Duration getRevalidateAfter() {
+            return revalidateAfter;
+        }
+
+        public void setRevalidateAfter(Duration revalidateAfter) {
+            this.revalidateAfter = revalidateAfter;
+        }
+    }
+
+    /**
+     * 堆外小文件缓存配置
+     */
+    public static class MemoryCache {
+        /**
+         * 是否启用
+         */
+        private boolean enabled = false;
+        /**
+         * 直接内存上限(字节)
+         */
+        private long maxSize = 64L * 1024 * 1024;
+        /**
+         * 单个文件的大小上限(字节),更大的文件不缓存
+         */
+        private int maxObjectSize = 256 * 1024;
+        /**
+         * 缓存文件校验后不访问存储服务的时间,超过后使用ETag条件下载校验
+         */
+        private Duration revalidateAfter = Duration.ofMinutes(1);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(long maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public int getMaxObjectSize() {
+            return maxObjectSize;
+        }
+
+        public void setMaxObjectSize(int maxObjectSize) {
+            this.maxObjectSize = maxObjectSize;
+        }
+
+        public Duration getRevalidateAfter() {
+            return revalidateAfter;
+        }
+
+        public void setRevalidateAfter(Duration revalidateAfter) {
+            this.revalidateAfter = revalidateAfter;
+        }
+    }
+
+    /**
+     * 文件元数据缓存配置
+     */
+    public static class Stat {
+        /**
+         * 缓存的文件数,为0时不缓存
+         */
+        private int cacheSize = 10000;
+        /**
+         * 元数据的缓存时间
+         */
+        private Duration ttl = Duration.ofSeconds(30);
+        /**
+         * 文件不存在时的缓存时间
+         */
+        private Duration negativeTtl = Duration.ofSeconds(5);
+
+        public int getCacheSize() {
+            return cacheSize;
+        }
+
+        public void setCacheSize(int cacheSize) {
+            this.cacheSize = cacheSize;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public Duration getNegativeTtl() {
+            return negativeTtl;
+        }
+
+        public void setNegativeTtl(Duration negativeTtl) {
+            this.negativeTtl = negativeTtl;
+        }
+    }
+
+    /**
+     * 自适应并发限制配置
+     */
+    public static class Limit {
+        /**
+         * 是否启用
+         */
+        private boolean enabled = false;
+        /**
+         * 初始并发上限
+         */
+        private int initialLimit = 32;
+        /**
+         * 最小并发上限
+         */
+        private int minLimit = 1;
+        /**
+         * 最大并发上限
+         */
+        private int maxLimit = 256;
+        /**
+         * 被限流时并发上限保留的比例
+         */
+        private double backoffRatio = 0.7;
+        /**
+         * 短期平均延迟超过长期平均延迟的倍数时减小并发上限,为0时不根据延迟调整
+         */
+        private double latencyTolerance = 2.0;
+        /**
+         * 最多排队的调用方,超过时直接拒绝
+         */
+        private int maxQueue = 1000;
+        /**
+         * 最长排队时间,超过时拒绝
+         */
+        private Duration queueTimeout = Duration.ofSeconds(30);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getInitialLimit() {
+            return initialLimit;
+        }
+
+        public void setInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+        }
+
+        public int getMinLimit() {
+            return minLimit;
+        }
+
+        public void setMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+        }
+
+        public int getMaxLimit() {
+            return maxLimit;
+        }
+
+        public void setMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+        }
+
+        public double getBackoffRatio() {
+            return backoffRatio;
+        }
+
+        public void setBackoffRatio(double backoffRatio) {
+            this.backoffRatio = backoffRatio;
+        }
+
+        public double getLatencyTolerance() {
+            return latencyTolerance;
+        }
+
+        public void setLatencyTolerance(double latencyTolerance) {
+            this.latencyTolerance = latencyTolerance;
+        }
+
+        public int getMaxQueue() {
+            return maxQueue;
+        }
+
+        public void setMaxQueue(int maxQueue) {
+            this.maxQueue = maxQueue;
+        }
+
+        public Duration getQueueTimeout() {
+            return queueTimeout;
+        }
+
+        public void setQueueTimeout(Duration queueTimeout) {
+            this.queueTimeout = queueTimeout;
+        }
+    }
+
+    /**
+     * 请求速率和传输速率限制配置
+     */
+    public static class Throttle {
+        /**
+         * 限速规则,请求匹配的所有规则都要满足
+         */
+        private List<Rule> rules = new ArrayList<>();
+
+        public List<Rule> getRules() {
+            return rules;
+        }
+
+        public void setRules(List<Rule> rules) {
+            this.rules = rules;
+        }
+
+        /**
+         * 限速规则
+         */
+        public static class Rule {
+            /**
+             * bucket,为空时匹配全部
+             */
+            private String bucket;
+            /**
+             * 操作类型(upload、download、multipart.part等,同指标的operation标签),为空时匹配全部
+             */
+            private String operation;
+            /**
+             * 每秒请求数,为0时不限制
+             */
+            private double requestsPerSecond;
+            /**
+             * 每秒传输字节数,为0时不限制
+             */
+            private long bytesPerSecond;
+
+            public String getBucket() {
+                return bucket;
+            }
+
+            public void setBucket(String bucket) {
+                this.bucket = bucket;
+            }
+
+            public String getOperation() {
+                return operation;
+            }
+
+            public void setOperation(String operation) {
+                this.operation = operation;
+            }
+
+            public double getRequestsPerSecond() {
+                return requestsPerSecond;
+            }
+
+            public void setRequestsPerSecond(double requestsPerSecond) {
+                this.requestsPerSecond = requestsPerSecond;
+            }
+
+            public long getBytesPerSecond() {
+                return bytesPerSecond;
+            }
+
+            public void setBytesPerSecond(long bytesPerSecond) {
+                this.bytesPerSecond = bytesPerSecond;
+            }
+        }
+    }
+
+    /**
+     * 对冲下载配置
+     */
+    public static class Hedge {
+        /**
+         * 是否启用
+         */
+        private boolean enabled = false;
+        /**
+         * 对冲延迟取最近首字节时间的分位数
+         */
+        private double percentile = 0.95;
+        /**
+         * 最小对冲延迟
+         */
+        private Duration minDelay = Duration.ofMillis(10);
+        /**
+         * 对冲请求占下载请求数的上限比例
+         */
+        private double budgetRatio = 0.05;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getPercentile() {
+            return percentile;
+        }
+
+        public void setPercentile(double percentile) {
+            this.percentile = percentile;
+        }
+
+        public Duration getMinDelay() {
+            return minDelay;
+        }
+
+        public void setMinDelay(Duration minDelay) {
+            this.minDelay = minDelay;
+        }
+
+        public double getBudgetRatio() {
+            return budgetRatio;
+        }
+
+        public void setBudgetRatio(double budgetRatio) {
+            this.budgetRatio = budgetRatio;
+        }
+    }
+
+    /**
+     * 目录传输配置
+     */
+    public static class Directory {
+        /**
+         * 同时传输的文件数
+         */
+        private int parallelism = 16;
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+    }
+
+    /**
+     * 分片上传断点续传配置
+     */
+    public static class Checkpoint {
+        /**
+         * 是否启用,启用后multipartUploadFile上传本地文件时记录断点,失败后再次上传同一文件时只上传缺少的分片
+         */
+        private boolean enabled = false;
+        /**
+         * 断点记录目录
+         */
+        private String directory = System.getProperty("java.io.tmpdir") + "/crabapples-s3-uploads";
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+    }
+
+    /**
+     * 续传下载配置
+     */
+    public static class Resume {
+        /**
+         * 没有取得进展时的最大重试次数,每次重试从已写入的位置继续
+         */
+        private int maxRetries = 5;
+        /**
+         * 重试间隔,按连续失败次数递增
+         */
+        private Duration retryDelay = Duration.ofSeconds(1);
+
+        public int getMaxRetries() {
+            return maxRetries;
+        }
+
+        public void setMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+        }
+
+        public Duration getRetryDelay() {
+            return retryDelay;
+        }
+
+        public void setRetryDelay(Duration retryDelay) {
+            this.retryDelay = retryDelay;
+        }
+    }
+
+    /**
+     * 端到端CRC32C校验配置
+     */
+    public static class Checksum {
+        /**
+         * 是否在上传时携带CRC32C由服务端校验,下载时边读取边计算CRC32C并与服务端的校验和比较
+         */
+        private boolean enabled = false;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package cn.crabapples.s3.http;
+
+import software.amazon.awssdk.http.HttpMetric;
+import software.amazon.awssdk.metrics.MetricCollection;
+import software.amazon.awssdk.metrics.MetricPublisher;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 连接池指标
+ * 作为S3客户端的MetricPublisher注册,每个请求获取连接时HTTP客户端会上报连接池状态,
+ * 这里保留最近一次上报的租用、等待、空闲连接数;没有请求时指标保持最后一次请求时的值
+ */
+public class S3ConnectionPoolMetrics implements MetricPublisher {
+    private volatile Snapshot snapshot = new Snapshot(0, 0, 0, 0, Duration.ZERO, 0);
+
+    @Override
+    public void publish(MetricCollection metricCollection) {
+        MetricCollection http = findHttpClientMetrics(metricCollection);
+        if (http == null) {
+            return;
+        }
+        snapshot = new Snapshot(
+                last(http.metricValues(HttpMetric.LEASED_CONCURRENCY), 0),
+                last(http.metricValues(HttpMetric.PENDING_CONCURRENCY_ACQUIRES), 0),
+                last(http.metricValues(HttpMetric.AVAILABLE_CONCURRENCY), 0),
+                last(http.metricValues(HttpMetric.MAX_CONCURRENCY), 0),
+                last(http.metricValues(HttpMetric.CONCURRENCY_ACQUIRE_DURATION), Duration.ZERO),
+                System.currentTimeMillis());
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * 租用中的连接数
+     */
+    public int getLeased() {
+        return snapshot.leased;
+    }
+
+    /**
+     * 等待获取连接的请求数
+     */
+    public int getPending() {
+        return snapshot.pending;
+    }
+
+    /**
+     * 连接池中空闲的连接数
+     */
+    public int getAvailable() {
+        return snapshot.available;
+    }
+
+    /**
+     * 连接池最大连接数
+     */
+    public int getMaxConnections() {
+        return snapshot.max;
+    }
+
+    /**
+     * 最近一次请求获取连接的耗时
+     */
+    public Duration getLastAcquireDuration() {
+        return snapshot.acquireDuration;
+    }
+
+    /**
+     * 最近一次上报指标的时间戳(毫秒),为0时还没有请求
+     */
+    public long getLastUpdated() {
+        return snapshot.updatedAt;
+    }
+
+    /**
+     * 在请求指标树中查找最后一次尝试的HTTP客户端指标
+     */
+    private static MetricCollection findHttpClientMetrics(MetricCollection collection) {
+        if (!collection.metricValues(HttpMetric.LEASED_CONCURRENCY).isEmpty()) {
+            return collection;
+        }
+        MetricCollection found = null;
+        for (MetricCollection child : collection.children()) {
+            MetricCollection http = findHttpClientMetrics(child);
+            if (http != null) {
+                found = http;
+            }
+        }
+        return found;
+    }
+
+    private static <T> T last(List<T> values, T defaultValue) {
+        return values.isEmpty() ? defaultValue : values.get(values.size() - 1);
+    }
+
+    private static class Snapshot {
+        private final int leased;
+        private final int pending;
+        private final int available;
+        private final int max;
+        private final Duration acquireDuration;
+        private final long updatedAt;
+
+        Snapshot(int leased, int pending, int available, int max, Duration acquireDuration, long updatedAt) {
+            this.leased = leased;
+            this.pending = pending;
+            this.available = available;
+            this.max = max;
+            this.acquireDuration = acquireDuration;
+            this.updatedAt = updatedAt;
+        }
+    }
+}
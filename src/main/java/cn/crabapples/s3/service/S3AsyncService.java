@@ -0,0 +1,210 @@
+package cn.crabapples.s3.service;
+
+import cn.crabapples.s3.config.S3ConfigProperties;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface S3AsyncService {
+    S3AsyncClient getClient();
+
+    S3ConfigProperties getConfig();
+
+    /**
+     * 初始化S3异步服务
+     */
+    void init();
+
+    /**
+     * 关闭S3异步服务
+     */
+    void destroy();
+
+    /**
+     * 上传文件
+     *
+     * @param fileName    文件名称
+     * @param requestBody 文件内容
+     * @return 上传文件的响应结果
+     */
+    CompletableFuture<PutObjectResponse> uploadFile(String fileName, AsyncRequestBody requestBody);
+
+    /**
+     * 上传文件
+     *
+     * @param bucket      Bucket名称
+     * @param fileName    文件名称
+     * @param requestBody 文件内容
+     * @return 上传文件的响应结果
+     */
+    CompletableFuture<PutObjectResponse> uploadFile(String bucket, String fileName, AsyncRequestBody requestBody);
+
+    /**
+     * 上传文件
+     *
+     * @param fileName 文件名称
+     * @param path     文件路径
+     * @return 上传文件的响应结果
+     */
+    CompletableFuture<PutObjectResponse> uploadFile(String fileName, String path);
+
+    /**
+     * 上传文件
+     *
+     * @param bucket   Bucket名称
+     * @param fileName 文件名称
+     * @param path     文件路径
+     * @return 上传文件的响应结果
+     */
+    CompletableFuture<PutObjectResponse> uploadFile(String bucket, String fileName, String path);
+
+    /**
+     * 下载文件
+     *
+     * @param fileName 文件名称
+     * @param path     文件保存路径
+     * @return 下载文件的响应结果
+     */
+    CompletableFuture<GetObjectResponse> downloadFile(String fileName, String path);
+
+    /**
+     * 下载文件
+     *
+     * @param bucket   Bucket名称
+     * @param fileName 文件名称
+     * @param path     文件保存路径
+     * @return 下载文件的响应结果
+     */
+    CompletableFuture<GetObjectResponse> downloadFile(String bucket, String fileName, String path);
+
+    /**
+     * 下载文件
+     *
+     * @param fileName 文件名称
+     * @return 响应字节
+     */
+    CompletableFuture<ResponseBytes<GetObjectResponse>> downloadFileAsByte(String fileName);
+
+    /**
+     * 下载文件
+     *
+     * @param bucket   Bucket名称
+     * @param fileName 文件名称
+     * @return 响应字节
+     */
+    CompletableFuture<ResponseBytes<GetObjectResponse>> downloadFileAsByte(String bucket, String fileName);
+
+    /**
+     * 列出所有文件(自动翻页)
+     *
+     * @return 文件列表
+     */
+    CompletableFuture<List<S3Object>> listFiles();
+
+    /**
+     * 列出所有文件(自动翻页)
+     *
+     * @param bucket Bucket名称
+     * @return 文件列表
+     */
+    CompletableFuture<List<S3Object>> listFiles(String bucket);
+
+    /**
+     * 删除文件
+     *
+     * @param fileName 文件名称
+     * @return 删除文件的响应结果
+     */
+    CompletableFuture<DeleteObjectResponse> deleteFile(String fileName);
+
+    /**
+     * 删除文件
+     *
+     * @param bucket   Bucket名称
+     * @param fileName 文件名称
+     * @return 删除文件的响应结果
+     */
+    CompletableFuture<DeleteObjectResponse> deleteFile(String bucket, String fileName);
+
+    /**
+     * 创建分片上传ID
+     *
+     * @param fileName 文件名称
+     * @return 分片上传ID
+     */
+    CompletableFuture<String> createMultipartUploadId(String fileName);
+
+    /**
+     * 创建分片上传ID
+     *
+     * @param bucket   Bucket名称
+     * @param fileName 文件名称
+     * @return 分片上传ID
+     */
+    CompletableFuture<String> createMultipartUploadId(String bucket, String fileName);
+
+    /**
+     * 上传指定序号的分片
+     *
+     * @param fileName    文件名称
+     * @param uploadId    分片上传ID
+     * @param partNumber  分片序号(1-10000)
+     * @param requestBody 请求体
+     * @return 已完成的分片
+     */
+    CompletableFuture<CompletedPart> multipartUploadParts(String fileName, String uploadId, int partNumber, AsyncRequestBody requestBody);
+
+    /**
+     * 上传指定序号的分片
+     *
+     * @param bucket      Bucket名称
+     * @param fileName    文件名称
+     * @param uploadId    分片上传ID
+     * @param partNumber  分片序号(1-10000)
+     * @param requestBody 请求体
+     * @return 已完成的分片
+     */
+    CompletableFuture<CompletedPart> multipartUploadParts(String bucket, String fileName, String uploadId, int partNumber, AsyncRequestBody requestBody);
+
+    /**
+     * 合并分片
+     *
+     * @param fileName 文件名称
+     * @param uploadId 分片上传ID
+     * @return 响应结果
+     */
+    CompletableFuture<CompleteMultipartUploadResponse> completedMultipartUpload(String fileName, String uploadId);
+
+    /**
+     * 合并分片
+     *
+     * @param bucket   Bucket名称
+     * @param fileName 文件名称
+     * @param uploadId 分片上传ID
+     * @return 响应结果
+     */
+    CompletableFuture<CompleteMultipartUploadResponse> completedMultipartUpload(String bucket, String fileName, String uploadId);
+
+    /**
+     * 取消分片上传
+     *
+     * @param fileName 文件名称
+     * @param uploadId 分片上传ID
+     * @return 响应结果
+     */
+    CompletableFuture<AbortMultipartUploadResponse> abortMultipartUpload(String fileName, String uploadId);
+
+    /**
+     * 取消分片上传
+     *
+     * @param bucket   Bucket名称
+     * @param fileName 文件名称
+     * @param uploadId 分片上传ID
+     * @return 响应结果
+     */
+    CompletableFuture<AbortMultipartUploadResponse> abortMultipartUpload(String bucket, String fileName, String uploadId);
+}
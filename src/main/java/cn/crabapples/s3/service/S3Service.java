@@ -1,6 +1,15 @@
 package cn.crabapples.s3.service;
 
+import cn.crabapples.cache.CachedBytes;
+import cn.crabapples.cache.DiskObjectCache;
+import cn.crabapples.cache.MetadataCache;
+import cn.crabapples.cache.OffHeapObjectCache;
+import cn.crabapples.limit.AdaptiveConcurrencyLimiter;
 import cn.crabapples.s3.config.S3ConfigProperties;
+import cn.crabapples.s3.http.S3ConnectionPoolMetrics;
+import cn.crabapples.utils.DirectoryTransferResult;
+import cn.crabapples.utils.HedgedRequestExecutor;
+import cn.crabapples.utils.PresignedUrlCache;
 import software.amazon.awssdk.core.ResponseBytes;
 import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.sync.RequestBody;
@@ -9,19 +18,70 @@ import software.amazon.awssdk.services.s3.model.*;
 import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
 import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
 
+import java.io.InputStream;
 import java.time.temporal.TemporalUnit;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public interface S3Service {
     S3Client getClient();
 
     S3ConfigProperties getConfig();
 
+    /**
+     * 同步客户端的连接池指标,可用于按并发量调整连接池大小
+     *
+     * @return 连接池指标
+     */
+    S3ConnectionPoolMetrics getConnectionPoolMetrics();
+
+    /**
+     * 自适应并发限制,可用于查看当前并发上限和排队数
+     *
+     * @return 并发限制,未启用时为null
+     */
+    AdaptiveConcurrencyLimiter getConcurrencyLimiter();
+
+    /**
+     * 对冲下载,可用于查看当前对冲延迟和对冲次数
+     *
+     * @return 对冲请求执行器,未启用时为null
+     */
+    HedgedRequestExecutor getHedgedRequestExecutor();
+
+    /**
+     * 下载地址缓存,可用于查看命中次数
+     *
+     * @return 预签名地址缓存
+     */
+    PresignedUrlCache<PresignedGetObjectRequest> getPresignedUrlCache();
+
+    /**
+     * 本地磁盘下载缓存,可用于查看命中次数
+     *
+     * @return 下载缓存,未启用时为null
+     */
+    DiskObjectCache<GetObjectResponse> getDownloadCache();
+
+    /**
+     * 堆外小文件缓存,可用于查看命中次数
+     *
+     * @return 小文件缓存,未启用时为null
+     */
+    OffHeapObjectCache<GetObjectResponse> getMemoryCache();
+
     /**
      * 初始化S3服务
      */
     void init();
 
+    /**
+     * 关闭S3服务
+     */
+    void destroy();
+
     CreateBucketResponse createBucket();
 
     /**
@@ -88,20 +148,66 @@ public interface S3Service {
     PutObjectResponse uploadFile(String bucket, String fileName, String path);
 
     /**
-     * 列出所有文件
+     * 列出所有文件(自动翻页)
      *
      * @return 文件列表
      */
     List<S3Object> listFiles();
 
     /**
-     * 列出所有文件
+     * 列出所有文件(自动翻页)
      *
      * @param bucket Bucket名称
      * @return 文件列表
      */
     List<S3Object> listFiles(String bucket);
 
+    /**
+     * 以流的方式列出文件
+     * 按需翻页并在消费当前页时预取下一页,内存中最多保留两页数据,使用完毕后应关闭流
+     *
+     * @param prefix     文件名前缀,可为null
+     * @param startAfter 从该文件名之后开始列出,可为null
+     * @param delimiter  分隔符,指定时只列出当前层级的文件,可为null
+     * @return 文件流
+     */
+    Stream<S3Object> listFilesAsStream(String prefix, String startAfter, String delimiter);
+
+    /**
+     * 以流的方式列出文件
+     * 按需翻页并在消费当前页时预取下一页,内存中最多保留两页数据,使用完毕后应关闭流
+     *
+     * @param bucket     Bucket名称
+     * @param prefix     文件名前缀,可为null
+     * @param startAfter 从该文件名之后开始列出,可为null
+     * @param delimiter  分隔符,指定时只列出当前层级的文件,可为null
+     * @return 文件流
+     */
+    Stream<S3Object> listFilesAsStream(String bucket, String prefix, String startAfter, String delimiter);
+
+    /**
+     * 并行列出文件
+     * 先按分隔符发现公共前缀,再同时列出各前缀下的文件并合并为一个流,使用完毕后应关闭流
+     *
+     * @param prefix    文件名前缀,可为null
+     * @param delimiter 发现分区使用的分隔符,为null时使用"/"
+     * @param ordered   是否按文件名顺序输出,无序时先列出的先输出
+     * @return 文件流
+     */
+    Stream<S3Object> listFilesInParallel(String prefix, String delimiter, boolean ordered);
+
+    /**
+     * 并行列出文件
+     * 先按分隔符发现公共前缀,再同时列出各前缀下的文件并合并为一个流,使用完毕后应关闭流
+     *
+     * @param bucket    Bucket名称
+     * @param prefix    文件名前缀,可为null
+     * @param delimiter 发现分区使用的分隔符,为null时使用"/"
+     * @param ordered   是否按文件名顺序输出,无序时先列出的先输出
+     * @return 文件流
+     */
+    Stream<S3Object> listFilesInParallel(String bucket, String prefix, String delimiter, boolean ordered);
+
 
     /**
      * 删除文件
@@ -120,6 +226,83 @@ public interface S3Service {
      */
     DeleteObjectResponse deleteFile(String bucket, String fileName);
 
+    /**
+     * 查询文件元数据(大小、ETag、类型、修改时间),启用元数据缓存时优先读取缓存
+     *
+     * @param fileName 文件名称
+     * @return 文件元数据,文件不存在时为null
+     */
+    HeadObjectResponse statObject(String fileName);
+
+    /**
+     * 查询文件元数据(大小、ETag、类型、修改时间),启用元数据缓存时优先读取缓存
+     *
+     * @param bucket   Bucket名称
+     * @param fileName 文件名称
+     * @return 文件元数据,文件不存在时为null
+     */
+    HeadObjectResponse statObject(String bucket, String fileName);
+
+    /**
+     * 文件是否存在,启用元数据缓存时优先读取缓存
+     *
+     * @param fileName 文件名称
+     * @return 是否存在
+     */
+    boolean exists(String fileName);
+
+    /**
+     * 文件是否存在,启用元数据缓存时优先读取缓存
+     *
+     * @param bucket   Bucket名称
+     * @param fileName 文件名称
+     * @return 是否存在
+     */
+    boolean exists(String bucket, String fileName);
+
+    /**
+     * 文件元数据缓存,可用于查看命中次数
+     *
+     * @return 元数据缓存
+     */
+    MetadataCache<HeadObjectResponse> getMetadataCache();
+
+    /**
+     * 批量删除文件
+     * 文件名按需从迭代器取出,每批使用一次DeleteObjects请求,多个批次并行执行
+     *
+     * @param fileNames 文件名称
+     * @return 删除失败的文件
+     */
+    List<S3Error> deleteFiles(Iterable<String> fileNames);
+
+    /**
+     * 批量删除文件
+     * 文件名按需从迭代器取出,每批使用一次DeleteObjects请求,多个批次并行执行
+     *
+     * @param bucket    Bucket名称
+     * @param fileNames 文件名称
+     * @return 删除失败的文件
+     */
+    List<S3Error> deleteFiles(String bucket, Iterable<String> fileNames);
+
+    /**
+     * 删除指定前缀下的所有文件,边列出边删除
+     *
+     * @param prefix 文件名前缀,不能为空
+     * @return 删除失败的文件
+     */
+    List<S3Error> deleteByPrefix(String prefix);
+
+    /**
+     * 删除指定前缀下的所有文件,边列出边删除
+     *
+     * @param bucket Bucket名称
+     * @param prefix 文件名前缀,不能为空
+     * @return 删除失败的文件
+     */
+    List<S3Error> deleteByPrefix(String bucket, String prefix);
+
 
     /**
      * 下载文件
@@ -149,7 +332,7 @@ public interface S3Service {
     ResponseInputStream<GetObjectResponse> downloadFileAsStream(String fileName);
 
     /**
-     * 下载文件
+     * 下载文件,启用下载缓存时优先读取本地缓存
      *
      * @param bucket   Bucket名称
      * @param fileName 文件名称
@@ -166,7 +349,7 @@ public interface S3Service {
     ResponseBytes<GetObjectResponse> downloadFileAsByte(String fileName);
 
     /**
-     * 下载文件
+     * 下载文件,启用堆外缓存时从缓存复制
      *
      * @param bucket   Bucket名称
      * @param fileName 文件名称
@@ -174,6 +357,23 @@ public interface S3Service {
      */
     ResponseBytes<GetObjectResponse> downloadFileAsByte(String bucket, String fileName);
 
+    /**
+     * 下载小文件,启用堆外缓存时返回缓存内容的只读视图
+     *
+     * @param fileName 文件名称
+     * @return 文件内容的租约,使用后需要关闭
+     */
+    CachedBytes<GetObjectResponse> downloadFileAsBuffer(String fileName);
+
+    /**
+     * 下载小文件,启用堆外缓存时返回缓存内容的只读视图
+     *
+     * @param bucket   Bucket名称
+     * @param fileName 文件名称
+     * @return 文件内容的租约,使用后需要关闭
+     */
+    CachedBytes<GetObjectResponse> downloadFileAsBuffer(String bucket, String fileName);
+
     /**
      * 下载文件
      *
@@ -193,6 +393,7 @@ public interface S3Service {
 
     /**
      * 生成临时下载地址
+     * 相同文件和有效期的地址在剩余有效期足够时直接从缓存返回
      *
      * @param fileName 文件名称
      * @param time     时间
@@ -203,6 +404,7 @@ public interface S3Service {
 
     /**
      * 生成临时下载地址
+     * 相同文件和有效期的地址在剩余有效期足够时直接从缓存返回
      *
      * @param bucket   Bucket名称
      * @param fileName 文件名称
@@ -212,6 +414,29 @@ public interface S3Service {
      */
     PresignedGetObjectRequest createTempDownloadUrl(String bucket, String fileName, Long time, TemporalUnit unit);
 
+    /**
+     * 批量生成临时下载地址
+     * 同一批次共用签名时间和签名密钥,文件较多时并行签名
+     *
+     * @param fileNames 文件名称
+     * @param time      时间
+     * @param unit      时间单位
+     * @return 文件名称与下载地址,顺序与输入一致
+     */
+    Map<String, String> createTempDownloadUrls(Collection<String> fileNames, Long time, TemporalUnit unit);
+
+    /**
+     * 批量生成临时下载地址
+     * 同一批次共用签名时间和签名密钥,文件较多时并行签名
+     *
+     * @param bucket    Bucket名称
+     * @param fileNames 文件名称
+     * @param time      时间
+     * @param unit      时间单位
+     * @return 文件名称与下载地址,顺序与输入一致
+     */
+    Map<String, String> createTempDownloadUrls(String bucket, Collection<String> fileNames, Long time, TemporalUnit unit);
+
     /**
      * 创建临时上传URL
      *
@@ -309,6 +534,31 @@ public interface S3Service {
      */
     List<CompletedPart> multipartUploadParts(String bucket, String fileName, String partPath, String uploadId);
 
+    /**
+     * 上传指定序号的分片
+     * 同一分片上传ID的各分片可由多个线程并发上传,合并时按分片序号排序
+     *
+     * @param fileName    文件名称
+     * @param uploadId    分片上传ID
+     * @param partNumber  分片序号(1-10000)
+     * @param requestBody 请求体
+     * @return 已完成的分片(按分片序号排序)
+     */
+    List<CompletedPart> multipartUploadParts(String fileName, String uploadId, int partNumber, RequestBody requestBody);
+
+    /**
+     * 上传指定序号的分片
+     * 同一分片上传ID的各分片可由多个线程并发上传,合并时按分片序号排序
+     *
+     * @param bucket      Bucket名称
+     * @param fileName    文件名称
+     * @param uploadId    分片上传ID
+     * @param partNumber  分片序号(1-10000)
+     * @param requestBody 请求体
+     * @return 已完成的分片(按分片序号排序)
+     */
+    List<CompletedPart> multipartUploadParts(String bucket, String fileName, String uploadId, int partNumber, RequestBody requestBody);
+
     /**
      * 合并分片
      *
@@ -346,4 +596,120 @@ public interface S3Service {
      * @return 响应结果
      */
     AbortMultipartUploadResponse abortMultipartUpload(String bucket, String fileName, String uploadId);
+
+    /**
+     * 并行分片上传文件
+     *
+     * @param fileName 文件名称
+     * @param path     文件路径
+     * @return 合并分片的响应结果
+     */
+    CompleteMultipartUploadResponse multipartUploadFile(String fileName, String path);
+
+    /**
+     * 并行分片上传文件
+     *
+     * @param bucket   Bucket名称
+     * @param fileName 文件名称
+     * @param path     文件路径
+     * @return 合并分片的响应结果
+     */
+    CompleteMultipartUploadResponse multipartUploadFile(String bucket, String fileName, String path);
+
+    /**
+     * 并行分片上传输入流
+     *
+     * @param fileName    文件名称
+     * @param inputStream 输入流
+     * @return 合并分片的响应结果
+     */
+    CompleteMultipartUploadResponse multipartUploadFile(String fileName, InputStream inputStream);
+
+    /**
+     * 并行分片上传输入流
+     *
+     * @param bucket      Bucket名称
+     * @param fileName    文件名称
+     * @param inputStream 输入流
+     * @return 合并分片的响应结果
+     */
+    CompleteMultipartUploadResponse multipartUploadFile(String bucket, String fileName, InputStream inputStream);
+
+    /**
+     * 并行分段下载文件
+     *
+     * @param fileName 文件名称
+     * @param path     文件保存路径
+     * @return 文件元数据
+     */
+    HeadObjectResponse multipartDownloadFile(String fileName, String path);
+
+    /**
+     * 并行分段下载文件
+     *
+     * @param bucket   Bucket名称
+     * @param fileName 文件名称
+     * @param path     文件保存路径
+     * @return 文件元数据
+     */
+    HeadObjectResponse multipartDownloadFile(String bucket, String fileName, String path);
+
+    /**
+     * 可续传下载文件,连接中断后从已写入的位置继续下载,并校验文件在下载期间未被修改
+     * 下载内容先写入"文件保存路径.part",完成后重命名;失败后再次下载同一文件时从断点继续
+     *
+     * @param fileName 文件名称
+     * @param path     文件保存路径
+     * @return 本次下载第一个响应
+     */
+    GetObjectResponse resumableDownloadFile(String fileName, String path);
+
+    /**
+     * 可续传下载文件,连接中断后从已写入的位置继续下载,并校验文件在下载期间未被修改
+     * 下载内容先写入"文件保存路径.part",完成后重命名;失败后再次下载同一文件时从断点继续
+     *
+     * @param bucket   Bucket名称
+     * @param fileName 文件名称
+     * @param path     文件保存路径
+     * @return 本次下载第一个响应
+     */
+    GetObjectResponse resumableDownloadFile(String bucket, String fileName, String path);
+
+    /**
+     * 并行上传目录下的所有文件,文件名称为前缀加上相对目录的路径,大文件使用分片上传
+     *
+     * @param prefix    文件名称前缀,可为null
+     * @param directory 本地目录
+     * @return 上传结果,包含失败的文件
+     */
+    DirectoryTransferResult uploadDirectory(String prefix, String directory);
+
+    /**
+     * 并行上传目录下的所有文件,文件名称为前缀加上相对目录的路径,大文件使用分片上传
+     *
+     * @param bucket    Bucket名称
+     * @param prefix    文件名称前缀,可为null
+     * @param directory 本地目录
+     * @return 上传结果,包含失败的文件
+     */
+    DirectoryTransferResult uploadDirectory(String bucket, String prefix, String directory);
+
+    /**
+     * 并行下载前缀下的所有文件到本地目录,本地路径为目录加上文件名称去掉前缀后的部分
+     *
+     * @param prefix    文件名称前缀,可为null
+     * @param directory 本地目录
+     * @return 下载结果,包含失败的文件
+     */
+    DirectoryTransferResult downloadDirectory(String prefix, String directory);
+
+    /**
+     * 并行下载前缀下的所有文件到本地目录,本地路径为目录加上文件名称去掉前缀后的部分
+     *
+     * @param bucket    Bucket名称
+     * @param prefix    文件名称前缀,可为null
+     * @param directory 本地目录
+     * @return 下载结果,包含失败的文件
+     */
+    DirectoryTransferResult downloadDirectory(String bucket, String prefix, String directory);
 }
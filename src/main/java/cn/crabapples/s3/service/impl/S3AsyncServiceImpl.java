@@ -0,0 +1,273 @@
+package cn.crabapples.s3.service.impl;
+
+import cn.crabapples.s3.config.S3ConfigProperties;
+import cn.crabapples.s3.service.S3AsyncService;
+import cn.crabapples.utils.MultipartRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.SdkEventLoopGroup;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.*;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+@Component
+public class S3AsyncServiceImpl implements S3AsyncService {
+    private static final Logger logger = LoggerFactory.getLogger(S3AsyncServiceImpl.class);
+    private final S3ConfigProperties config;
+    private final MultipartRegistry<CompletedPart> multipartRegistry = new MultipartRegistry<>();
+
+    public S3AsyncServiceImpl(S3ConfigProperties config) {
+        this.config = config;
+    }
+
+    /**
+     * 首次使用时创建,只使用同步服务的应用不会启动Netty的EventLoop线程和连接池
+     */
+    private volatile S3AsyncClient s3AsyncClient = null;
+
+    @Override
+    public S3AsyncClient getClient() {
+        return client();
+    }
+
+    @Override
+    public S3ConfigProperties getConfig() {
+        return config;
+    }
+
+    @Override
+    @PostConstruct
+    public void init() {
+        logger.info("初始化S3异步服务,异步客户端在首次使用时创建");
+    }
+
+    private S3AsyncClient client() {
+        S3AsyncClient client = s3AsyncClient;
+        if (client == null) {
+            synchronized (this) {
+                client = s3AsyncClient;
+                if (client == null) {
+                    client = createClient();
+                    s3AsyncClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    private S3AsyncClient createClient() {
+        logger.info("创建S3异步客户端");
+        S3ConfigProperties.Async async = config.getAsync();
+        S3ConfigProperties.Http http = config.getHttp();
+        NettyNioAsyncHttpClient.Builder httpClient = NettyNioAsyncHttpClient.builder()
+                .maxConcurrency(async.getMaxConcurrency())
+                .maxPendingConnectionAcquires(async.getMaxPendingConnectionAcquires())
+                .connectionAcquisitionTimeout(http.getConnectionAcquisitionTimeout())
+                .connectionTimeout(http.getConnectionTimeout())
+                .readTimeout(http.getSocketTimeout())
+                .writeTimeout(http.getSocketTimeout())
+                .connectionMaxIdleTime(http.getConnectionMaxIdleTime())
+                .useIdleConnectionReaper(http.isUseIdleConnectionReaper())
+                .tcpKeepAlive(http.isTcpKeepAlive());
+        if (http.getConnectionTimeToLive() != null) {
+            httpClient.connectionTimeToLive(http.getConnectionTimeToLive());
+        }
+        if (async.getEventLoopThreads() > 0) {
+            httpClient.eventLoopGroupBuilder(SdkEventLoopGroup.builder().numberOfThreads(async.getEventLoopThreads()));
+        }
+        return S3AsyncClient.builder()
+                .endpointOverride(URI.create(config.getUrl())) // RustFS 地址
+                .region(Region.of(config.getRegion())) // 可写死，RustFS 不校验 region
+                .credentialsProvider(
+                        StaticCredentialsProvider.create(
+                                AwsBasicCredentials.create(config.getAccessKey(), config.getSecretKey())
+                        )
+                )
+                .httpClientBuilder(httpClient)
+                .forcePathStyle(true) // 关键配置！RustFS 需启用 Path-Style
+                .build();
+    }
+
+    @Override
+    @PreDestroy
+    public synchronized void destroy() {
+        logger.info("关闭S3异步服务");
+        if (s3AsyncClient != null) {
+            s3AsyncClient.close();
+            s3AsyncClient = null;
+        }
+    }
+
+    @Override
+    public CompletableFuture<PutObjectResponse> uploadFile(String fileName, AsyncRequestBody requestBody) {
+        return uploadFile(config.getBucketName(), fileName, requestBody);
+    }
+
+    @Override
+    public CompletableFuture<PutObjectResponse> uploadFile(String bucket, String fileName, AsyncRequestBody requestBody) {
+        logger.info("异步上传文件: [{}]", fileName);
+        return client().putObject(builder -> builder.bucket(bucket).key(fileName), requestBody);
+    }
+
+    @Override
+    public CompletableFuture<PutObjectResponse> uploadFile(String fileName, String path) {
+        return uploadFile(config.getBucketName(), fileName, path);
+    }
+
+    @Override
+    public CompletableFuture<PutObjectResponse> uploadFile(String bucket, String fileName, String path) {
+        return uploadFile(bucket, fileName, AsyncRequestBody.fromFile(Paths.get(path)));
+    }
+
+    @Override
+    public CompletableFuture<GetObjectResponse> downloadFile(String fileName, String path) {
+        return downloadFile(config.getBucketName(), fileName, path);
+    }
+
+    @Override
+    public CompletableFuture<GetObjectResponse> downloadFile(String bucket, String fileName, String path) {
+        logger.info("异步下载文件: [{}]", fileName);
+        return client().getObject(builder -> builder.bucket(bucket).key(fileName),
+                AsyncResponseTransformer.toFile(Paths.get(path)));
+    }
+
+    @Override
+    public CompletableFuture<ResponseBytes<GetObjectResponse>> downloadFileAsByte(String fileName) {
+        return downloadFileAsByte(config.getBucketName(), fileName);
+    }
+
+    @Override
+    public CompletableFuture<ResponseBytes<GetObjectResponse>> downloadFileAsByte(String bucket, String fileName) {
+        logger.info("异步下载文件: [{}]", fileName);
+        return client().getObject(builder -> builder.bucket(bucket).key(fileName),
+                AsyncResponseTransformer.toBytes());
+    }
+
+    @Override
+    public CompletableFuture<List<S3Object>> listFiles() {
+        return listFiles(config.getBucketName());
+    }
+
+    @Override
+    public CompletableFuture<List<S3Object>> listFiles(String bucket) {
+        List<S3Object> objects = new ArrayList<>();
+        return client().listObjectsV2Paginator(builder -> builder.bucket(bucket))
+                .contents()
+                .subscribe(objects::add)
+                .thenApply(ignore -> objects);
+    }
+
+    @Override
+    public CompletableFuture<DeleteObjectResponse> deleteFile(String fileName) {
+        return deleteFile(config.getBucketName(), fileName);
+    }
+
+    @Override
+    public CompletableFuture<DeleteObjectResponse> deleteFile(String bucket, String fileName) {
+        logger.info("异步删除文件: [{}]", fileName);
+        return client().deleteObject(builder -> builder.bucket(bucket).key(fileName));
+    }
+
+    @Override
+    public CompletableFuture<String> createMultipartUploadId(String fileName) {
+        return createMultipartUploadId(config.getBucketName(), fileName);
+    }
+
+    @Override
+    public CompletableFuture<String> createMultipartUploadId(String bucket, String fileName) {
+        logger.info("生成分片上传ID: [{}]", fileName);
+        return client().createMultipartUpload(builder -> builder.bucket(bucket).key(fileName))
+                .thenApply(response -> {
+                    String uploadId = response.uploadId();
+                    multipartRegistry.register(uploadId);
+                    logger.info("分片上传ID: [{}]", uploadId);
+                    return uploadId;
+                });
+    }
+
+    @Override
+    public CompletableFuture<CompletedPart> multipartUploadParts(String fileName, String uploadId, int partNumber, AsyncRequestBody requestBody) {
+        return multipartUploadParts(config.getBucketName(), fileName, uploadId, partNumber, requestBody);
+    }
+
+    @Override
+    public CompletableFuture<CompletedPart> multipartUploadParts(String bucket, String fileName, String uploadId, int partNumber, AsyncRequestBody requestBody) {
+        logger.debug("上传分片,ID:[{}],partNumber:[{}]: [{}]", uploadId, partNumber, fileName);
+        if (!multipartRegistry.contains(uploadId)) {
+            CompletableFuture<CompletedPart> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new RuntimeException("分片上传不存在: " + uploadId));
+            return failed;
+        }
+        UploadPartRequest uploadPartRequest = UploadPartRequest.builder()
+                .bucket(bucket)
+                .key(fileName)
+                .uploadId(uploadId)
+                .partNumber(partNumber)
+                .build();
+        return client().uploadPart(uploadPartRequest, requestBody)
+                .thenApply(response -> {
+                    CompletedPart part = CompletedPart.builder()
+                            .partNumber(partNumber)
+                            .eTag(response.eTag())
+                            .build();
+                    multipartRegistry.putPart(uploadId, partNumber, part);
+                    logger.debug("上传分片完成,ID:[{}],partNumber:[{}]: [{}]", uploadId, partNumber, fileName);
+                    return part;
+                });
+    }
+
+    @Override
+    public CompletableFuture<CompleteMultipartUploadResponse> completedMultipartUpload(String fileName, String uploadId) {
+        return completedMultipartUpload(config.getBucketName(), fileName, uploadId);
+    }
+
+    @Override
+    public CompletableFuture<CompleteMultipartUploadResponse> completedMultipartUpload(String bucket, String fileName, String uploadId) {
+        logger.info("合并分片,ID:[{}]: [{}]", uploadId, fileName);
+        CompleteMultipartUploadRequest completeRequest = CompleteMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(fileName)
+                .uploadId(uploadId)
+                .multipartUpload(CompletedMultipartUpload.builder()
+                        .parts(multipartRegistry.parts(uploadId))
+                        .build())
+                .build();
+        return client().completeMultipartUpload(completeRequest)
+                .thenApply(response -> {
+                    multipartRegistry.remove(uploadId);
+                    logger.info("合并分片完成,ID:[{}]: [{}]", uploadId, fileName);
+                    return response;
+                });
+    }
+
+    @Override
+    public CompletableFuture<AbortMultipartUploadResponse> abortMultipartUpload(String fileName, String uploadId) {
+        return abortMultipartUpload(config.getBucketName(), fileName, uploadId);
+    }
+
+    @Override
+    public CompletableFuture<AbortMultipartUploadResponse> abortMultipartUpload(String bucket, String fileName, String uploadId) {
+        logger.info("取消分片上传,ID:[{}]: [{}]", uploadId, fileName);
+        return client().abortMultipartUpload(builder -> builder.bucket(bucket).key(fileName).uploadId(uploadId))
+                .thenApply(response -> {
+                    multipartRegistry.remove(uploadId);
+                    logger.info("取消分片上传完成,ID:[{}]: [{}]", uploadId, fileName);
+                    return response;
+                });
+    }
+}
@@ -1,15 +1,49 @@
 package cn.crabapples.s3.service.impl;
 
+import cn.crabapples.cache.CachedBytes;
+import cn.crabapples.cache.CachedObject;
+import cn.crabapples.cache.DiskObjectCache;
+import cn.crabapples.cache.MetadataCache;
+import cn.crabapples.cache.ObjectDownload;
+import cn.crabapples.cache.OffHeapObjectCache;
+import cn.crabapples.limit.AdaptiveConcurrencyLimiter;
+import cn.crabapples.limit.RequestGate;
+import cn.crabapples.limit.StorageThrottle;
+import cn.crabapples.metrics.StorageMetrics;
 import cn.crabapples.s3.config.S3ConfigProperties;
+import cn.crabapples.s3.http.S3ConnectionPoolMetrics;
 import cn.crabapples.s3.service.S3Service;
+import cn.crabapples.s3.transfer.S3Checksums;
+import cn.crabapples.s3.transfer.S3MultipartUploader;
+import cn.crabapples.s3.transfer.S3ObjectLister;
+import cn.crabapples.s3.transfer.S3RangedDownloader;
+import cn.crabapples.utils.BatchExecutor;
+import cn.crabapples.utils.ChecksumVerifyingInputStream;
+import cn.crabapples.utils.CountingInputStream;
+import cn.crabapples.utils.DirectoryTransfer;
+import cn.crabapples.utils.DirectoryTransferResult;
+import cn.crabapples.utils.HedgedRequestExecutor;
+import cn.crabapples.utils.MultipartRegistry;
+import cn.crabapples.utils.NamedThreadFactory;
+import cn.crabapples.utils.PresignedUrlCache;
+import cn.crabapples.utils.QueryStringPresigner;
+import cn.crabapples.utils.ResumableDownloader;
+import cn.crabapples.utils.UploadJournal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
 import software.amazon.awssdk.core.ResponseBytes;
 import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.exception.ApiCallAttemptTimeoutException;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
 import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.http.ContentStreamProvider;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
@@ -18,28 +52,65 @@ import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequ
 import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalUnit;
-import java.util.LinkedList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Component
 public class S3ServiceImpl implements S3Service {
     private static final Logger logger = LoggerFactory.getLogger(S3ServiceImpl.class);
+    private static final String BACKEND = "s3";
     private final S3ConfigProperties config;
-    private final ConcurrentHashMap<String, List<CompletedPart>> multipartMap = new ConcurrentHashMap<>();
+    private final MultipartRegistry<CompletedPart> multipartRegistry = new MultipartRegistry<>();
 
 
     public S3ServiceImpl(S3ConfigProperties config) {
         this.config = config;
     }
 
+    private StorageMetrics storageMetrics = StorageMetrics.NOOP;
+    private AdaptiveConcurrencyLimiter concurrencyLimiter = null;
+    private RequestGate gate;
+    private final StorageThrottle throttle = new StorageThrottle();
+    private HedgedRequestExecutor hedgedExecutor = null;
     private S3Client s3Client = null;
+    private S3ConnectionPoolMetrics connectionPoolMetrics = null;
     private S3Presigner s3Presigner = null;
+    private S3MultipartUploader multipartUploader = null;
+    private UploadJournal uploadJournal = null;
+    private S3RangedDownloader rangedDownloader = null;
+    private ResumableDownloader resumableDownloader = null;
+    private ExecutorService listExecutor = null;
+    private S3ObjectLister objectLister = null;
+    private BatchExecutor deleteExecutor = null;
+    private DirectoryTransfer directoryTransfer = null;
+    private PresignedUrlCache<PresignedGetObjectRequest> presignedUrlCache = null;
+    private QueryStringPresigner batchPresigner = null;
+    private DiskObjectCache<GetObjectResponse> downloadCache = null;
+    private OffHeapObjectCache<GetObjectResponse> memoryCache = null;
+    private MetadataCache<HeadObjectResponse> metadataCache = null;
 
     @Override
     public S3Client getClient() {
@@ -51,11 +122,69 @@ public class S3ServiceImpl implements S3Service {
         return config;
     }
 
+    /**
+     * 设置存储操作指标,容器中存在StorageMetrics时自动注入
+     *
+     * @param storageMetrics 存储操作指标
+     */
+    @Autowired(required = false)
+    public void setStorageMetrics(StorageMetrics storageMetrics) {
+        this.storageMetrics = storageMetrics;
+    }
+
+    @Override
+    public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    @Override
+    public HedgedRequestExecutor getHedgedRequestExecutor() {
+        return hedgedExecutor;
+    }
+
+    @Override
+    public S3ConnectionPoolMetrics getConnectionPoolMetrics() {
+        return connectionPoolMetrics;
+    }
+
+    @Override
+    public PresignedUrlCache<PresignedGetObjectRequest> getPresignedUrlCache() {
+        return presignedUrlCache;
+    }
+
+    @Override
+    public DiskObjectCache<GetObjectResponse> getDownloadCache() {
+        return downloadCache;
+    }
+
+    @Override
+    public OffHeapObjectCache<GetObjectResponse> getMemoryCache() {
+        return memoryCache;
+    }
+
+    @Override
+    public MetadataCache<HeadObjectResponse> getMetadataCache() {
+        return metadataCache;
+    }
+
 
     @Override
     @PostConstruct
     public void init() {
         logger.info("初始化S3服务");
+        S3ConfigProperties.Http http = config.getHttp();
+        ApacheHttpClient.Builder httpClient = ApacheHttpClient.builder()
+                .maxConnections(http.getMaxConnections())
+                .connectionAcquisitionTimeout(http.getConnectionAcquisitionTimeout())
+                .connectionTimeout(http.getConnectionTimeout())
+                .socketTimeout(http.getSocketTimeout())
+                .connectionMaxIdleTime(http.getConnectionMaxIdleTime())
+                .useIdleConnectionReaper(http.isUseIdleConnectionReaper())
+                .tcpKeepAlive(http.isTcpKeepAlive());
+        if (http.getConnectionTimeToLive() != null) {
+            httpClient.connectionTimeToLive(http.getConnectionTimeToLive());
+        }
+        connectionPoolMetrics = new S3ConnectionPoolMetrics();
         s3Client = S3Client.builder()
                 .endpointOverride(URI.create(config.getUrl())) // RustFS 地址
                 .region(Region.of(config.getRegion())) // 可写死，RustFS 不校验 region
@@ -64,6 +193,8 @@ public class S3ServiceImpl implements S3Service {
                                 AwsBasicCredentials.create(config.getAccessKey(), config.getSecretKey())
                         )
                 )
+                .httpClientBuilder(httpClient)
+                .overrideConfiguration(builder -> builder.addMetricPublisher(connectionPoolMetrics))
                 .forcePathStyle(true) // 关键配置！RustFS 需启用 Path-Style
                 .build();
         s3Presigner = S3Presigner.builder()
@@ -75,9 +206,90 @@ public class S3ServiceImpl implements S3Service {
                         )
                 )
                 .build();
+        S3ConfigProperties.Limit limit = config.getLimit();
+        if (limit.isEnabled()) {
+            concurrencyLimiter = new AdaptiveConcurrencyLimiter(limit.getInitialLimit(), limit.getMinLimit(), limit.getMaxLimit(),
+                    limit.getBackoffRatio(), limit.getLatencyTolerance(), limit.getMaxQueue(), limit.getQueueTimeout());
+        }
+        gate = new RequestGate(concurrencyLimiter, throttle, S3ServiceImpl::isThrottled);
+        S3ConfigProperties.Multipart multipart = config.getMultipart();
+        boolean checksum = config.getChecksum().isEnabled();
+        multipartUploader = new S3MultipartUploader(s3Client, multipart.getPartSize(), multipart.getParallelism(), checksum, gate);
+        S3ConfigProperties.Checkpoint checkpoint = config.getCheckpoint();
+        if (checkpoint.isEnabled()) {
+            uploadJournal = new UploadJournal(Paths.get(checkpoint.getDirectory()));
+        }
+        S3ConfigProperties.Download download = config.getDownload();
+        rangedDownloader = new S3RangedDownloader(s3Client, download.getPartSize(), download.getParallelism(), checksum, gate);
+        S3ConfigProperties.Resume resume = config.getResume();
+        resumableDownloader = new ResumableDownloader(resume.getMaxRetries(), resume.getRetryDelay());
+        S3ConfigProperties.Listing listing = config.getListing();
+        ThreadPoolExecutor listPool = new ThreadPoolExecutor(listing.getConcurrency(), listing.getConcurrency(), 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new NamedThreadFactory("s3-list"));
+        listPool.allowCoreThreadTimeOut(true);
+        listExecutor = listPool;
+        objectLister = new S3ObjectLister(s3Client, listExecutor, listing.getPageSize(), listing.getConcurrency(), gate);
+        S3ConfigProperties.Delete delete = config.getDelete();
+        deleteExecutor = new BatchExecutor("s3-delete", delete.getBatchSize(), delete.getParallelism());
+        directoryTransfer = new DirectoryTransfer("s3-directory", config.getDirectory().getParallelism());
+        S3ConfigProperties.Presign presign = config.getPresign();
+        presignedUrlCache = new PresignedUrlCache<>(presign.getCacheSize(), presign.getMinRemainingRatio());
+        batchPresigner = new QueryStringPresigner(config.getUrl(), config.getAccessKey(), config.getSecretKey(),
+                config.getRegion(), presign.getParallelism());
+        for (S3ConfigProperties.Throttle.Rule rule : config.getThrottle().getRules()) {
+            throttle.addRule(rule.getBucket(), rule.getOperation(), rule.getRequestsPerSecond(), rule.getBytesPerSecond());
+        }
+        S3ConfigProperties.Hedge hedge = config.getHedge();
+        if (hedge.isEnabled()) {
+            hedgedExecutor = new HedgedRequestExecutor("s3-hedge", hedge.getPercentile(), hedge.getMinDelay(), hedge.getBudgetRatio());
+        }
+        S3ConfigProperties.Stat stat = config.getStat();
+        metadataCache = new MetadataCache<>(stat.getCacheSize(), stat.getTtl(), stat.getNegativeTtl());
+        S3ConfigProperties.Cache cache = config.getCache();
+        if (cache.isEnabled()) {
+            downloadCache = new DiskObjectCache<>(Paths.get(cache.getDirectory()), cache.getMaxSize(),
+                    cache.getMaxObjectSize(), cache.getRevalidateAfter());
+        }
+        S3ConfigProperties.MemoryCache memory = config.getMemoryCache();
+        if (memory.isEnabled()) {
+            memoryCache = new OffHeapObjectCache<>(memory.getMaxSize(), memory.getMaxObjectSize(), memory.getRevalidateAfter());
+        }
         logger.info("初始化S3服务完成");
     }
 
+    @Override
+    @PreDestroy
+    public void destroy() {
+        logger.info("关闭S3服务");
+        if (multipartUploader != null) {
+            multipartUploader.shutdown();
+        }
+        if (rangedDownloader != null) {
+            rangedDownloader.shutdown();
+        }
+        if (listExecutor != null) {
+            listExecutor.shutdownNow();
+        }
+        if (hedgedExecutor != null) {
+            hedgedExecutor.shutdown();
+        }
+        if (deleteExecutor != null) {
+            deleteExecutor.shutdown();
+        }
+        if (directoryTransfer != null) {
+            directoryTransfer.shutdown();
+        }
+        if (batchPresigner != null) {
+            batchPresigner.shutdown();
+        }
+        if (s3Presigner != null) {
+            s3Presigner.close();
+        }
+        if (s3Client != null) {
+            s3Client.close();
+        }
+    }
+
     @Override
     public CreateBucketResponse createBucket() {
         return createBucket(config.getBucketName());
@@ -86,23 +298,25 @@ public class S3ServiceImpl implements S3Service {
     @Override
     public CreateBucketResponse createBucket(String bucket) {
         logger.debug("创建Bucket: [{}]", bucket);
-        try {
-            return s3Client.createBucket(CreateBucketRequest.builder().bucket(bucket).build());
-        } catch (BucketAlreadyExistsException | BucketAlreadyOwnedByYouException e) {
-            logger.error("Bucket[{}]已经存在", bucket);
-            throw new RuntimeException("Bucket已经存在");
-        }
+        return execute(StorageMetrics.BUCKET, bucket, () -> {
+            try {
+                return s3Client.createBucket(CreateBucketRequest.builder().bucket(bucket).build());
+            } catch (BucketAlreadyExistsException | BucketAlreadyOwnedByYouException e) {
+                logger.error("Bucket[{}]已经存在", bucket);
+                throw new RuntimeException("Bucket已经存在");
+            }
+        });
     }
 
     @Override
     public List<Bucket> listBuckets() {
-        return s3Client.listBuckets().buckets();
+        return execute(StorageMetrics.BUCKET, null, () -> s3Client.listBuckets().buckets());
     }
 
     @Override
     public DeleteBucketResponse deleteBucket(String bucket) {
         logger.info("删除Bucket: [{}]", bucket);
-        return s3Client.deleteBucket(builder -> builder.bucket(bucket));
+        return execute(StorageMetrics.BUCKET, bucket, () -> s3Client.deleteBucket(builder -> builder.bucket(bucket)));
     }
 
     @Override
@@ -113,13 +327,18 @@ public class S3ServiceImpl implements S3Service {
     @Override
     public PutObjectResponse uploadFile(String bucket, String fileName, RequestBody requestBody) {
         logger.info("上传文件: [{}]", fileName);
-        return s3Client.putObject(
+        long length = requestBody.optionalContentLength().orElse(0L);
+        RequestBody body = throttleBody(StorageMetrics.UPLOAD, bucket, requestBody);
+        PutObjectResponse result = execute(StorageMetrics.UPLOAD, bucket, response -> length, () -> s3Client.putObject(
                 PutObjectRequest.builder()
                         .bucket(bucket)
                         .key(fileName)
+                        .checksumAlgorithm(checksumAlgorithm())
                         .build(),
-                requestBody
-        );
+                body
+        ));
+        invalidateCache(bucket, fileName);
+        return result;
     }
 
     @Override
@@ -130,12 +349,16 @@ public class S3ServiceImpl implements S3Service {
     @Override
     public PutObjectResponse uploadFile(String bucket, String fileName, String path) {
         logger.info("上传文件: [{}]", fileName);
-        return s3Client.putObject(
+        PutObjectResponse result = execute(StorageMetrics.UPLOAD, bucket, response -> new File(path).length(), () -> s3Client.putObject(
                 PutObjectRequest.builder()
                         .bucket(bucket)
-                        .key(fileName).build(),
-                Paths.get(path)
-        );
+                        .key(fileName)
+                        .checksumAlgorithm(checksumAlgorithm())
+                        .build(),
+                throttleBody(StorageMetrics.UPLOAD, bucket, RequestBody.fromFile(Paths.get(path)))
+        ));
+        invalidateCache(bucket, fileName);
+        return result;
     }
 
     @Override
@@ -145,7 +368,33 @@ public class S3ServiceImpl implements S3Service {
 
     @Override
     public List<S3Object> listFiles(String bucket) {
-        return s3Client.listObjectsV2(builder -> builder.bucket(bucket)).contents();
+        return executeFanOut(StorageMetrics.LIST, bucket, null, () -> {
+            try (Stream<S3Object> stream = objectLister.iterator(bucket, null, null, null).stream()) {
+                return stream.collect(Collectors.toList());
+            }
+        });
+    }
+
+    @Override
+    public Stream<S3Object> listFilesAsStream(String prefix, String startAfter, String delimiter) {
+        return listFilesAsStream(config.getBucketName(), prefix, startAfter, delimiter);
+    }
+
+    @Override
+    public Stream<S3Object> listFilesAsStream(String bucket, String prefix, String startAfter, String delimiter) {
+        return executeFanOut(StorageMetrics.LIST, bucket, null, () -> objectLister.iterator(bucket, prefix, startAfter, delimiter).stream());
+    }
+
+    @Override
+    public Stream<S3Object> listFilesInParallel(String prefix, String delimiter, boolean ordered) {
+        return listFilesInParallel(config.getBucketName(), prefix, delimiter, ordered);
+    }
+
+    @Override
+    public Stream<S3Object> listFilesInParallel(String bucket, String prefix, String delimiter, boolean ordered) {
+        logger.info("并行列出文件: [{}],前缀:[{}]", bucket, prefix);
+        return executeFanOut(StorageMetrics.LIST, bucket, null, () ->
+                objectLister.parallelStream(bucket, prefix, delimiter == null ? "/" : delimiter, ordered));
     }
 
     @Override
@@ -156,7 +405,84 @@ public class S3ServiceImpl implements S3Service {
     @Override
     public DeleteObjectResponse deleteFile(String bucket, String fileName) {
         logger.info("删除文件: [{}]", fileName);
-        return s3Client.deleteObject(builder -> builder.bucket(bucket).key(fileName));
+        DeleteObjectResponse result = execute(StorageMetrics.DELETE, bucket,
+                () -> s3Client.deleteObject(builder -> builder.bucket(bucket).key(fileName)));
+        invalidateCache(bucket, fileName);
+        return result;
+    }
+
+    @Override
+    public HeadObjectResponse statObject(String fileName) {
+        return statObject(config.getBucketName(), fileName);
+    }
+
+    @Override
+    public HeadObjectResponse statObject(String bucket, String fileName) {
+        return metadataCache.get(bucket, fileName, () -> execute(StorageMetrics.STAT, bucket, () -> {
+            try {
+                return s3Client.headObject(builder -> builder.bucket(bucket).key(fileName));
+            } catch (S3Exception e) {
+                if (e.statusCode() == 404) {
+                    return null;
+                }
+                throw e;
+            }
+        }));
+    }
+
+    @Override
+    public boolean exists(String fileName) {
+        return exists(config.getBucketName(), fileName);
+    }
+
+    @Override
+    public boolean exists(String bucket, String fileName) {
+        return statObject(bucket, fileName) != null;
+    }
+
+    @Override
+    public List<S3Error> deleteFiles(Iterable<String> fileNames) {
+        return deleteFiles(config.getBucketName(), fileNames);
+    }
+
+    @Override
+    public List<S3Error> deleteFiles(String bucket, Iterable<String> fileNames) {
+        logger.info("批量删除文件: [{}]", bucket);
+        return executeFanOut(StorageMetrics.DELETE, bucket, null, () -> deleteBatches(bucket, fileNames.iterator()));
+    }
+
+    @Override
+    public List<S3Error> deleteByPrefix(String prefix) {
+        return deleteByPrefix(config.getBucketName(), prefix);
+    }
+
+    @Override
+    public List<S3Error> deleteByPrefix(String bucket, String prefix) {
+        if (prefix == null || prefix.isEmpty()) {
+            throw new RuntimeException("删除前缀不能为空");
+        }
+        logger.info("删除前缀下的文件: [{}],前缀:[{}]", bucket, prefix);
+        return executeFanOut(StorageMetrics.DELETE, bucket, null, () -> {
+            try (Stream<String> keys = objectLister.iterator(bucket, prefix, null, null).stream().map(S3Object::key)) {
+                return deleteBatches(bucket, keys.iterator());
+            }
+        });
+    }
+
+    private List<S3Error> deleteBatches(String bucket, Iterator<String> keys) {
+        List<S3Error> errors = deleteExecutor.execute(keys, batch -> {
+            List<ObjectIdentifier> objects = batch.stream()
+                    .map(key -> ObjectIdentifier.builder().key(key).build())
+                    .collect(Collectors.toList());
+            DeleteObjectsResponse response = gate.call(StorageMetrics.DELETE, bucket, () -> s3Client.deleteObjects(builder -> builder
+                    .bucket(bucket)
+                    .delete(delete -> delete.objects(objects).quiet(true))));
+            batch.forEach(key -> invalidateCache(bucket, key));
+            logger.debug("批量删除文件: [{}],本批数量:[{}],失败数量:[{}]", bucket, objects.size(), response.errors().size());
+            return response.errors();
+        });
+        logger.info("批量删除文件完成: [{}],失败数量:[{}]", bucket, errors.size());
+        return errors;
     }
 
     @Override
@@ -168,7 +494,47 @@ public class S3ServiceImpl implements S3Service {
     @Override
     public GetObjectResponse downloadFile(String bucket, String fileName, String path) {
         logger.info("下载文件: [{}]", fileName);
-        return s3Client.getObject(builder -> builder.bucket(bucket).key(fileName), Paths.get(path));
+        if (throttle.limitsBytes(StorageMetrics.DOWNLOAD, bucket) || config.getChecksum().isEnabled()) {
+            return execute(StorageMetrics.DOWNLOAD, bucket, response -> length(response.contentLength()),
+                    () -> downloadVerified(bucket, fileName, Paths.get(path)));
+        }
+        return execute(StorageMetrics.DOWNLOAD, bucket, response -> length(response.contentLength()),
+                () -> s3Client.getObject(builder -> builder.bucket(bucket).key(fileName), Paths.get(path)));
+    }
+
+    /**
+     * 先下载到目标文件所在目录的临时文件,读完(校验和一致)后再原子地替换目标文件,
+     * 下载失败或校验和不一致时删除临时文件,目标文件保持不变
+     */
+    private GetObjectResponse downloadVerified(String bucket, String fileName, Path target) {
+        Path temp = null;
+        try {
+            Path directory = target.toAbsolutePath().getParent();
+            temp = Files.createTempFile(directory, target.getFileName() + ".", ".tmp");
+            ResponseInputStream<GetObjectResponse> stream = getObject(bucket, fileName, null);
+            try (InputStream in = throttle.throttle(StorageMetrics.DOWNLOAD, bucket, stream)) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return stream.response();
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new RuntimeException("下载文件失败: " + fileName, e);
+        } catch (RuntimeException | Error e) {
+            deleteQuietly(temp);
+            throw e;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("删除临时文件失败: [{}]", file, e);
+        }
     }
 
     @Override
@@ -179,8 +545,52 @@ public class S3ServiceImpl implements S3Service {
     @Override
     public ResponseInputStream<GetObjectResponse> downloadFileAsStream(String bucket, String fileName) {
         logger.info("下载文件: [{}]", fileName);
-        return s3Client.getObject(builder -> builder.bucket(bucket)
-                .key(fileName));
+        if (downloadCache == null) {
+            return execute(StorageMetrics.DOWNLOAD, bucket, stream -> length(stream.response().contentLength()), () -> {
+                ResponseInputStream<GetObjectResponse> stream = getObject(bucket, fileName, null);
+                if (!throttle.limitsBytes(StorageMetrics.DOWNLOAD, bucket)) {
+                    return stream;
+                }
+                return new ResponseInputStream<>(stream.response(),
+                        AbortableInputStream.create(throttle.throttle(StorageMetrics.DOWNLOAD, bucket, stream), stream));
+            });
+        }
+        CachedObject<GetObjectResponse> object = downloadCache.get(bucket, fileName, etag -> loadObject(bucket, fileName, etag));
+        return new ResponseInputStream<>(object.getMetadata(), AbortableInputStream.create(object.getInputStream()));
+    }
+
+    /**
+     * 下载缓存和堆外缓存的下载操作,携带ETag时文件未修改返回null
+     * 只有缓存未命中或需要重新验证时才访问存储,命中缓存不经过限流、并发限制和指标
+     */
+    private ObjectDownload<GetObjectResponse> loadObject(String bucket, String fileName, String etag) {
+        return execute(StorageMetrics.DOWNLOAD, bucket, download -> Math.max(0, download.getLength()), () -> {
+            try {
+                ResponseInputStream<GetObjectResponse> stream = getObject(bucket, fileName, etag);
+                GetObjectResponse response = stream.response();
+                long contentLength = response.contentLength() == null ? -1 : response.contentLength();
+                return new ObjectDownload<>(response, response.eTag(), contentLength,
+                        throttle.throttle(StorageMetrics.DOWNLOAD, bucket, stream));
+            } catch (S3Exception e) {
+                if (e.statusCode() == 304) {
+                    return null;
+                }
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * 通过本服务修改或删除文件后移除缓存
+     */
+    private void invalidateCache(String bucket, String fileName) {
+        if (downloadCache != null) {
+            downloadCache.invalidate(bucket, fileName);
+        }
+        if (memoryCache != null) {
+            memoryCache.invalidate(bucket, fileName);
+        }
+        metadataCache.invalidate(bucket, fileName);
     }
 
     @Override
@@ -191,8 +601,81 @@ public class S3ServiceImpl implements S3Service {
     @Override
     public ResponseBytes<GetObjectResponse> downloadFileAsByte(String bucket, String fileName) {
         logger.info("下载文件: [{}]", fileName);
-        return s3Client.getObjectAsBytes(builder -> builder.bucket(bucket)
-                .key(fileName));
+        if (memoryCache == null) {
+            return execute(StorageMetrics.DOWNLOAD, bucket, bytes -> bytes.asByteArrayUnsafe().length,
+                    () -> getObjectAsBytes(bucket, fileName));
+        }
+        try (CachedBytes<GetObjectResponse> bytes = downloadFileAsBuffer(bucket, fileName)) {
+            return ResponseBytes.fromByteArrayUnsafe(bytes.getMetadata(), bytes.toByteArray());
+        }
+    }
+
+    @Override
+    public CachedBytes<GetObjectResponse> downloadFileAsBuffer(String fileName) {
+        return downloadFileAsBuffer(config.getBucketName(), fileName);
+    }
+
+    @Override
+    public CachedBytes<GetObjectResponse> downloadFileAsBuffer(String bucket, String fileName) {
+        logger.debug("下载小文件: [{}]", fileName);
+        if (memoryCache == null) {
+            return execute(StorageMetrics.DOWNLOAD, bucket, CachedBytes::getLength, () -> {
+                ResponseBytes<GetObjectResponse> bytes = getObjectAsBytes(bucket, fileName);
+                return new CachedBytes<>(bytes.response(), bytes.asByteBuffer());
+            });
+        }
+        return memoryCache.get(bucket, fileName, etag -> loadObject(bucket, fileName, etag));
+    }
+
+    /**
+     * 下载到字节数组,启用对冲、校验和或限制传输速率时先获取响应流再读取
+     */
+    private ResponseBytes<GetObjectResponse> getObjectAsBytes(String bucket, String fileName) {
+        if (hedgedExecutor == null && !throttle.limitsBytes(StorageMetrics.DOWNLOAD, bucket) && !config.getChecksum().isEnabled()) {
+            return s3Client.getObjectAsBytes(builder -> builder.bucket(bucket).key(fileName));
+        }
+        ResponseInputStream<GetObjectResponse> stream = getObject(bucket, fileName, null);
+        try (InputStream in = throttle.throttle(StorageMetrics.DOWNLOAD, bucket, stream)) {
+            return ResponseBytes.fromInputStream(stream.response(), in);
+        } catch (IOException e) {
+            throw new RuntimeException("读取文件失败: " + fileName, e);
+        }
+    }
+
+    /**
+     * 获取下载流,启用对冲时首字节超过对冲延迟没有到达则发起相同的请求(单独获取并发许可),先返回的响应生效,另一个响应被中止;
+     * 启用校验和时读取过程中计算CRC32C,读到末尾时与服务端的校验和不一致则抛出IOException
+     *
+     * @param etag 不为null时使用条件下载
+     */
+    private ResponseInputStream<GetObjectResponse> getObject(String bucket, String fileName, String etag) {
+        boolean checksum = config.getChecksum().isEnabled();
+        Supplier<ResponseInputStream<GetObjectResponse>> request = () -> s3Client.getObject(builder -> {
+            builder.bucket(bucket).key(fileName).ifNoneMatch(etag);
+            if (checksum) {
+                builder.overrideConfiguration(S3Checksums::enableChecksumMode);
+            }
+        });
+        ResponseInputStream<GetObjectResponse> stream = hedgedExecutor == null ? request.get()
+                : hedgedExecutor.execute(request, () -> gate.call(StorageMetrics.DOWNLOAD, bucket,
+                hedged -> length(hedged.response().contentLength()), request), ResponseInputStream::abort);
+        return checksum ? verify(bucket, fileName, stream) : stream;
+    }
+
+    private ResponseInputStream<GetObjectResponse> verify(String bucket, String fileName, ResponseInputStream<GetObjectResponse> stream) {
+        GetObjectResponse response = stream.response();
+        Integer expected;
+        try {
+            expected = S3Checksums.expectedCrc32c(s3Client, bucket, fileName, response.eTag(), response.checksumCRC32C());
+        } catch (RuntimeException e) {
+            stream.abort();
+            throw e;
+        }
+        if (expected == null) {
+            return stream;
+        }
+        return new ResponseInputStream<>(response,
+                AbortableInputStream.create(new ChecksumVerifyingInputStream(stream, expected, fileName), stream));
     }
 
     @Override
@@ -203,8 +686,8 @@ public class S3ServiceImpl implements S3Service {
     @Override
     public ResponseInputStream<GetObjectTorrentResponse> downloadFileAsTorrentStream(String bucket, String fileName) {
         logger.info("下载文件: [{}]", fileName);
-        return s3Client.getObjectTorrent(builder -> builder.bucket(bucket)
-                .key(fileName));
+        return execute(StorageMetrics.DOWNLOAD, bucket, () -> s3Client.getObjectTorrent(builder -> builder.bucket(bucket)
+                .key(fileName)));
     }
 
 
@@ -217,9 +700,21 @@ public class S3ServiceImpl implements S3Service {
     public PresignedGetObjectRequest createTempDownloadUrl(String bucket, String fileName, Long time, TemporalUnit unit) {
         logger.info("分享文件: [{}]", fileName);
         Duration duration = Duration.of(time, unit);
-        return s3Presigner.presignGetObject(request -> request.getObjectRequest(builder ->
-                        builder.bucket(bucket).key(fileName).build())
-                .signatureDuration(duration).build());
+        return execute(StorageMetrics.PRESIGN, bucket, () -> presignedUrlCache.get(bucket, fileName, "GET", duration, () ->
+                s3Presigner.presignGetObject(request -> request.getObjectRequest(builder ->
+                                builder.bucket(bucket).key(fileName).build())
+                        .signatureDuration(duration).build())));
+    }
+
+    @Override
+    public Map<String, String> createTempDownloadUrls(Collection<String> fileNames, Long time, TemporalUnit unit) {
+        return createTempDownloadUrls(config.getBucketName(), fileNames, time, unit);
+    }
+
+    @Override
+    public Map<String, String> createTempDownloadUrls(String bucket, Collection<String> fileNames, Long time, TemporalUnit unit) {
+        logger.info("批量分享文件: [{}],数量:[{}]", bucket, fileNames.size());
+        return execute(StorageMetrics.PRESIGN, bucket, () -> batchPresigner.presignGet(bucket, fileNames, Duration.of(time, unit)));
     }
 
     @Override
@@ -240,11 +735,11 @@ public class S3ServiceImpl implements S3Service {
     @Override
     public PresignedPutObjectRequest createTempUploadUrl(String bucket, String fileName, Long time, TemporalUnit unit) {
         logger.info("生成临时上传地址: [{}]", fileName);
-        return s3Presigner.presignPutObject(
+        return execute(StorageMetrics.PRESIGN, bucket, () -> s3Presigner.presignPutObject(
                 build ->
                         build.putObjectRequest(b -> b.bucket(bucket).key(fileName).build())
                                 .signatureDuration(Duration.of(time, unit))
-        );
+        ));
     }
 
 
@@ -256,12 +751,13 @@ public class S3ServiceImpl implements S3Service {
     @Override
     public String createMultipartUploadId(String bucket, String fileName) {
         logger.info("生成分片上传ID: [{}]", fileName);
-        CreateMultipartUploadResponse createResponse = s3Client.createMultipartUpload(builder ->
-                builder.bucket(bucket)
-                        .key(fileName)
-                        .build());
+        CreateMultipartUploadResponse createResponse = execute(StorageMetrics.MULTIPART_CREATE, bucket, () ->
+                s3Client.createMultipartUpload(builder ->
+                        builder.bucket(bucket)
+                                .key(fileName)
+                                .build()));
         String uploadId = createResponse.uploadId();
-        multipartMap.put(uploadId, new LinkedList<>());
+        multipartRegistry.register(uploadId);
         logger.info("分片上传ID: [{}]", uploadId);
         return uploadId;
     }
@@ -273,24 +769,7 @@ public class S3ServiceImpl implements S3Service {
 
     @Override
     public List<CompletedPart> multipartUploadParts(String bucket, String fileName, String uploadId, RequestBody requestBody) {
-        logger.info("上传分片,ID:[{}]: [{}]", uploadId, fileName);
-        List<CompletedPart> completedParts = multipartMap.get(uploadId);
-        Integer index = completedParts.size() + 1;
-        UploadPartRequest uploadPartRequest = UploadPartRequest.builder()
-                .bucket(bucket)
-                .key(fileName)
-                .uploadId(uploadId)
-                .partNumber(index)
-                .build();
-        UploadPartResponse uploadPartResponse = s3Client.uploadPart(uploadPartRequest, requestBody);
-        completedParts.add(CompletedPart.builder()
-                .partNumber(index)
-                .eTag(uploadPartResponse.eTag())
-                .build()
-        );
-        multipartMap.put(uploadId, completedParts);
-        logger.info("上传分片完成,ID:[{}]: [{}]", uploadId, fileName);
-        return completedParts;
+        return multipartUploadParts(bucket, fileName, uploadId, multipartRegistry.nextPartNumber(uploadId), requestBody);
     }
 
     @Override
@@ -300,24 +779,37 @@ public class S3ServiceImpl implements S3Service {
 
     @Override
     public List<CompletedPart> multipartUploadParts(String bucket, String fileName, String partPath, String uploadId) {
-        logger.info("上传分片,ID:[{}]: [{}]", uploadId, fileName);
-        List<CompletedPart> completedParts = multipartMap.get(uploadId);
-        Integer index = completedParts.size() + 1;
+        return multipartUploadParts(bucket, fileName, uploadId, RequestBody.fromFile(Paths.get(partPath)));
+    }
+
+    @Override
+    public List<CompletedPart> multipartUploadParts(String fileName, String uploadId, int partNumber, RequestBody requestBody) {
+        return multipartUploadParts(config.getBucketName(), fileName, uploadId, partNumber, requestBody);
+    }
+
+    @Override
+    public List<CompletedPart> multipartUploadParts(String bucket, String fileName, String uploadId, int partNumber, RequestBody requestBody) {
+        logger.info("上传分片,ID:[{}],partNumber:[{}]: [{}]", uploadId, partNumber, fileName);
+        if (!multipartRegistry.contains(uploadId)) {
+            throw new RuntimeException("分片上传不存在: " + uploadId);
+        }
         UploadPartRequest uploadPartRequest = UploadPartRequest.builder()
                 .bucket(bucket)
                 .key(fileName)
                 .uploadId(uploadId)
-                .partNumber(index)
+                .partNumber(partNumber)
                 .build();
-        UploadPartResponse uploadPartResponse = s3Client.uploadPart(uploadPartRequest, Paths.get(partPath));
-        completedParts.add(CompletedPart.builder()
-                .partNumber(index)
+        long length = requestBody.optionalContentLength().orElse(0L);
+        RequestBody body = throttleBody(StorageMetrics.MULTIPART_PART, bucket, requestBody);
+        UploadPartResponse uploadPartResponse = execute(StorageMetrics.MULTIPART_PART, bucket, response -> length,
+                () -> s3Client.uploadPart(uploadPartRequest, body));
+        multipartRegistry.putPart(uploadId, partNumber, CompletedPart.builder()
+                .partNumber(partNumber)
                 .eTag(uploadPartResponse.eTag())
                 .build()
         );
-        multipartMap.put(uploadId, completedParts);
-        logger.info("上传分片完成,ID:[{}]: [{}]", uploadId, fileName);
-        return completedParts;
+        logger.info("上传分片完成,ID:[{}],partNumber:[{}]: [{}]", uploadId, partNumber, fileName);
+        return multipartRegistry.parts(uploadId);
     }
 
     @Override
@@ -329,7 +821,7 @@ public class S3ServiceImpl implements S3Service {
     public CompleteMultipartUploadResponse completedMultipartUpload(String bucket, String fileName, String uploadId) {
         logger.info("合并分片,ID:[{}]: [{}]", uploadId, fileName);
         CompletedMultipartUpload completedUpload = CompletedMultipartUpload.builder()
-                .parts(multipartMap.get(uploadId))
+                .parts(multipartRegistry.parts(uploadId))
                 .build();
         CompleteMultipartUploadRequest completeRequest = CompleteMultipartUploadRequest.builder()
                 .bucket(bucket)
@@ -337,8 +829,10 @@ public class S3ServiceImpl implements S3Service {
                 .uploadId(uploadId)
                 .multipartUpload(completedUpload)
                 .build();
-        CompleteMultipartUploadResponse completeResponse = s3Client.completeMultipartUpload(completeRequest);
-        multipartMap.remove(uploadId);
+        CompleteMultipartUploadResponse completeResponse = execute(StorageMetrics.MULTIPART_COMPLETE, bucket, () ->
+                s3Client.completeMultipartUpload(completeRequest));
+        invalidateCache(bucket, fileName);
+        multipartRegistry.remove(uploadId);
         logger.info("合并分片完成,ID:[{}]: [{}]", uploadId, fileName);
         return completeResponse;
     }
@@ -356,9 +850,223 @@ public class S3ServiceImpl implements S3Service {
                 .key(fileName)
                 .uploadId(uploadId)
                 .build();
-        AbortMultipartUploadResponse abortResponse = s3Client.abortMultipartUpload(abortRequest);
-        multipartMap.remove(uploadId);
+        AbortMultipartUploadResponse abortResponse = execute(StorageMetrics.MULTIPART_ABORT, bucket, () ->
+                s3Client.abortMultipartUpload(abortRequest));
+        multipartRegistry.remove(uploadId);
         logger.info("取消分片上传完成,ID:[{}]: [{}]", uploadId, fileName);
         return abortResponse;
     }
+
+    @Override
+    public CompleteMultipartUploadResponse multipartUploadFile(String fileName, String path) {
+        return multipartUploadFile(config.getBucketName(), fileName, path);
+    }
+
+    @Override
+    public CompleteMultipartUploadResponse multipartUploadFile(String bucket, String fileName, String path) {
+        logger.info("并行分片上传文件: [{}]", fileName);
+        CompleteMultipartUploadResponse result = executeFanOut(StorageMetrics.UPLOAD, bucket, response -> new File(path).length(),
+                () -> multipartUploader.upload(bucket, fileName, Paths.get(path), throttle.decorator(StorageMetrics.UPLOAD, bucket), uploadJournal));
+        invalidateCache(bucket, fileName);
+        return result;
+    }
+
+    @Override
+    public CompleteMultipartUploadResponse multipartUploadFile(String fileName, InputStream inputStream) {
+        return multipartUploadFile(config.getBucketName(), fileName, inputStream);
+    }
+
+    @Override
+    public CompleteMultipartUploadResponse multipartUploadFile(String bucket, String fileName, InputStream inputStream) {
+        logger.info("并行分片上传文件: [{}]", fileName);
+        CountingInputStream stream = new CountingInputStream(throttle.throttle(StorageMetrics.UPLOAD, bucket, inputStream));
+        CompleteMultipartUploadResponse result = executeFanOut(StorageMetrics.UPLOAD, bucket, response -> stream.getCount(),
+                () -> multipartUploader.upload(bucket, fileName, stream));
+        invalidateCache(bucket, fileName);
+        return result;
+    }
+
+    @Override
+    public HeadObjectResponse multipartDownloadFile(String fileName, String path) {
+        return multipartDownloadFile(config.getBucketName(), fileName, path);
+    }
+
+    @Override
+    public HeadObjectResponse multipartDownloadFile(String bucket, String fileName, String path) {
+        logger.info("并行分段下载文件: [{}]", fileName);
+        return executeFanOut(StorageMetrics.DOWNLOAD, bucket, response -> length(response.contentLength()),
+                () -> rangedDownloader.download(bucket, fileName, Paths.get(path), throttle.decorator(StorageMetrics.DOWNLOAD, bucket)));
+    }
+
+    @Override
+    public GetObjectResponse resumableDownloadFile(String fileName, String path) {
+        return resumableDownloadFile(config.getBucketName(), fileName, path);
+    }
+
+    @Override
+    public GetObjectResponse resumableDownloadFile(String bucket, String fileName, String path) {
+        logger.info("续传下载文件: [{}]", fileName);
+        return execute(StorageMetrics.DOWNLOAD, bucket, response -> length(response.contentLength()),
+                () -> resumableDownloader.download((offset, eTag) -> {
+                    try {
+                        ResponseInputStream<GetObjectResponse> stream = s3Client.getObject(builder -> builder.bucket(bucket)
+                                .key(fileName)
+                                .range(offset > 0 ? "bytes=" + offset + "-" : null)
+                                .ifMatch(eTag));
+                        GetObjectResponse response = stream.response();
+                        long contentLength = response.contentLength() == null ? -1 : response.contentLength();
+                        long totalLength = ResumableDownloader.RangeResponse.totalLength(response.contentRange(), contentLength);
+                        // 返回的元数据和字节数指标描述整个文件,而不是最后一次Range请求
+                        GetObjectResponse whole = response.toBuilder()
+                                .contentLength(totalLength < 0 ? null : totalLength)
+                                .contentRange(null)
+                                .build();
+                        return ResumableDownloader.RangeResponse.of(whole, response.eTag(), response.contentRange(), contentLength,
+                                throttle.throttle(StorageMetrics.DOWNLOAD, bucket, stream));
+                    } catch (S3Exception e) {
+                        if (e.statusCode() == 412 || e.statusCode() == 416) {
+                            throw new ResumableDownloader.ObjectChangedException("文件已修改: " + fileName, e);
+                        }
+                        throw e;
+                    }
+                }, Paths.get(path)));
+    }
+
+    @Override
+    public DirectoryTransferResult uploadDirectory(String prefix, String directory) {
+        return uploadDirectory(config.getBucketName(), prefix, directory);
+    }
+
+    @Override
+    public DirectoryTransferResult uploadDirectory(String bucket, String prefix, String directory) {
+        logger.info("上传目录: [{}],前缀:[{}]", directory, prefix);
+        long partSize = config.getMultipart().getPartSize();
+        DirectoryTransferResult result = directoryTransfer.upload(Paths.get(directory), prefix, (attrs, key, file) -> {
+            if (attrs.size() > partSize) {
+                multipartUploadFile(bucket, key, file.toString());
+            } else {
+                uploadFile(bucket, key, file.toString());
+            }
+            return attrs.size();
+        });
+        logger.info("上传目录完成: [{}],成功:[{}],失败:[{}]", directory, result.getSucceeded(), result.getFailures().size());
+        return result;
+    }
+
+    @Override
+    public DirectoryTransferResult downloadDirectory(String prefix, String directory) {
+        return downloadDirectory(config.getBucketName(), prefix, directory);
+    }
+
+    @Override
+    public DirectoryTransferResult downloadDirectory(String bucket, String prefix, String directory) {
+        logger.info("下载目录: [{}],前缀:[{}]", directory, prefix);
+        long partSize = config.getDownload().getPartSize();
+        DirectoryTransferResult result;
+        try (Stream<S3Object> objects = listFilesAsStream(bucket, DirectoryTransfer.normalizePrefix(prefix), null, null)) {
+            result = directoryTransfer.download(objects.iterator(), S3Object::key, prefix, Paths.get(directory), (object, key, file) -> {
+                if (object.size() > partSize) {
+                    multipartDownloadFile(bucket, key, file.toString());
+                } else {
+                    // 单请求下载不会覆盖已存在的文件
+                    Files.deleteIfExists(file);
+                    downloadFile(bucket, key, file.toString());
+                }
+                return object.size();
+            });
+        }
+        logger.info("下载目录完成: [{}],成功:[{}],失败:[{}]", directory, result.getSucceeded(), result.getFailures().size());
+        return result;
+    }
+
+    /**
+     * 记录指标的统一入口,所有访问存储的操作都经过这里
+     *
+     * @param operation 操作名称
+     * @param bucket    bucket
+     * @param bytes     根据结果计算传输的字节数,为null时不记录字节数
+     * @param action    操作
+     * @return 操作结果
+     */
+    private <T> T execute(String operation, String bucket, ToLongFunction<? super T> bytes, Supplier<T> action) {
+        return execute(operation, bucket, bytes, action, true);
+    }
+
+    /**
+     * 同时发起多个请求的操作,由分片上传、分段下载、批量删除和列表组件对每个请求分别获取请求速率令牌和并发许可
+     */
+    private <T> T executeFanOut(String operation, String bucket, ToLongFunction<? super T> bytes, Supplier<T> action) {
+        return execute(operation, bucket, bytes, action, false);
+    }
+
+    private <T> T execute(String operation, String bucket, ToLongFunction<? super T> bytes, Supplier<T> action, boolean limited) {
+        if (limited) {
+            throttle.acquireRequest(operation, bucket);
+        }
+        AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter == null || !limited ? null : concurrencyLimiter.acquire(operation);
+        StorageMetrics.Sample sample = storageMetrics.start(BACKEND, operation, bucket);
+        T result;
+        try {
+            result = action.get();
+        } catch (RuntimeException | Error e) {
+            sample.failure(e);
+            if (permit != null) {
+                if (isThrottled(e)) {
+                    permit.dropped();
+                } else {
+                    permit.ignore();
+                }
+            }
+            throw e;
+        }
+        long transferred = bytes == null || result == null ? 0 : bytes.applyAsLong(result);
+        if (permit != null) {
+            permit.success(transferred);
+        }
+        sample.success(transferred);
+        return result;
+    }
+
+    /**
+     * 是否被限流或超时,服务端过载时返回503 SlowDown或429
+     */
+    private static boolean isThrottled(Throwable error) {
+        for (Throwable e = error; e != null; e = e.getCause()) {
+            if (e instanceof AwsServiceException) {
+                AwsServiceException serviceException = (AwsServiceException) e;
+                if (serviceException.statusCode() == 503 || serviceException.isThrottlingException()) {
+                    return true;
+                }
+            }
+            if (e instanceof ApiCallAttemptTimeoutException || e instanceof ApiCallTimeoutException
+                    || e instanceof SocketTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private <T> T execute(String operation, String bucket, Supplier<T> action) {
+        return execute(operation, bucket, null, action);
+    }
+
+    /**
+     * 限制请求体的传输速率,没有匹配的规则时返回原请求体
+     */
+    private RequestBody throttleBody(String operation, String bucket, RequestBody requestBody) {
+        if (!throttle.limitsBytes(operation, bucket)) {
+            return requestBody;
+        }
+        ContentStreamProvider provider = requestBody.contentStreamProvider();
+        return RequestBody.fromContentProvider(() -> throttle.throttle(operation, bucket, provider.newStream()),
+                requestBody.optionalContentLength().orElse(0L), requestBody.contentType());
+    }
+
+    private ChecksumAlgorithm checksumAlgorithm() {
+        return config.getChecksum().isEnabled() ? ChecksumAlgorithm.CRC32_C : null;
+    }
+
+    private static long length(Long contentLength) {
+        return contentLength == null ? 0 : contentLength;
+    }
 }
@@ -0,0 +1,105 @@
+package cn.crabapples.s3.transfer;
+
+import cn.crabapples.utils.Crc32c;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectAttributesParts;
+import software.amazon.awssdk.services.s3.model.GetObjectAttributesResponse;
+import software.amazon.awssdk.services.s3.model.ObjectAttributes;
+import software.amazon.awssdk.services.s3.model.ObjectPart;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * S3端到端CRC32C校验
+ * 下载时通过请求头x-amz-checksum-mode获取文件的校验和,而不设置请求的checksumMode,
+ * 避免SDK使用软件实现再计算一遍;分片上传的文件只有组合校验和,
+ * 通过GetObjectAttributes获取各分片的校验和与大小,合并为整个文件的校验和
+ */
+public final class S3Checksums {
+    private static final Logger logger = LoggerFactory.getLogger(S3Checksums.class);
+    private static final int MAX_PARTS = 1000;
+
+    private S3Checksums() {
+    }
+
+    /**
+     * 请求响应中返回文件的校验和
+     */
+    public static void enableChecksumMode(AwsRequestOverrideConfiguration.Builder builder) {
+        builder.putHeader("x-amz-checksum-mode", "ENABLED");
+    }
+
+    /**
+     * 获取整个文件的CRC32C
+     *
+     * @param s3Client S3客户端
+     * @param bucket   Bucket名称
+     * @param key      文件名称
+     * @param eTag     响应的ETag,分片信息的ETag不一致时不校验
+     * @param checksum 响应的x-amz-checksum-crc32c,可能是组合校验和
+     * @return 整个文件的CRC32C,文件没有CRC32C时为null
+     */
+    public static Integer expectedCrc32c(S3Client s3Client, String bucket, String key, String eTag, String checksum) {
+        if (checksum == null) {
+            return null;
+        }
+        if (!Crc32c.isComposite(checksum)) {
+            return Crc32c.decode(checksum);
+        }
+        List<ObjectPart> parts = new ArrayList<>();
+        Integer marker = null;
+        while (true) {
+            Integer partNumberMarker = marker;
+            GetObjectAttributesResponse response = s3Client.getObjectAttributes(builder -> builder
+                    .bucket(bucket)
+                    .key(key)
+                    .objectAttributes(ObjectAttributes.OBJECT_PARTS)
+                    .maxParts(MAX_PARTS)
+                    .partNumberMarker(partNumberMarker));
+            if (eTag != null && !unquote(eTag).equals(unquote(response.eTag()))) {
+                logger.warn("获取分片校验和时文件已修改,不校验: [{}]", key);
+                return null;
+            }
+            GetObjectAttributesParts objectParts = response.objectParts();
+            if (objectParts == null || !objectParts.hasParts()) {
+                break;
+            }
+            parts.addAll(objectParts.parts());
+            if (!Boolean.TRUE.equals(objectParts.isTruncated())) {
+                break;
+            }
+            marker = objectParts.nextPartNumberMarker();
+        }
+        return combine(key, checksum, parts);
+    }
+
+    /**
+     * 合并各分片的校验和,分片信息与组合校验和不一致时不校验
+     */
+    private static Integer combine(String key, String checksum, List<ObjectPart> parts) {
+        int[] crcs = new int[parts.size()];
+        int crc = 0;
+        for (int i = 0; i < crcs.length; i++) {
+            ObjectPart part = parts.get(i);
+            if (part.checksumCRC32C() == null || part.size() == null) {
+                logger.warn("分片没有CRC32C,不校验: [{}]", key);
+                return null;
+            }
+            crcs[i] = Crc32c.decode(part.checksumCRC32C());
+            crc = Crc32c.combine(crc, crcs[i], part.size());
+        }
+        if (!Crc32c.composite(crcs).equals(checksum)) {
+            logger.warn("分片校验和与组合校验和不一致,不校验: [{}]", key);
+            return null;
+        }
+        return crc;
+    }
+
+    private static String unquote(String eTag) {
+        return eTag == null ? "" : eTag.replace("\"", "");
+    }
+}
@@ -0,0 +1,404 @@
+package cn.crabapples.s3.transfer;
+
+import cn.crabapples.limit.RequestGate;
+import cn.crabapples.metrics.StorageMetrics;
+import cn.crabapples.utils.Crc32c;
+import cn.crabapples.utils.FileRegionInputStream;
+import cn.crabapples.utils.NamedThreadFactory;
+import cn.crabapples.utils.UploadJournal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * 并行分片上传引擎
+ * 将文件或输入流切分为固定大小的分片,在有界线程池中同时上传多个分片,全部完成后合并;
+ * 文件按配置的分片大小超过10000个分片时,增大分片大小(按MB取整)使分片数不超过上限
+ * <p>
+ * 启用校验和时每个分片携带CRC32C,由服务端校验:输入流的分片在内存中计算后放在请求头,
+ * 文件的分片由SDK在发送时计算并放在请求尾部,不需要预先读取一遍
+ * <p>
+ * 每个请求分别获取并发许可,同时上传的分片数受并发上限限制
+ */
+public class S3MultipartUploader {
+    private static final Logger logger = LoggerFactory.getLogger(S3MultipartUploader.class);
+    private static final String CONTENT_TYPE = "application/octet-stream";
+    /**
+     * 单个分片上传的最大分片数
+     */
+    private static final int MAX_PARTS = 10000;
+    private static final long MB = 1024 * 1024;
+    private final S3Client s3Client;
+    private final long partSize;
+    private final int parallelism;
+    private final boolean checksum;
+    private final RequestGate gate;
+    private final ThreadPoolExecutor executor;
+
+    public S3MultipartUploader(S3Client s3Client, long partSize, int parallelism) {
+        this(s3Client, partSize, parallelism, false, RequestGate.none());
+    }
+
+    /**
+     * @param checksum 是否为分片计算CRC32C
+     * @param gate     每个请求的并发许可
+     */
+    public S3MultipartUploader(S3Client s3Client, long partSize, int parallelism, boolean checksum, RequestGate gate) {
+        this.s3Client = s3Client;
+        this.partSize = partSize;
+        this.parallelism = parallelism;
+        this.checksum = checksum;
+        this.gate = gate;
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new NamedThreadFactory("s3-multipart"));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public long getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * 并行上传本地文件
+     * 各分片通过FileChannel定位读取,不会把整个分片复制到堆内存
+     *
+     * @param bucket Bucket名称
+     * @param key    文件名称
+     * @param path   文件路径
+     * @return 合并分片的响应结果
+     */
+    public CompleteMultipartUploadResponse upload(String bucket, String key, Path path) {
+        return upload(bucket, key, path, UnaryOperator.identity());
+    }
+
+    /**
+     * 并行上传本地文件
+     *
+     * @param bucket    Bucket名称
+     * @param key       文件名称
+     * @param path      文件路径
+     * @param decorator 分片输入流的装饰,如限速
+     * @return 合并分片的响应结果
+     */
+    public CompleteMultipartUploadResponse upload(String bucket, String key, Path path, UnaryOperator<InputStream> decorator) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long filePartSize = partSize(size);
+            int partCount = (int) Math.max(1, (size + filePartSize - 1) / filePartSize);
+            String uploadId = createUpload(bucket, key);
+            List<Future<CompletedPart>> futures = new ArrayList<>(partCount);
+            try {
+                for (int i = 0; i < partCount; i++) {
+                    int partNumber = i + 1;
+                    long offset = i * filePartSize;
+                    long length = Math.min(filePartSize, size - offset);
+                    RequestBody body = RequestBody.fromContentProvider(
+                            () -> decorator.apply(new FileRegionInputStream(channel, offset, length)), length, CONTENT_TYPE);
+                    futures.add(executor.submit(() -> uploadPart(bucket, key, uploadId, partNumber, body, null)));
+                }
+                return complete(bucket, key, uploadId, await(futures));
+            } catch (RuntimeException e) {
+                abort(bucket, key, uploadId, futures);
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("读取上传文件失败", e);
+        }
+    }
+
+    /**
+     * 可断点续传的并行上传本地文件
+     * 每完成一个分片写入断点记录,重启后通过ListParts核对服务端已有的分片,只上传缺少的分片;
+     * 失败时保留未完成的分片上传和断点记录,文件大小或修改时间变化时放弃原上传重新开始
+     *
+     * @param bucket    Bucket名称
+     * @param key       文件名称
+     * @param path      文件路径
+     * @param decorator 分片输入流的装饰,如限速
+     * @param journal   断点记录,为null时不记录断点
+     * @return 合并分片的响应结果
+     */
+    public CompleteMultipartUploadResponse upload(String bucket, String key, Path path, UnaryOperator<InputStream> decorator,
+                                                  UploadJournal journal) {
+        if (journal == null) {
+            return upload(bucket, key, path, decorator);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long lastModified = Files.getLastModifiedTime(path).toMillis();
+            UploadJournal.Checkpoint checkpoint = journal.load(bucket, key, path);
+            Map<Integer, CompletedPart> uploaded = null;
+            if (checkpoint != null) {
+                if (checkpoint.getFileSize() == size && checkpoint.getLastModified() == lastModified
+                        && (size + checkpoint.getPartSize() - 1) / checkpoint.getPartSize() <= MAX_PARTS) {
+                    uploaded = listParts(bucket, key, checkpoint, size);
+                } else {
+                    logger.info("文件已修改或分片数超过上限,放弃分片上传,ID:[{}]: [{}]", checkpoint.getUploadId(), key);
+                    abort(bucket, key, checkpoint.getUploadId(), Collections.emptyList());
+                }
+                if (uploaded == null) {
+                    checkpoint.delete();
+                    checkpoint = null;
+                }
+            }
+            if (checkpoint == null) {
+                checkpoint = journal.create(bucket, key, path, createUpload(bucket, key), partSize(size), size, lastModified);
+                uploaded = new HashMap<>();
+            } else {
+                logger.info("恢复分片上传,ID:[{}],已上传分片数:[{}],断点记录分片数:[{}]: [{}]",
+                        checkpoint.getUploadId(), uploaded.size(), checkpoint.getParts().size(), key);
+            }
+            String uploadId = checkpoint.getUploadId();
+            long checkpointPartSize = checkpoint.getPartSize();
+            int partCount = (int) Math.max(1, (size + checkpointPartSize - 1) / checkpointPartSize);
+            List<CompletedPart> parts = new ArrayList<>(partCount);
+            List<Future<CompletedPart>> futures = new ArrayList<>(partCount);
+            try {
+                for (int i = 0; i < partCount; i++) {
+                    int partNumber = i + 1;
+                    CompletedPart existing = uploaded.get(partNumber);
+                    if (existing != null) {
+                        parts.add(existing);
+                        continue;
+                    }
+                    long offset = i * checkpointPartSize;
+                    long length = Math.min(checkpointPartSize, size - offset);
+                    RequestBody body = RequestBody.fromContentProvider(
+                            () -> decorator.apply(new FileRegionInputStream(channel, offset, length)), length, CONTENT_TYPE);
+                    UploadJournal.Checkpoint current = checkpoint;
+                    futures.add(executor.submit(() -> {
+                        CompletedPart part = uploadPart(bucket, key, uploadId, partNumber, body, null);
+                        current.partCompleted(partNumber, part.eTag());
+                        return part;
+                    }));
+                }
+                parts.addAll(await(futures));
+                CompleteMultipartUploadResponse response = complete(bucket, key, uploadId, parts);
+                checkpoint.delete();
+                return response;
+            } catch (RuntimeException e) {
+                futures.forEach(future -> future.cancel(true));
+                checkpoint.close();
+                logger.warn("分片上传失败,保留断点,ID:[{}]: [{}]", uploadId, key);
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("读取上传文件失败", e);
+        }
+    }
+
+    /**
+     * 并行上传输入流
+     * 调用线程顺序读取分片,同时最多有parallelism个分片缓冲在内存中等待或正在上传
+     *
+     * @param bucket      Bucket名称
+     * @param key         文件名称
+     * @param inputStream 输入流
+     * @return 合并分片的响应结果
+     */
+    public CompleteMultipartUploadResponse upload(String bucket, String key, InputStream inputStream) {
+        String uploadId = createUpload(bucket, key);
+        Semaphore permits = new Semaphore(parallelism);
+        List<Future<CompletedPart>> futures = new ArrayList<>();
+        try {
+            int partNumber = 0;
+            while (true) {
+                permits.acquire();
+                byte[] buffer = new byte[(int) partSize];
+                int length = readFully(inputStream, buffer);
+                if (length == 0 && partNumber > 0) {
+                    permits.release();
+                    break;
+                }
+                int currentPart = ++partNumber;
+                if (currentPart > MAX_PARTS) {
+                    permits.release();
+                    throw new RuntimeException("分片数超过上限" + MAX_PARTS + ",请增大分片大小: " + key);
+                }
+                Integer crc = checksum ? Crc32c.compute(buffer, 0, length) : null;
+                RequestBody body = RequestBody.fromContentProvider(
+                        () -> new ByteArrayInputStream(buffer, 0, length), length, CONTENT_TYPE);
+                futures.add(executor.submit(() -> {
+                    try {
+                        return uploadPart(bucket, key, uploadId, currentPart, body, crc);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+                if (length < buffer.length) {
+                    break;
+                }
+            }
+            return complete(bucket, key, uploadId, await(futures));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort(bucket, key, uploadId, futures);
+            throw new RuntimeException("分片上传被中断", e);
+        } catch (IOException e) {
+            abort(bucket, key, uploadId, futures);
+            throw new RuntimeException("读取上传数据失败", e);
+        } catch (RuntimeException e) {
+            abort(bucket, key, uploadId, futures);
+            throw e;
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 文件的分片大小,配置的分片大小超过分片数上限时增大为按MB取整的最小可用大小
+     */
+    private long partSize(long size) {
+        long minPartSize = (size + MAX_PARTS - 1) / MAX_PARTS;
+        if (minPartSize <= partSize) {
+            return partSize;
+        }
+        return (minPartSize + MB - 1) / MB * MB;
+    }
+
+    private String createUpload(String bucket, String key) {
+        String uploadId = gate.call(StorageMetrics.MULTIPART_CREATE, bucket, () -> s3Client.createMultipartUpload(builder -> builder
+                .bucket(bucket)
+                .key(key)
+                .checksumAlgorithm(checksumAlgorithm()))).uploadId();
+        logger.info("并行分片上传ID: [{}]: [{}]", uploadId, key);
+        return uploadId;
+    }
+
+    /**
+     * 列出服务端已有的分片,只保留大小与断点记录一致的分片,分片上传已不存在时返回null
+     */
+    private Map<Integer, CompletedPart> listParts(String bucket, String key, UploadJournal.Checkpoint checkpoint, long size) {
+        long checkpointPartSize = checkpoint.getPartSize();
+        Map<Integer, CompletedPart> parts = new HashMap<>();
+        try {
+            List<Part> listed = gate.call(StorageMetrics.LIST, bucket, () -> {
+                List<Part> all = new ArrayList<>();
+                s3Client.listPartsPaginator(builder -> builder.bucket(bucket).key(key)
+                        .uploadId(checkpoint.getUploadId())).parts().forEach(all::add);
+                return all;
+            });
+            for (Part part : listed) {
+                long offset = (part.partNumber() - 1) * checkpointPartSize;
+                if (offset < size && part.size() != null && part.size() == Math.min(checkpointPartSize, size - offset)) {
+                    parts.put(part.partNumber(), CompletedPart.builder()
+                            .partNumber(part.partNumber())
+                            .eTag(part.eTag())
+                            .checksumCRC32C(part.checksumCRC32C())
+                            .build());
+                }
+            }
+        } catch (NoSuchUploadException e) {
+            logger.info("分片上传已不存在,重新上传,ID:[{}]: [{}]", checkpoint.getUploadId(), key);
+            return null;
+        }
+        return parts;
+    }
+
+    /**
+     * @param crc 已计算的分片CRC32C,为null时启用校验和则由SDK在发送时计算
+     */
+    private CompletedPart uploadPart(String bucket, String key, String uploadId, int partNumber, RequestBody body, Integer crc) {
+        UploadPartRequest.Builder builder = UploadPartRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .uploadId(uploadId)
+                .partNumber(partNumber);
+        if (crc != null) {
+            builder.checksumCRC32C(Crc32c.encode(crc));
+        } else {
+            builder.checksumAlgorithm(checksumAlgorithm());
+        }
+        UploadPartRequest request = builder.build();
+        long length = body.optionalContentLength().orElse(0L);
+        UploadPartResponse response = gate.call(StorageMetrics.MULTIPART_PART, bucket, result -> length,
+                () -> s3Client.uploadPart(request, body));
+        logger.debug("上传分片完成,ID:[{}],partNumber:[{}]", uploadId, partNumber);
+        return CompletedPart.builder()
+                .partNumber(partNumber)
+                .eTag(response.eTag())
+                .checksumCRC32C(response.checksumCRC32C())
+                .build();
+    }
+
+    private ChecksumAlgorithm checksumAlgorithm() {
+        return checksum ? ChecksumAlgorithm.CRC32_C : null;
+    }
+
+    private CompleteMultipartUploadResponse complete(String bucket, String key, String uploadId, List<CompletedPart> parts) {
+        List<CompletedPart> sorted = parts.stream()
+                .sorted(Comparator.comparing(CompletedPart::partNumber))
+                .collect(Collectors.toList());
+        CompleteMultipartUploadResponse response = gate.call(StorageMetrics.MULTIPART_COMPLETE, bucket,
+                () -> s3Client.completeMultipartUpload(builder -> builder
+                        .bucket(bucket)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .multipartUpload(CompletedMultipartUpload.builder().parts(sorted).build())));
+        logger.info("并行分片上传完成,ID:[{}],分片数:[{}]: [{}]", uploadId, sorted.size(), key);
+        return response;
+    }
+
+    private void abort(String bucket, String key, String uploadId, List<Future<CompletedPart>> futures) {
+        futures.forEach(future -> future.cancel(true));
+        try {
+            gate.call(StorageMetrics.MULTIPART_ABORT, bucket,
+                    () -> s3Client.abortMultipartUpload(builder -> builder.bucket(bucket).key(key).uploadId(uploadId)));
+            logger.warn("并行分片上传失败,已取消,ID:[{}]: [{}]", uploadId, key);
+        } catch (RuntimeException e) {
+            logger.error("取消分片上传失败,ID:[{}]: [{}]", uploadId, key, e);
+        }
+    }
+
+    private static List<CompletedPart> await(List<Future<CompletedPart>> futures) {
+        List<CompletedPart> parts = new ArrayList<>(futures.size());
+        try {
+            for (Future<CompletedPart> future : futures) {
+                parts.add(future.get());
+            }
+            return parts;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("分片上传被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException("分片上传失败", cause);
+        }
+    }
+
+    private static int readFully(InputStream inputStream, byte[] buffer) throws IOException {
+        int total = 0;
+        while (total < buffer.length) {
+            int read = inputStream.read(buffer, total, buffer.length - total);
+            if (read == -1) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,146 @@
+package cn.crabapples.s3.transfer;
+
+import cn.crabapples.limit.RequestGate;
+import cn.crabapples.metrics.StorageMetrics;
+import cn.crabapples.utils.PartitionedLister;
+import cn.crabapples.utils.PartitionedLister.Partition;
+import cn.crabapples.utils.PrefetchingPageIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Stream;
+
+/**
+ * 文件列表
+ * 顺序列表按需翻页并预取下一页;并行列表先按分隔符发现公共前缀,再同时列出各前缀,
+ * 每页请求分别获取并发许可
+ */
+public class S3ObjectLister {
+    private static final Logger logger = LoggerFactory.getLogger(S3ObjectLister.class);
+    private final S3Client s3Client;
+    private final ExecutorService executor;
+    private final int pageSize;
+    private final PartitionedLister<S3Object> partitionedLister;
+    private final RequestGate gate;
+
+    /**
+     * @param s3Client    S3客户端
+     * @param executor    预取和并行列表使用的线程池
+     * @param pageSize    每页文件数
+     * @param concurrency 并行列表同时列出的前缀数
+     */
+    public S3ObjectLister(S3Client s3Client, ExecutorService executor, int pageSize, int concurrency) {
+        this(s3Client, executor, pageSize, concurrency, RequestGate.none());
+    }
+
+    /**
+     * @param s3Client    S3客户端
+     * @param executor    预取和并行列表使用的线程池
+     * @param pageSize    每页文件数
+     * @param concurrency 并行列表同时列出的前缀数
+     * @param gate        每页请求的并发许可
+     */
+    public S3ObjectLister(S3Client s3Client, ExecutorService executor, int pageSize, int concurrency, RequestGate gate) {
+        this.s3Client = s3Client;
+        this.gate = gate;
+        this.executor = executor;
+        this.pageSize = pageSize;
+        this.partitionedLister = new PartitionedLister<>(executor, concurrency, pageSize);
+    }
+
+    /**
+     * 顺序列出文件
+     *
+     * @param bucket     Bucket名称
+     * @param prefix     文件名前缀,可为null
+     * @param startAfter 从该文件名之后开始列出,可为null
+     * @param delimiter  分隔符,可为null
+     * @return 预取下一页的迭代器
+     */
+    public PrefetchingPageIterator<S3Object> iterator(String bucket, String prefix, String startAfter, String delimiter) {
+        return iterator(bucket, prefix, startAfter, delimiter, executor);
+    }
+
+    private PrefetchingPageIterator<S3Object> iterator(String bucket, String prefix, String startAfter, String delimiter,
+                                                       Executor pageExecutor) {
+        return new PrefetchingPageIterator<>(token -> {
+            ListObjectsV2Response response = listPage(bucket, prefix, startAfter, delimiter, token);
+            return new PrefetchingPageIterator.Page<>(response.contents(), nextToken(response));
+        }, pageExecutor);
+    }
+
+    /**
+     * 按公共前缀分区并行列出文件
+     *
+     * @param bucket    Bucket名称
+     * @param prefix    文件名前缀,可为null
+     * @param delimiter 发现分区使用的分隔符
+     * @param ordered   是否按文件名顺序输出
+     * @return 文件流
+     */
+    public Stream<S3Object> parallelStream(String bucket, String prefix, String delimiter, boolean ordered) {
+        PrefetchingPageIterator<Partition<S3Object>> partitions = new PrefetchingPageIterator<>(token -> {
+            ListObjectsV2Response response = listPage(bucket, prefix, null, delimiter, token);
+            return new PrefetchingPageIterator.Page<>(partitions(bucket, response), nextToken(response));
+        }, executor);
+        return partitionedLister.list(partitions, ordered).onClose(partitions::close);
+    }
+
+    /**
+     * 将一页分隔符列表转换为分区
+     * 公共前缀各自成为一个分区,相邻公共前缀之间的文件合并为一个分区,保持文件名顺序
+     */
+    private List<Partition<S3Object>> partitions(String bucket, ListObjectsV2Response response) {
+        List<Partition<S3Object>> partitions = new ArrayList<>();
+        Iterator<S3Object> objects = response.contents().iterator();
+        S3Object object = objects.hasNext() ? objects.next() : null;
+        for (CommonPrefix commonPrefix : response.commonPrefixes()) {
+            String prefix = commonPrefix.prefix();
+            List<S3Object> items = new ArrayList<>();
+            while (object != null && object.key().compareTo(prefix) < 0) {
+                items.add(object);
+                object = objects.hasNext() ? objects.next() : null;
+            }
+            if (!items.isEmpty()) {
+                partitions.add(Partition.ofItems(items));
+            }
+            // 分区任务在线程池中运行,在当前线程翻页,避免等待排在其后的预取任务
+            partitions.add(Partition.of(() -> iterator(bucket, prefix, null, null, Runnable::run)));
+        }
+        List<S3Object> items = new ArrayList<>();
+        while (object != null) {
+            items.add(object);
+            object = objects.hasNext() ? objects.next() : null;
+        }
+        if (!items.isEmpty()) {
+            partitions.add(Partition.ofItems(items));
+        }
+        logger.debug("发现列表分区: [{}],前缀:[{}],分区数:[{}]", bucket, response.prefix(), partitions.size());
+        return partitions;
+    }
+
+    private ListObjectsV2Response listPage(String bucket, String prefix, String startAfter, String delimiter, String token) {
+        ListObjectsV2Response response = gate.call(StorageMetrics.LIST, bucket, () -> s3Client.listObjectsV2(builder -> builder
+                .bucket(bucket)
+                .prefix(prefix)
+                .startAfter(startAfter)
+                .delimiter(delimiter)
+                .maxKeys(pageSize)
+                .continuationToken(token)));
+        logger.debug("列出文件: [{}],本页数量:[{}]", bucket, response.keyCount());
+        return response;
+    }
+
+    private static String nextToken(ListObjectsV2Response response) {
+        return Boolean.TRUE.equals(response.isTruncated()) ? response.nextContinuationToken() : null;
+    }
+}
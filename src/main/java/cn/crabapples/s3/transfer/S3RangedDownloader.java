@@ -0,0 +1,223 @@
+package cn.crabapples.s3.transfer;
+
+import cn.crabapples.limit.RequestGate;
+import cn.crabapples.metrics.StorageMetrics;
+import cn.crabapples.utils.Crc32c;
+import cn.crabapples.utils.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.UnaryOperator;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Checksum;
+
+/**
+ * 并行分段下载引擎
+ * 先通过HEAD获取文件大小和ETag,再按字节区间同时发起多个GET,
+ * 每个区间直接写入预分配文件的对应偏移位置
+ * <p>
+ * 启用校验和时各区间在写入时计算CRC32C,全部完成后按顺序合并为整个文件的校验和,与服务端的校验和比较;
+ * 每个请求分别获取并发许可
+ */
+public class S3RangedDownloader {
+    private static final Logger logger = LoggerFactory.getLogger(S3RangedDownloader.class);
+    private final S3Client s3Client;
+    private final long partSize;
+    private final boolean checksum;
+    private final RequestGate gate;
+    private final ThreadPoolExecutor executor;
+
+    public S3RangedDownloader(S3Client s3Client, long partSize, int parallelism) {
+        this(s3Client, partSize, parallelism, false, RequestGate.none());
+    }
+
+    /**
+     * @param checksum 是否校验CRC32C
+     * @param gate     每个请求的并发许可
+     */
+    public S3RangedDownloader(S3Client s3Client, long partSize, int parallelism, boolean checksum, RequestGate gate) {
+        this.s3Client = s3Client;
+        this.partSize = partSize;
+        this.checksum = checksum;
+        this.gate = gate;
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new NamedThreadFactory("s3-download"));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 并行下载文件
+     * 各区间请求携带If-Match,下载期间文件被覆盖时请求失败而不会拼接出不同版本的内容
+     *
+     * @param bucket Bucket名称
+     * @param key    文件名称
+     * @param path   文件保存路径
+     * @return 下载开始时的文件元数据
+     */
+    public HeadObjectResponse download(String bucket, String key, Path path) {
+        return download(bucket, key, path, UnaryOperator.identity());
+    }
+
+    /**
+     * 并行下载文件
+     *
+     * @param bucket    Bucket名称
+     * @param key       文件名称
+     * @param path      文件保存路径
+     * @param decorator 分段输入流的装饰,如限速
+     * @return 下载开始时的文件元数据
+     */
+    public HeadObjectResponse download(String bucket, String key, Path path, UnaryOperator<InputStream> decorator) {
+        HeadObjectResponse head = gate.call(StorageMetrics.STAT, bucket, () -> s3Client.headObject(builder -> {
+            builder.bucket(bucket).key(key);
+            if (checksum) {
+                builder.overrideConfiguration(S3Checksums::enableChecksumMode);
+            }
+        }));
+        long size = head.contentLength();
+        String eTag = head.eTag();
+        int partCount = (int) Math.max(1, (size + partSize - 1) / partSize);
+        logger.info("并行下载文件: [{}],大小:[{}],分段数:[{}]", key, size, partCount);
+        List<Future<Integer>> futures = new ArrayList<>(partCount);
+        try {
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+                file.setLength(size);
+                FileChannel channel = file.getChannel();
+                for (int i = 0; i < partCount && size > 0; i++) {
+                    long offset = i * partSize;
+                    long length = Math.min(partSize, size - offset);
+                    futures.add(executor.submit(() -> gate.call(StorageMetrics.DOWNLOAD, bucket, crc -> length, () -> {
+                        try {
+                            return downloadRange(bucket, key, eTag, channel, offset, length, decorator);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })));
+                }
+                List<Integer> crcs = await(futures);
+                if (channel.size() != size) {
+                    throw new IOException("下载文件大小不一致,期望:" + size + ",实际:" + channel.size());
+                }
+                if (checksum) {
+                    verify(bucket, key, head, crcs);
+                }
+                channel.force(false);
+            }
+        } catch (IOException | RuntimeException e) {
+            futures.forEach(future -> future.cancel(true));
+            deleteQuietly(path);
+            logger.error("并行下载文件[{}]失败", key, e);
+            throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException("下载文件失败", e);
+        }
+        logger.info("并行下载文件完成: [{}]", key);
+        return head;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 下载一个区间
+     *
+     * @return 区间的CRC32C,不校验时为0
+     */
+    private int downloadRange(String bucket, String key, String eTag, FileChannel channel, long offset, long length,
+                              UnaryOperator<InputStream> decorator) throws IOException {
+        String range = "bytes=" + offset + "-" + (offset + length - 1);
+        try (ResponseInputStream<GetObjectResponse> in = s3Client.getObject(builder -> builder
+                .bucket(bucket)
+                .key(key)
+                .range(range)
+                .ifMatch(eTag))) {
+            GetObjectResponse response = in.response();
+            if (response.contentLength() != length || !eTag.equals(response.eTag())) {
+                throw new IOException("分段响应与文件元数据不一致: " + range);
+            }
+            Checksum crc = checksum ? Crc32c.create() : null;
+            InputStream body = decorator.apply(in);
+            ReadableByteChannel source = Channels.newChannel(crc == null ? body : new CheckedInputStream(body, crc));
+            long position = offset;
+            long remaining = length;
+            while (remaining > 0) {
+                long transferred = channel.transferFrom(source, position, remaining);
+                if (transferred <= 0) {
+                    throw new IOException("分段数据提前结束: " + range);
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+            logger.debug("下载分段完成: [{}] {}", key, range);
+            return crc == null ? 0 : (int) crc.getValue();
+        }
+    }
+
+    /**
+     * 按顺序合并各区间的校验和,与服务端的校验和比较,服务端没有CRC32C时不校验
+     */
+    private void verify(String bucket, String key, HeadObjectResponse head, List<Integer> crcs) throws IOException {
+        Integer expected = S3Checksums.expectedCrc32c(s3Client, bucket, key, head.eTag(), head.checksumCRC32C());
+        if (expected == null) {
+            logger.debug("文件没有CRC32C,不校验: [{}]", key);
+            return;
+        }
+        long size = head.contentLength();
+        int actual = 0;
+        for (int i = 0; i < crcs.size(); i++) {
+            actual = Crc32c.combine(actual, crcs.get(i), Math.min(partSize, size - i * partSize));
+        }
+        if (actual != expected) {
+            throw new IOException("文件校验和不一致: " + key + ",期望CRC32C:" + Crc32c.encode(expected)
+                    + ",实际:" + Crc32c.encode(actual));
+        }
+    }
+
+    private static <T> List<T> await(List<Future<T>> futures) throws IOException {
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("分段下载被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException("分段下载失败", cause);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("删除未完成的下载文件失败: [{}]", path, e);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package cn.crabapples.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * 并行批处理
+ * 从迭代器中按需取出元素组成固定大小的批次,最多同时执行parallelism个批次,
+ * 内存中只保留正在执行的批次和各批次返回的错误
+ */
+public class BatchExecutor {
+    private final int batchSize;
+    private final int parallelism;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param threadPrefix 线程名称前缀
+     * @param batchSize    每批元素数
+     * @param parallelism  同时执行的批次数
+     */
+    public BatchExecutor(String threadPrefix, int batchSize, int parallelism) {
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new NamedThreadFactory(threadPrefix));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 分批并行执行,任一批次抛出异常时不再提交新批次,等待已提交的批次结束后抛出该异常
+     *
+     * @param items  元素迭代器,可以是惰性的列表结果
+     * @param action 批次操作,返回该批次中失败的元素信息
+     * @param <T>    元素类型
+     * @param <E>    错误类型
+     * @return 所有批次的错误
+     */
+    public <T, E> List<E> execute(Iterator<T> items, Function<List<T>, List<E>> action) {
+        Semaphore permits = new Semaphore(parallelism);
+        List<E> errors = Collections.synchronizedList(new ArrayList<>());
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        try {
+            try {
+                while (failure.get() == null && items.hasNext()) {
+                    List<T> batch = new ArrayList<>(batchSize);
+                    while (batch.size() < batchSize && items.hasNext()) {
+                        batch.add(items.next());
+                    }
+                    permits.acquire();
+                    try {
+                        executor.execute(() -> {
+                            try {
+                                errors.addAll(action.apply(batch));
+                            } catch (RuntimeException e) {
+                                failure.compareAndSet(null, e);
+                            } finally {
+                                permits.release();
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        permits.release();
+                        throw e;
+                    }
+                }
+            } finally {
+                permits.acquire(parallelism);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("批处理被中断", e);
+        }
+        RuntimeException e = failure.get();
+        if (e != null) {
+            throw e;
+        }
+        return errors;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,71 @@
+package cn.crabapples.utils;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 定长缓冲区池
+ * 缓冲区按需创建并在释放后复用,同时借出的缓冲区数量不超过容量,
+ * 因此池占用的内存上限为 容量 × 缓冲区大小
+ */
+public class BufferPool {
+    private final int bufferSize;
+    private final boolean direct;
+    private final Semaphore permits;
+    private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param bufferSize 缓冲区大小(字节)
+     * @param capacity   最多同时借出的缓冲区数量
+     * @param direct     是否使用堆外缓冲区
+     */
+    public BufferPool(int bufferSize, int capacity, boolean direct) {
+        this.bufferSize = bufferSize;
+        this.direct = direct;
+        this.permits = new Semaphore(capacity);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * 借出缓冲区,池中缓冲区全部借出时阻塞等待
+     *
+     * @return 已清空的缓冲区
+     * @throws InterruptedException 等待时被中断
+     */
+    public ByteBuffer acquire() throws InterruptedException {
+        permits.acquire();
+        return take();
+    }
+
+    /**
+     * 尝试借出缓冲区,池中缓冲区全部借出时立即返回null
+     *
+     * @return 已清空的缓冲区或null
+     */
+    public ByteBuffer tryAcquire() {
+        return permits.tryAcquire() ? take() : null;
+    }
+
+    /**
+     * 归还缓冲区
+     *
+     * @param buffer 通过acquire或tryAcquire借出的缓冲区
+     */
+    public void release(ByteBuffer buffer) {
+        buffer.clear();
+        free.offer(buffer);
+        permits.release();
+    }
+
+    private ByteBuffer take() {
+        ByteBuffer buffer = free.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        return direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+    }
+}
@@ -0,0 +1,93 @@
+package cn.crabapples.utils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Checksum;
+
+/**
+ * 读取时计算CRC32C的输入流,读到末尾时与期望的校验和比较,不一致时抛出IOException
+ * 只在完整读取后校验,提前关闭的流不校验
+ */
+public class ChecksumVerifyingInputStream extends FilterInputStream {
+    private final Checksum checksum = Crc32c.create();
+    private final int expected;
+    private final String name;
+    private boolean verified;
+
+    /**
+     * @param in       输入流
+     * @param expected 期望的CRC32C
+     * @param name     文件名称,用于错误信息
+     */
+    public ChecksumVerifyingInputStream(InputStream in, int expected, String name) {
+        super(in);
+        this.expected = expected;
+        this.name = name;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b == -1) {
+            verify();
+        } else {
+            checksum.update(b);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = in.read(b, off, len);
+        if (read == -1) {
+            verify();
+        } else {
+            checksum.update(b, off, read);
+        }
+        return read;
+    }
+
+    /**
+     * 跳过的数据也需要计算校验和
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (read == -1) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("不支持reset");
+    }
+
+    private void verify() throws IOException {
+        if (verified) {
+            return;
+        }
+        int actual = (int) checksum.getValue();
+        if (actual != expected) {
+            throw new IOException("文件校验和不一致: " + name + ",期望CRC32C:" + Crc32c.encode(expected)
+                    + ",实际:" + Crc32c.encode(actual));
+        }
+        verified = true;
+    }
+}
@@ -0,0 +1,206 @@
+package cn.crabapples.utils;
+
+import java.lang.reflect.Constructor;
+import java.util.Base64;
+import java.util.zip.Checksum;
+
+/**
+ * CRC32C校验和
+ * Java 9及以上使用java.util.zip.CRC32C(JIT编译为CPU的CRC32C指令),Java 8使用查表实现;
+ * 提供分段校验和的合并,各分段单独计算后按顺序合并即得到整个文件的校验和,不需要再次读取数据。
+ * 与S3的x-amz-checksum-crc32c一致,校验和以大端4字节的Base64表示,分片上传的文件为
+ * 各分片校验和拼接后的校验和加上"-分片数"
+ */
+public final class Crc32c {
+    /**
+     * 反转的CRC32C多项式
+     */
+    private static final int POLY = 0x82F63B78;
+    private static final int[] TABLE = new int[256];
+    private static final Constructor<? extends Checksum> INTRINSIC = intrinsic();
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int j = 0; j < 8; j++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLY : crc >>> 1;
+            }
+            TABLE[i] = crc;
+        }
+    }
+
+    private Crc32c() {
+    }
+
+    /**
+     * 创建CRC32C计算器
+     */
+    public static Checksum create() {
+        if (INTRINSIC != null) {
+            try {
+                return INTRINSIC.newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException("创建CRC32C失败", e);
+            }
+        }
+        return new TableCrc32c();
+    }
+
+    /**
+     * 计算数据的CRC32C
+     */
+    public static int compute(byte[] data, int offset, int length) {
+        Checksum checksum = create();
+        checksum.update(data, offset, length);
+        return (int) checksum.getValue();
+    }
+
+    /**
+     * 合并相邻两段数据的CRC32C
+     *
+     * @param crc1    前一段的校验和
+     * @param crc2    后一段的校验和
+     * @param length2 后一段的长度
+     * @return 两段数据拼接后的校验和
+     */
+    public static int combine(int crc1, int crc2, long length2) {
+        if (length2 <= 0) {
+            return crc1;
+        }
+        // 每次平方得到追加2^n个0比特的变换矩阵
+        int[] even = new int[32];
+        int[] odd = new int[32];
+        odd[0] = POLY;
+        int row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        square(even, odd);
+        square(odd, even);
+        long remaining = length2;
+        do {
+            square(even, odd);
+            if ((remaining & 1) != 0) {
+                crc1 = times(even, crc1);
+            }
+            remaining >>= 1;
+            if (remaining == 0) {
+                break;
+            }
+            square(odd, even);
+            if ((remaining & 1) != 0) {
+                crc1 = times(odd, crc1);
+            }
+            remaining >>= 1;
+        } while (remaining != 0);
+        return crc1 ^ crc2;
+    }
+
+    /**
+     * 计算分片上传文件的组合校验和,即各分片校验和的大端字节拼接后的CRC32C
+     *
+     * @param parts 按分片序号排列的各分片校验和
+     * @return 组合校验和,格式为"Base64-分片数"
+     */
+    public static String composite(int[] parts) {
+        byte[] bytes = new byte[parts.length * 4];
+        for (int i = 0; i < parts.length; i++) {
+            writeInt(bytes, i * 4, parts[i]);
+        }
+        return encode(compute(bytes, 0, bytes.length)) + "-" + parts.length;
+    }
+
+    /**
+     * 编码为x-amz-checksum-crc32c的格式
+     */
+    public static String encode(int crc) {
+        byte[] bytes = new byte[4];
+        writeInt(bytes, 0, crc);
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    /**
+     * 解析x-amz-checksum-crc32c
+     *
+     * @param value 校验和,不能是组合校验和
+     * @return 校验和,格式错误时抛出IllegalArgumentException
+     */
+    public static int decode(String value) {
+        byte[] bytes = Base64.getDecoder().decode(value);
+        if (bytes.length != 4) {
+            throw new IllegalArgumentException("CRC32C格式错误: " + value);
+        }
+        return (bytes[0] & 0xFF) << 24 | (bytes[1] & 0xFF) << 16 | (bytes[2] & 0xFF) << 8 | (bytes[3] & 0xFF);
+    }
+
+    /**
+     * 是否为分片上传文件的组合校验和
+     */
+    public static boolean isComposite(String value) {
+        return value != null && value.indexOf('-') > 0;
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static int times(int[] matrix, int vector) {
+        int sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void square(int[] square, int[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = times(matrix, matrix[n]);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Constructor<? extends Checksum> intrinsic() {
+        try {
+            return (Constructor<? extends Checksum>) Class.forName("java.util.zip.CRC32C").getConstructor();
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Java 8的查表实现
+     */
+    private static class TableCrc32c implements Checksum {
+        private int crc = 0xFFFFFFFF;
+
+        @Override
+        public void update(int b) {
+            crc = (crc >>> 8) ^ TABLE[(crc ^ b) & 0xFF];
+        }
+
+        @Override
+        public void update(byte[] b, int off, int len) {
+            int value = crc;
+            for (int i = off; i < off + len; i++) {
+                value = (value >>> 8) ^ TABLE[(value ^ b[i]) & 0xFF];
+            }
+            crc = value;
+        }
+
+        @Override
+        public long getValue() {
+            return ~crc & 0xFFFFFFFFL;
+        }
+
+        @Override
+        public void reset() {
+            crc = 0xFFFFFFFF;
+        }
+    }
+}
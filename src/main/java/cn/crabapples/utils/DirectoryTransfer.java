@@ -0,0 +1,197 @@
+package cn.crabapples.utils;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 目录并行传输
+ * 边遍历本地目录或文件列表边提交传输,最多同时传输parallelism个文件,内存中只保留正在传输的文件;
+ * 相对路径与文件名称一一对应,路径分隔符统一为"/"
+ */
+public class DirectoryTransfer {
+    private final int parallelism;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param threadPrefix 线程名称前缀
+     * @param parallelism  同时传输的文件数
+     */
+    public DirectoryTransfer(String threadPrefix, int parallelism) {
+        this.parallelism = parallelism;
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new NamedThreadFactory(threadPrefix));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 上传目录下的所有文件,文件名称为前缀加上相对目录的路径
+     *
+     * @param directory 本地目录
+     * @param prefix    文件名称前缀,可为null
+     * @param action    单个文件的上传操作,参数为文件属性,返回传输的字节数
+     * @return 传输结果
+     */
+    public DirectoryTransferResult upload(Path directory, String prefix, Transfer<BasicFileAttributes> action) {
+        String keyPrefix = normalizePrefix(prefix);
+        Run run = new Run();
+        try {
+            Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile()) {
+                        run.submit(attrs, toKey(keyPrefix, directory.relativize(file)), file, action);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    run.result.failure(toKey(keyPrefix, directory.relativize(file)), file, e);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            run.await();
+            throw new RuntimeException("遍历上传目录失败: " + directory, e);
+        } catch (RuntimeException e) {
+            run.await();
+            throw e;
+        }
+        return run.await();
+    }
+
+    /**
+     * 下载文件到本地目录,本地路径为目录加上文件名称去掉前缀后的部分,以"/"结尾的目录标记不下载
+     *
+     * @param objects   文件列表,可以是惰性的列表结果
+     * @param keyOf     文件名称
+     * @param prefix    列出文件时使用的前缀,可为null
+     * @param directory 本地目录
+     * @param action    单个文件的下载操作,父目录已创建,返回传输的字节数
+     * @param <T>       文件列表元素类型
+     * @return 传输结果
+     */
+    public <T> DirectoryTransferResult download(Iterator<T> objects, Function<T, String> keyOf, String prefix,
+                                                Path directory, Transfer<T> action) {
+        String keyPrefix = normalizePrefix(prefix);
+        Path root = directory.toAbsolutePath().normalize();
+        Run run = new Run();
+        try {
+            while (objects.hasNext()) {
+                T object = objects.next();
+                String key = keyOf.apply(object);
+                if (key.endsWith("/")) {
+                    continue;
+                }
+                String relative = key.startsWith(keyPrefix) ? key.substring(keyPrefix.length()) : key;
+                Path file = root.resolve(relative).normalize();
+                if (!file.startsWith(root) || file.equals(root)) {
+                    run.result.failure(key, file, new RuntimeException("文件名称超出下载目录: " + key));
+                    continue;
+                }
+                run.submit(object, key, file, (item, name, target) -> {
+                    Files.createDirectories(target.getParent());
+                    return action.transfer(item, name, target);
+                });
+            }
+        } catch (RuntimeException e) {
+            run.await();
+            throw e;
+        }
+        return run.await();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 前缀不为空时以"/"结尾
+     */
+    public static String normalizePrefix(String prefix) {
+        if (prefix == null || prefix.isEmpty()) {
+            return "";
+        }
+        return prefix.endsWith("/") ? prefix : prefix + "/";
+    }
+
+    private static String toKey(String prefix, Path relative) {
+        StringBuilder key = new StringBuilder(prefix);
+        for (Path name : relative) {
+            if (key.length() > prefix.length()) {
+                key.append('/');
+            }
+            key.append(name);
+        }
+        return key.toString();
+    }
+
+    /**
+     * 单个文件的传输操作
+     *
+     * @param <T> 文件信息类型
+     */
+    @FunctionalInterface
+    public interface Transfer<T> {
+        /**
+         * @param item 文件信息
+         * @param key  文件名称
+         * @param file 本地文件路径
+         * @return 传输的字节数
+         */
+        long transfer(T item, String key, Path file) throws IOException;
+    }
+
+    /**
+     * 一次目录传输,通过信号量限制同时传输的文件数
+     */
+    private class Run {
+        private final Semaphore permits = new Semaphore(parallelism);
+        private final DirectoryTransferResult result = new DirectoryTransferResult();
+
+        <T> void submit(T item, String key, Path file, Transfer<T> action) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("目录传输被中断", e);
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        result.success(action.transfer(item, key, file));
+                    } catch (Exception e) {
+                        result.failure(key, file, e);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        DirectoryTransferResult await() {
+            try {
+                permits.acquire(parallelism);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("目录传输被中断", e);
+            }
+            permits.release(parallelism);
+            return result;
+        }
+    }
+}
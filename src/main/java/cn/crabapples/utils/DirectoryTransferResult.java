@@ -0,0 +1,84 @@
+package cn.crabapples.utils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 目录传输结果
+ * 单个文件失败不会中断整个目录的传输,失败的文件及原因记录在failures中
+ */
+public class DirectoryTransferResult {
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final List<Failure> failures = Collections.synchronizedList(new ArrayList<>());
+
+    void success(long transferred) {
+        succeeded.increment();
+        bytes.add(transferred);
+    }
+
+    void failure(String key, Path file, Throwable error) {
+        failures.add(new Failure(key, file, error));
+    }
+
+    /**
+     * 传输成功的文件数
+     */
+    public long getSucceeded() {
+        return succeeded.sum();
+    }
+
+    /**
+     * 传输成功的文件总大小
+     */
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    public List<Failure> getFailures() {
+        return failures;
+    }
+
+    /**
+     * 是否所有文件都传输成功
+     */
+    public boolean isSuccess() {
+        return failures.isEmpty();
+    }
+
+    /**
+     * 传输失败的文件
+     */
+    public static class Failure {
+        private final String key;
+        private final Path file;
+        private final Throwable error;
+
+        Failure(String key, Path file, Throwable error) {
+            this.key = key;
+            this.file = file;
+            this.error = error;
+        }
+
+        /**
+         * 文件名称
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * 本地文件路径
+         */
+        public Path getFile() {
+            return file;
+        }
+
+        public Throwable getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package cn.crabapples.utils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 对冲请求
+ * 请求在最近响应时间的percentile分位数内没有返回时,再发起一个相同的请求,先返回的结果生效,
+ * 另一个请求被中断,之后返回的结果交给discard释放(如关闭响应流)
+ * <p>
+ * 每个请求积累budgetRatio个对冲额度,对冲消耗一个,额外请求数不超过请求总数的budgetRatio;
+ * 响应时间样本不足时不对冲。请求失败时不对冲,失败重试由客户端完成
+ */
+public class HedgedRequestExecutor {
+    /**
+     * 计算分位数的最近响应时间样本数
+     */
+    private static final int WINDOW = 1024;
+    /**
+     * 开始对冲前需要的样本数
+     */
+    private static final int MIN_SAMPLES = 100;
+    /**
+     * 每记录多少个样本重新计算一次分位数
+     */
+    private static final int RECOMPUTE_INTERVAL = 64;
+    /**
+     * 对冲额度的精度和最多积累的对冲数
+     */
+    private static final long CREDIT_UNIT = 1000;
+    private static final long MAX_CREDITS = 10 * CREDIT_UNIT;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long creditPerRequest;
+    private final ExecutorService executor;
+    private final long[] samples = new long[WINDOW];
+    private final AtomicLong sampleCount = new AtomicLong();
+    private final AtomicLong credits = new AtomicLong(MAX_CREDITS);
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private volatile long delayNanos = -1;
+
+    /**
+     * @param threadPrefix 线程名称前缀
+     * @param percentile   对冲延迟取响应时间的分位数,如0.95
+     * @param minDelay     最小对冲延迟
+     * @param budgetRatio  对冲请求占请求总数的上限比例
+     */
+    public HedgedRequestExecutor(String threadPrefix, double percentile, Duration minDelay, double budgetRatio) {
+        this.percentile = percentile;
+        this.minDelayNanos = minDelay.toNanos();
+        this.creditPerRequest = (long) (budgetRatio * CREDIT_UNIT);
+        this.executor = Executors.newCachedThreadPool(new NamedThreadFactory(threadPrefix));
+    }
+
+    /**
+     * 执行请求,超过对冲延迟没有返回时发起对冲请求
+     *
+     * @param request 请求,返回时表示首字节已到达
+     * @param discard 释放没有被使用的结果
+     * @param <T>     结果类型
+     * @return 先返回的结果
+     */
+    public <T> T execute(Supplier<T> request, Consumer<? super T> discard) {
+        return execute(request, request, discard);
+    }
+
+    /**
+     * 执行请求,超过对冲延迟没有返回时发起对冲请求
+     *
+     * @param request      请求,返回时表示首字节已到达
+     * @param hedgeRequest 对冲请求,如在请求前获取单独的并发许可
+     * @param discard      释放没有被使用的结果
+     * @param <T>          结果类型
+     * @return 先返回的结果
+     */
+    public <T> T execute(Supplier<T> request, Supplier<T> hedgeRequest, Consumer<? super T> discard) {
+        requests.increment();
+        addCredit();
+        Hedge<T> hedge = new Hedge<>(request, hedgeRequest, discard);
+        hedge.submit();
+        long delay = delayNanos;
+        if (delay >= 0 && !hedge.await(Math.max(delay, minDelayNanos)) && takeCredit()) {
+            if (hedge.submit()) {
+                hedges.increment();
+            } else {
+                credits.addAndGet(CREDIT_UNIT);
+            }
+        }
+        return hedge.get();
+    }
+
+    /**
+     * 当前对冲延迟,样本不足时为null
+     */
+    public Duration getDelay() {
+        long delay = delayNanos;
+        return delay < 0 ? null : Duration.ofNanos(Math.max(delay, minDelayNanos));
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * 发起的对冲请求数
+     */
+    public long getHedges() {
+        return hedges.sum();
+    }
+
+    /**
+     * 对冲请求先返回的次数
+     */
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void addCredit() {
+        long current;
+        do {
+            current = credits.get();
+            if (current >= MAX_CREDITS) {
+                return;
+            }
+        } while (!credits.compareAndSet(current, Math.min(MAX_CREDITS, current + creditPerRequest)));
+    }
+
+    private boolean takeCredit() {
+        long current;
+        do {
+            current = credits.get();
+            if (current < CREDIT_UNIT) {
+                return false;
+            }
+        } while (!credits.compareAndSet(current, current - CREDIT_UNIT));
+        return true;
+    }
+
+    private void record(long nanos) {
+        long count = sampleCount.getAndIncrement();
+        samples[(int) (count % WINDOW)] = nanos;
+        count++;
+        if (count >= MIN_SAMPLES && (count % RECOMPUTE_INTERVAL == 0 || delayNanos < 0)) {
+            long[] sorted = Arrays.copyOf(samples, (int) Math.min(count, WINDOW));
+            Arrays.sort(sorted);
+            delayNanos = sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))];
+        }
+    }
+
+    /**
+     * 同一请求的所有尝试
+     */
+    private class Hedge<T> {
+        private final Supplier<T> request;
+        private final Supplier<T> hedgeRequest;
+        private final Consumer<? super T> discard;
+        private final CompletableFuture<T> winner = new CompletableFuture<>();
+        private final List<Future<?>> attempts = new ArrayList<>(2);
+        private int failures;
+
+        Hedge(Supplier<T> request, Supplier<T> hedgeRequest, Consumer<? super T> discard) {
+            this.request = request;
+            this.hedgeRequest = hedgeRequest;
+            this.discard = discard;
+        }
+
+        synchronized boolean submit() {
+            if (winner.isDone()) {
+                return false;
+            }
+            int attempt = attempts.size();
+            attempts.add(executor.submit(() -> run(attempt)));
+            return true;
+        }
+
+        boolean await(long nanos) {
+            try {
+                winner.get(nanos, TimeUnit.NANOSECONDS);
+                return true;
+            } catch (TimeoutException e) {
+                return false;
+            } catch (ExecutionException e) {
+                return true;
+            } catch (InterruptedException e) {
+                throw interrupted(e);
+            }
+        }
+
+        T get() {
+            try {
+                return winner.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException("请求失败", cause);
+            } catch (InterruptedException e) {
+                throw interrupted(e);
+            }
+        }
+
+        /**
+         * 调用方被中断时放弃所有尝试,之后返回的结果都会被释放
+         */
+        private RuntimeException interrupted(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (!winner.completeExceptionally(e) && !winner.isCompletedExceptionally()) {
+                discard.accept(winner.join());
+            }
+            cancel(-1);
+            return new RuntimeException("等待请求被中断", e);
+        }
+
+        private void run(int attempt) {
+            long start = System.nanoTime();
+            T value;
+            try {
+                value = attempt == 0 ? request.get() : hedgeRequest.get();
+            } catch (Throwable e) {
+                synchronized (this) {
+                    if (++failures == attempts.size()) {
+                        winner.completeExceptionally(e);
+                    }
+                }
+                return;
+            }
+            record(System.nanoTime() - start);
+            if (!winner.complete(value)) {
+                discard.accept(value);
+                return;
+            }
+            if (attempt > 0) {
+                hedgeWins.increment();
+            }
+            cancel(attempt);
+        }
+
+        /**
+         * 中断除winner外的尝试
+         */
+        private synchronized void cancel(int winnerAttempt) {
+            for (int i = 0; i < attempts.size(); i++) {
+                if (i != winnerAttempt) {
+                    attempts.get(i).cancel(true);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package cn.crabapples.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分片上传状态登记表
+ * 以uploadId为键记录已完成的分片,分片按分片序号有序保存,
+ * 写入使用无锁的ConcurrentSkipListMap,同一uploadId的分片可由多个线程并发上传;
+ * 状态只在创建分片上传时登记,合并或取消后移除,之后再记录分片会失败
+ *
+ * @param <P> 分片信息类型
+ */
+public class MultipartRegistry<P> {
+    private final ConcurrentHashMap<String, UploadState<P>> uploads = new ConcurrentHashMap<>();
+
+    /**
+     * 登记分片上传
+     *
+     * @param uploadId 分片上传ID
+     */
+    public void register(String uploadId) {
+        uploads.putIfAbsent(uploadId, new UploadState<>());
+    }
+
+    /**
+     * 是否存在分片上传记录
+     *
+     * @param uploadId 分片上传ID
+     * @return 是否存在
+     */
+    public boolean contains(String uploadId) {
+        return uploads.containsKey(uploadId);
+    }
+
+    /**
+     * 为未指定分片序号的调用方分配下一个分片序号
+     * 序号以原子方式递增,并发调用不会得到重复的序号
+     *
+     * @param uploadId 分片上传ID
+     * @return 分片序号(从1开始)
+     * @throws RuntimeException 分片上传未登记或已合并、取消
+     */
+    public int nextPartNumber(String uploadId) {
+        return state(uploadId).sequence.incrementAndGet();
+    }
+
+    /**
+     * 记录已完成的分片
+     * 同一分片序号重复上传时以最后一次为准
+     *
+     * @param uploadId   分片上传ID
+     * @param partNumber 分片序号
+     * @param part       分片信息
+     * @throws RuntimeException 分片上传未登记或已合并、取消
+     */
+    public void putPart(String uploadId, int partNumber, P part) {
+        UploadState<P> state = state(uploadId);
+        state.parts.put(partNumber, part);
+        state.sequence.accumulateAndGet(partNumber, Math::max);
+    }
+
+    /**
+     * 按分片序号排序的已完成分片
+     *
+     * @param uploadId 分片上传ID
+     * @return 分片列表
+     */
+    public List<P> parts(String uploadId) {
+        UploadState<P> state = uploads.get(uploadId);
+        if (state == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(state.parts.values());
+    }
+
+    /**
+     * 移除分片上传记录
+     *
+     * @param uploadId 分片上传ID
+     * @return 按分片序号排序的已完成分片
+     */
+    public List<P> remove(String uploadId) {
+        UploadState<P> state = uploads.remove(uploadId);
+        if (state == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(state.parts.values());
+    }
+
+    private UploadState<P> state(String uploadId) {
+        UploadState<P> state = uploads.get(uploadId);
+        if (state == null) {
+            throw new RuntimeException("分片上传不存在: " + uploadId);
+        }
+        return state;
+    }
+
+    private static class UploadState<P> {
+        private final ConcurrentSkipListMap<Integer, P> parts = new ConcurrentSkipListMap<>();
+        private final AtomicInteger sequence = new AtomicInteger();
+    }
+}
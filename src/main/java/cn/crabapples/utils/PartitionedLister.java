@@ -0,0 +1,288 @@
+package cn.crabapples.utils;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 按分区并行列出文件
+ * 分区由调用方按键顺序提供(通常是分隔符发现的公共前缀),每个列表最多同时列出concurrency个分区,
+ * 结果通过有界队列合并为一个流;有序模式下按分区顺序输出,无序模式下先到先出
+ * <p>
+ * 分区在读取流的线程中按需发现和提交,分区任务在队列满时让出线程,由读取方取走元素后重新提交,
+ * 任务不会阻塞等待读取方,因此多个列表可以共享线程数有限的线程池
+ *
+ * @param <T> 元素类型
+ */
+public class PartitionedLister<T> {
+    private static final Object END = new Object();
+    private final ExecutorService executor;
+    private final int concurrency;
+    private final int queueCapacity;
+
+    /**
+     * @param executor      执行分区列表的线程池,可以是线程数有限的线程池
+     * @param concurrency   单个列表同时列出的分区数
+     * @param queueCapacity 每个分区(有序模式)或整个列表(无序模式)缓冲的元素数
+     */
+    public PartitionedLister(ExecutorService executor, int concurrency, int queueCapacity) {
+        this.executor = executor;
+        this.concurrency = Math.max(1, concurrency);
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * 并行列出各分区并合并为流,使用完毕后应关闭流
+     *
+     * @param partitions 按键顺序排列的分区
+     * @param ordered    是否按分区顺序输出
+     * @return 元素流
+     */
+    public Stream<T> list(Iterator<Partition<T>> partitions, boolean ordered) {
+        Merger merger = new Merger(partitions, ordered);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merger,
+                        ordered ? Spliterator.ORDERED | Spliterator.NONNULL : Spliterator.NONNULL), false)
+                .onClose(merger::cancel);
+    }
+
+    /**
+     * 分区
+     *
+     * @param <T> 元素类型
+     */
+    public static class Partition<T> {
+        private final Supplier<Iterator<T>> opener;
+
+        private Partition(Supplier<Iterator<T>> opener) {
+            this.opener = opener;
+        }
+
+        /**
+         * 需要单独列出的分区,如某个公共前缀
+         *
+         * @param opener 打开分区的惰性迭代器,迭代器实现AutoCloseable时列出完毕后关闭
+         * @param <T>    元素类型
+         * @return 分区
+         */
+        public static <T> Partition<T> of(Supplier<Iterator<T>> opener) {
+            return new Partition<>(opener);
+        }
+
+        /**
+         * 已经取得的元素,如分隔符列表中位于当前层级的文件
+         *
+         * @param items 元素
+         * @param <T>   元素类型
+         * @return 分区
+         */
+        public static <T> Partition<T> ofItems(List<T> items) {
+            return new Partition<>(items::iterator);
+        }
+    }
+
+    private class Merger implements Iterator<T> {
+        private final Iterator<Partition<T>> partitions;
+        private final boolean ordered;
+        /**
+         * 无序模式下所有分区共享的元素队列
+         */
+        private final BlockingQueue<Object> shared;
+        /**
+         * 已提交且未结束的分区,有序模式下按分区顺序排列
+         */
+        private final ArrayDeque<Producer> active = new ArrayDeque<>();
+        /**
+         * 因队列已满让出线程的分区任务
+         */
+        private final ConcurrentLinkedQueue<Producer> parked = new ConcurrentLinkedQueue<>();
+        private boolean exhausted;
+        private Object nextItem;
+        private boolean finished;
+        private volatile boolean cancelled;
+
+        Merger(Iterator<Partition<T>> partitions, boolean ordered) {
+            this.partitions = partitions;
+            this.ordered = ordered;
+            this.shared = ordered ? null : new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        /**
+         * 同时列出的分区不足concurrency个时提交后续分区
+         */
+        private void schedule() {
+            while (!exhausted && active.size() < concurrency) {
+                if (!partitions.hasNext()) {
+                    exhausted = true;
+                    return;
+                }
+                Producer producer = new Producer(partitions.next(), ordered ? new ArrayBlockingQueue<>(queueCapacity) : shared);
+                active.add(producer);
+                executor.execute(producer);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (nextItem != null) {
+                return true;
+            }
+            if (finished) {
+                return false;
+            }
+            try {
+                while (true) {
+                    schedule();
+                    Producer head = active.peek();
+                    if (head == null) {
+                        finished = true;
+                        return false;
+                    }
+                    Object item = take(head);
+                    if (item == END) {
+                        // 无序模式下结束标记可能来自任一分区,只用于计数
+                        active.poll();
+                        continue;
+                    }
+                    if (item instanceof Failure) {
+                        Throwable cause = ((Failure) item).cause;
+                        throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException("列出文件失败", cause);
+                    }
+                    nextItem = item;
+                    return true;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                finished = true;
+                cancel();
+                throw new RuntimeException("列出文件被中断", e);
+            } catch (RuntimeException | Error e) {
+                finished = true;
+                cancel();
+                throw e;
+            }
+        }
+
+        /**
+         * 取出一个元素,并恢复因队列已满让出线程的分区任务
+         */
+        private Object take(Producer head) throws InterruptedException {
+            Object item = head.queue.take();
+            if (ordered) {
+                if (parked.remove(head)) {
+                    executor.execute(head);
+                }
+            } else {
+                Producer producer = parked.poll();
+                if (producer != null) {
+                    executor.execute(producer);
+                }
+            }
+            return item;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T item = (T) nextItem;
+            nextItem = null;
+            return item;
+        }
+
+        void cancel() {
+            cancelled = true;
+            Producer producer;
+            while ((producer = parked.poll()) != null) {
+                producer.close();
+            }
+        }
+
+        /**
+         * 分区任务,队列满时登记到parked后返回,由读取方取走元素后重新提交
+         */
+        private class Producer implements Runnable {
+            private final Partition<T> partition;
+            private final BlockingQueue<Object> queue;
+            private Iterator<T> iterator;
+            private Object pending;
+
+            Producer(Partition<T> partition, BlockingQueue<Object> queue) {
+                this.partition = partition;
+                this.queue = queue;
+            }
+
+            @Override
+            public void run() {
+                while (!cancelled) {
+                    if (pending == null) {
+                        pending = produce();
+                    }
+                    if (!queue.offer(pending)) {
+                        if (park()) {
+                            return;
+                        }
+                        continue;
+                    }
+                    Object sent = pending;
+                    pending = null;
+                    if (sent == END || sent instanceof Failure) {
+                        close();
+                        return;
+                    }
+                }
+                close();
+            }
+
+            private Object produce() {
+                try {
+                    if (iterator == null) {
+                        iterator = partition.opener.get();
+                    }
+                    return iterator.hasNext() ? iterator.next() : END;
+                } catch (RuntimeException e) {
+                    return new Failure(e);
+                }
+            }
+
+            /**
+             * 登记后队列又有空位且未被读取方恢复时继续执行
+             *
+             * @return 是否已让出线程
+             */
+            private boolean park() {
+                parked.add(this);
+                return queue.remainingCapacity() == 0 || !parked.remove(this);
+            }
+
+            private void close() {
+                if (iterator instanceof AutoCloseable) {
+                    try {
+                        ((AutoCloseable) iterator).close();
+                    } catch (Exception ignore) {
+                        // 关闭失败不影响已列出的结果
+                    }
+                }
+            }
+        }
+    }
+
+    private static class Failure {
+        private final Throwable cause;
+
+        Failure(Throwable cause) {
+            this.cause = cause;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package cn.crabapples.utils;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 预取下一页的分页迭代器
+ * 当前页被消费时在后台线程请求下一页,内存中最多保留当前页和预取页两页数据
+ *
+ * @param <T> 元素类型
+ */
+public class PrefetchingPageIterator<T> implements Iterator<T>, AutoCloseable {
+    private final PageFetcher<T> fetcher;
+    private final Executor executor;
+    private Iterator<T> current = Collections.emptyIterator();
+    private volatile CompletableFuture<Page<T>> next;
+    private volatile boolean closed;
+
+    public PrefetchingPageIterator(PageFetcher<T> fetcher, Executor executor) {
+        this.fetcher = fetcher;
+        this.executor = executor;
+        this.next = CompletableFuture.supplyAsync(() -> fetcher.fetch(null), executor);
+    }
+
+    /**
+     * 将迭代器包装为顺序流,关闭流时取消预取
+     *
+     * @return 元素流
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            CompletableFuture<Page<T>> pending = next;
+            if (pending == null || closed) {
+                return false;
+            }
+            Page<T> page;
+            try {
+                page = pending.join();
+            } catch (CompletionException e) {
+                next = null;
+                Throwable cause = e.getCause();
+                throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException("获取分页数据失败", cause);
+            }
+            String token = page.getNextToken();
+            next = token == null || closed ? null : CompletableFuture.supplyAsync(() -> fetcher.fetch(token), executor);
+            current = page.getItems().iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        CompletableFuture<Page<T>> pending = next;
+        next = null;
+        if (pending != null) {
+            pending.cancel(true);
+        }
+    }
+
+    /**
+     * 分页请求
+     *
+     * @param <T> 元素类型
+     */
+    @FunctionalInterface
+    public interface PageFetcher<T> {
+        /**
+         * 请求一页数据
+         *
+         * @param token 上一页返回的翻页标记,第一页为null
+         * @return 分页数据
+         */
+        Page<T> fetch(String token);
+    }
+
+    /**
+     * 分页数据
+     *
+     * @param <T> 元素类型
+     */
+    public static class Page<T> {
+        private final List<T> items;
+        private final String nextToken;
+
+        /**
+         * @param items     本页数据
+         * @param nextToken 下一页的翻页标记,没有下一页时为null
+         */
+        public Page(List<T> items, String nextToken) {
+            this.items = items;
+            this.nextToken = nextToken;
+        }
+
+        public List<T> getItems() {
+            return items;
+        }
+
+        public String getNextToken() {
+            return nextToken;
+        }
+    }
+}
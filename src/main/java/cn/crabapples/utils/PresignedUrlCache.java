@@ -0,0 +1,161 @@
+package cn.crabapples.utils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 预签名地址缓存
+ * 以(bucket, 文件名, 请求方法, 有效期)为键缓存签名结果,剩余有效期不少于有效期的minRemainingRatio时直接返回,
+ * 避免热点文件每次请求都重新计算签名;超过容量时先清理失效地址,再按到期时间从早到晚淘汰
+ *
+ * @param <V> 签名结果类型
+ */
+public class PresignedUrlCache<V> {
+    private final int maxSize;
+    private final double minRemainingRatio;
+    private final ConcurrentHashMap<CacheKey, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxSize           最多缓存的地址数,不大于0时不缓存
+     * @param minRemainingRatio 返回缓存地址时剩余有效期占有效期的最小比例
+     */
+    public PresignedUrlCache(int maxSize, double minRemainingRatio) {
+        this.maxSize = maxSize;
+        this.minRemainingRatio = minRemainingRatio;
+    }
+
+    /**
+     * 获取预签名地址,缓存中没有可用地址时调用signer重新签名
+     *
+     * @param bucket   bucket
+     * @param key      文件名
+     * @param method   请求方法
+     * @param duration 有效期
+     * @param signer   签名操作
+     * @return 签名结果
+     */
+    public V get(String bucket, String key, String method, Duration duration, Supplier<V> signer) {
+        if (maxSize <= 0) {
+            return signer.get();
+        }
+        CacheKey cacheKey = new CacheKey(bucket, key, method, duration.toMillis());
+        long minRemainingMillis = (long) (duration.toMillis() * minRemainingRatio);
+        Entry<V> entry = entries.get(cacheKey);
+        if (entry != null && entry.isUsable(System.currentTimeMillis(), minRemainingMillis)) {
+            hits.increment();
+            return entry.value;
+        }
+        misses.increment();
+        // 以签名前的时间计算到期时间,缓存的到期时间不会晚于地址实际的到期时间
+        long signedAt = System.currentTimeMillis();
+        V value = signer.get();
+        entries.put(cacheKey, new Entry<>(value, signedAt + duration.toMillis()));
+        if (entries.size() > maxSize) {
+            evict();
+        }
+        return value;
+    }
+
+    /**
+     * 移除文件的所有缓存地址,如文件被删除或覆盖后
+     *
+     * @param bucket bucket
+     * @param key    文件名
+     */
+    public void invalidate(String bucket, String key) {
+        entries.keySet().removeIf(cacheKey -> cacheKey.bucket.equals(bucket) && cacheKey.key.equals(key));
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * 先移除已经不能返回的地址,仍超过容量时淘汰最早到期的地址,一次腾出十分之一容量以减少淘汰次数
+     */
+    private synchronized void evict() {
+        if (entries.size() <= maxSize) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        entries.entrySet().removeIf(e -> !e.getValue().isUsable(now,
+                (long) (e.getKey().durationMillis * minRemainingRatio)));
+        int excess = entries.size() - maxSize + Math.max(1, maxSize / 10);
+        if (excess <= 0) {
+            return;
+        }
+        List<Map.Entry<CacheKey, Entry<V>>> candidates = new ArrayList<>(entries.entrySet());
+        candidates.sort(Comparator.comparingLong(e -> e.getValue().expiresAt));
+        for (int i = 0; i < excess && i < candidates.size(); i++) {
+            Map.Entry<CacheKey, Entry<V>> candidate = candidates.get(i);
+            entries.remove(candidate.getKey(), candidate.getValue());
+        }
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isUsable(long now, long minRemainingMillis) {
+            return expiresAt - now >= minRemainingMillis;
+        }
+    }
+
+    private static class CacheKey {
+        private final String bucket;
+        private final String key;
+        private final String method;
+        private final long durationMillis;
+
+        CacheKey(String bucket, String key, String method, long durationMillis) {
+            this.bucket = bucket;
+            this.key = key;
+            this.method = method;
+            this.durationMillis = durationMillis;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) o;
+            return durationMillis == other.durationMillis && bucket.equals(other.bucket)
+                    && key.equals(other.key) && method.equals(other.method);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(bucket, key, method, durationMillis);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package cn.crabapples.utils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量生成SigV4预签名下载地址(Path-Style)
+ * 同一批次的地址使用相同的签名时间,签名密钥每天只派生一次,请求方法、查询参数、签名头等公共部分只拼接一次,
+ * 每个文件只需计算一次请求摘要和一次HMAC;文件较多时分段在线程池中并行签名
+ */
+public class QueryStringPresigner {
+    private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+    private static final String SERVICE = "s3";
+    private static final String TERMINATOR = "aws4_request";
+    private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    private static final long MAX_EXPIRES_SECONDS = 7 * 24 * 60 * 60;
+    /**
+     * 少于该数量的文件直接在调用线程签名
+     */
+    private static final int PARALLEL_THRESHOLD = 64;
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyyMMdd").withZone(ZoneOffset.UTC);
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private final String endpoint;
+    private final String host;
+    private final String basePath;
+    private final String accessKey;
+    private final String secretKey;
+    private final String region;
+    private final int parallelism;
+    private final ThreadPoolExecutor executor;
+    private final ThreadLocal<Hasher> hashers = ThreadLocal.withInitial(Hasher::new);
+    private volatile SigningKey signingKey;
+
+    /**
+     * @param endpoint    服务地址,如http://127.0.0.1:9000
+     * @param accessKey   accessKey
+     * @param secretKey   secretKey
+     * @param region      签名使用的区域
+     * @param parallelism 并行签名的线程数
+     */
+    public QueryStringPresigner(String endpoint, String accessKey, String secretKey, String region, int parallelism) {
+        URI uri = URI.create(endpoint);
+        this.endpoint = uri.getScheme() + "://" + uri.getRawAuthority();
+        this.host = isDefaultPort(uri) ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+        String path = uri.getRawPath() == null ? "" : uri.getRawPath();
+        this.basePath = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.region = region;
+        this.parallelism = Math.max(1, parallelism);
+        this.executor = new ThreadPoolExecutor(this.parallelism, this.parallelism, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new NamedThreadFactory("presign"));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 批量生成下载地址
+     *
+     * @param bucket   bucket
+     * @param keys     文件名
+     * @param duration 有效期,最长7天
+     * @return 文件名与下载地址,顺序与输入一致
+     */
+    public Map<String, String> presignGet(String bucket, Collection<String> keys, Duration duration) {
+        long expires = duration.getSeconds();
+        if (expires < 1 || expires > MAX_EXPIRES_SECONDS) {
+            throw new RuntimeException("预签名有效期必须在1秒到7天之间");
+        }
+        Instant now = Instant.now();
+        Batch batch = new Batch(bucket, DATE.format(now), DATE_TIME.format(now), expires);
+        List<String> keyList = new ArrayList<>(keys);
+        String[] urls = new String[keyList.size()];
+        int chunks = Math.min(parallelism, (keyList.size() + PARALLEL_THRESHOLD - 1) / PARALLEL_THRESHOLD);
+        if (chunks <= 1) {
+            sign(batch, keyList, urls, 0, keyList.size());
+        } else {
+            int chunkSize = (keyList.size() + chunks - 1) / chunks;
+            List<CompletableFuture<Void>> futures = new ArrayList<>(chunks - 1);
+            for (int from = chunkSize; from < keyList.size(); from += chunkSize) {
+                int start = from;
+                int end = Math.min(from + chunkSize, keyList.size());
+                futures.add(CompletableFuture.runAsync(() -> sign(batch, keyList, urls, start, end), executor));
+            }
+            sign(batch, keyList, urls, 0, chunkSize);
+            try {
+                for (CompletableFuture<Void> future : futures) {
+                    future.join();
+                }
+            } catch (CompletionException e) {
+                throw new RuntimeException("生成预签名地址失败", e.getCause());
+            }
+        }
+        Map<String, String> result = new LinkedHashMap<>(keyList.size() * 4 / 3 + 1);
+        for (int i = 0; i < urls.length; i++) {
+            result.put(keyList.get(i), urls[i]);
+        }
+        return result;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void sign(Batch batch, List<String> keys, String[] urls, int from, int to) {
+        Hasher hasher = hashers.get();
+        StringBuilder builder = new StringBuilder(256);
+        for (int i = from; i < to; i++) {
+            builder.setLength(0);
+            builder.append(basePath).append('/').append(batch.encodedBucket).append('/');
+            encode(keys.get(i), builder, false);
+            String path = builder.toString();
+            builder.setLength(0);
+            builder.append("GET\n").append(path).append('\n').append(batch.query).append(batch.canonicalTail);
+            String requestHash = hex(hasher.sha256(builder.toString()));
+            builder.setLength(0);
+            builder.append(batch.stringToSignPrefix).append(requestHash);
+            String signature = hex(hasher.hmac(batch.signingKey, builder.toString()));
+            builder.setLength(0);
+            urls[i] = builder.append(endpoint).append(path).append('?').append(batch.query)
+                    .append("&X-Amz-Signature=").append(signature).toString();
+        }
+    }
+
+    /**
+     * 签名密钥只与日期、区域有关,按日期缓存
+     */
+    private byte[] signingKey(String date) {
+        SigningKey current = signingKey;
+        if (current != null && current.date.equals(date)) {
+            return current.key;
+        }
+        Hasher hasher = hashers.get();
+        byte[] key = hasher.hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date);
+        key = hasher.hmac(key, region);
+        key = hasher.hmac(key, SERVICE);
+        key = hasher.hmac(key, TERMINATOR);
+        signingKey = new SigningKey(date, key);
+        return key;
+    }
+
+    /**
+     * 按SigV4规则编码,只保留非保留字符,encodeSlash为false时保留路径分隔符
+     */
+    private static void encode(String value, StringBuilder builder, boolean encodeSlash) {
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~' || (c == '/' && !encodeSlash)) {
+                builder.append(c);
+            } else {
+                builder.append('%').append(Character.toUpperCase(HEX[c >> 4])).append(Character.toUpperCase(HEX[c & 0xF]));
+            }
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    private static boolean isDefaultPort(URI uri) {
+        int port = uri.getPort();
+        return port == -1 || ("http".equalsIgnoreCase(uri.getScheme()) && port == 80)
+                || ("https".equalsIgnoreCase(uri.getScheme()) && port == 443);
+    }
+
+    /**
+     * 同一批次共用的签名参数
+     */
+    private class Batch {
+        private final String encodedBucket;
+        private final String query;
+        private final String canonicalTail;
+        private final String stringToSignPrefix;
+        private final byte[] signingKey;
+
+        Batch(String bucket, String date, String dateTime, long expires) {
+            String scope = date + "/" + region + "/" + SERVICE + "/" + TERMINATOR;
+            StringBuilder builder = new StringBuilder();
+            encode(bucket, builder, true);
+            this.encodedBucket = builder.toString();
+            builder.setLength(0);
+            builder.append("X-Amz-Algorithm=").append(ALGORITHM).append("&X-Amz-Credential=");
+            encode(accessKey + "/" + scope, builder, true);
+            builder.append("&X-Amz-Date=").append(dateTime)
+                    .append("&X-Amz-Expires=").append(expires)
+                    .append("&X-Amz-SignedHeaders=host");
+            this.query = builder.toString();
+            this.canonicalTail = "\nhost:" + host + "\n\nhost\n" + UNSIGNED_PAYLOAD;
+            this.stringToSignPrefix = ALGORITHM + "\n" + dateTime + "\n" + scope + "\n";
+            this.signingKey = signingKey(date);
+        }
+    }
+
+    private static class SigningKey {
+        private final String date;
+        private final byte[] key;
+
+        SigningKey(String date, byte[] key) {
+            this.date = date;
+            this.key = key;
+        }
+    }
+
+    /**
+     * 线程独享的摘要和HMAC实例,签名密钥不变时不重新初始化
+     */
+    private static class Hasher {
+        private final MessageDigest digest;
+        private final Mac mac;
+        private byte[] macKey;
+
+        Hasher() {
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+                this.mac = Mac.getInstance("HmacSHA256");
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeException("初始化签名算法失败", e);
+            }
+        }
+
+        byte[] sha256(String value) {
+            return digest.digest(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        byte[] hmac(byte[] key, String value) {
+            try {
+                if (key != macKey) {
+                    mac.init(new SecretKeySpec(key, "HmacSHA256"));
+                    macKey = key;
+                }
+                return mac.doFinal(value.getBytes(StandardCharsets.UTF_8));
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeException("计算签名失败", e);
+            }
+        }
+    }
+}
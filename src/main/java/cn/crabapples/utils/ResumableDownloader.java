@@ -0,0 +1,305 @@
+package cn.crabapples.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+/**
+ * 可续传下载
+ * 下载内容先写入"文件名.part",连接中断后从已写入的位置发起Range请求(bytes=N-),并携带首次响应的ETag(If-Match),
+ * 文件在下载期间被覆盖时从头下载;完整下载后重命名为目标文件。ETag保存在"文件名.part.etag"中,
+ * 进程重启后再次下载同一文件时从已写入的位置继续
+ * <p>
+ * 原因链中包含IOException的错误视为网络错误并重试,取得进展后重新计数,其他错误直接抛出
+ */
+public class ResumableDownloader {
+    private static final Logger logger = LoggerFactory.getLogger(ResumableDownloader.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private final int maxRetries;
+    private final long retryDelayMillis;
+
+    /**
+     * @param maxRetries 没有取得进展时的最大重试次数
+     * @param retryDelay 重试间隔,按连续失败次数递增
+     */
+    public ResumableDownloader(int maxRetries, Duration retryDelay) {
+        this.maxRetries = maxRetries;
+        this.retryDelayMillis = retryDelay.toMillis();
+    }
+
+    /**
+     * 下载文件
+     *
+     * @param source 按位置打开下载流
+     * @param file   文件保存路径
+     * @param <M>    下载响应的元数据类型
+     * @return 下载的文件版本的元数据,文件在下载期间被修改而从头下载时为重新下载的响应的元数据
+     */
+    public <M> M download(RangeSource<M> source, Path file) {
+        Path part = file.resolveSibling(file.getFileName() + ".part");
+        Path eTagFile = file.resolveSibling(file.getFileName() + ".part.etag");
+        String eTag = readETag(eTagFile);
+        long offset = eTag == null ? 0 : partSize(part);
+        M metadata = null;
+        int failures = 0;
+        while (true) {
+            RangeResponse<M> response;
+            try {
+                response = source.open(offset, offset > 0 ? eTag : null);
+            } catch (ObjectChangedException e) {
+                logger.info("文件在下载期间被修改,重新下载: [{}]", file);
+                eTag = null;
+                offset = 0;
+                metadata = null;
+                deleteQuietly(eTagFile);
+                failures = retry(failures, e, file);
+                continue;
+            } catch (RuntimeException e) {
+                failures = retry(failures, e, file);
+                continue;
+            }
+            if (offset > 0 && eTag != null && !eTag.equals(response.getETag())) {
+                // 服务端没有校验If-Match
+                closeQuietly(response.getBody());
+                eTag = null;
+                offset = 0;
+                metadata = null;
+                deleteQuietly(eTagFile);
+                continue;
+            }
+            // 从头写入时之前的响应可能属于已被覆盖的版本
+            if (metadata == null || response.getOffset() == 0) {
+                metadata = response.getMetadata();
+            }
+            if (eTag == null && response.getETag() != null) {
+                eTag = response.getETag();
+                writeETag(eTagFile, eTag);
+            }
+            // 服务端忽略Range时从头写入
+            offset = response.getOffset();
+            long start = offset;
+            try (InputStream in = response.getBody();
+                 ReadableByteChannel channel = Channels.newChannel(in);
+                 FileChannel out = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                out.truncate(offset);
+                out.position(offset);
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                while (channel.read(buffer) != -1) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        offset += out.write(buffer);
+                    }
+                    buffer.clear();
+                }
+                if (response.getTotalLength() >= 0 && offset != response.getTotalLength()) {
+                    throw new IOException("下载数据提前结束,期望:" + response.getTotalLength() + ",实际:" + offset);
+                }
+                out.force(false);
+            } catch (IOException | RuntimeException e) {
+                if (offset > start) {
+                    failures = 0;
+                }
+                logger.warn("下载中断,已写入:[{}],从断点继续: [{}]", offset, file, e);
+                failures = retry(failures, e, file);
+                continue;
+            }
+            try {
+                Files.move(part, file, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                throw new RuntimeException("保存下载文件失败: " + file, e);
+            }
+            deleteQuietly(eTagFile);
+            return metadata;
+        }
+    }
+
+    /**
+     * 网络错误时等待后返回新的失败次数,超过重试次数或不可重试时抛出
+     */
+    private int retry(int failures, Exception error, Path file) {
+        if (!(error instanceof ObjectChangedException) && !isTransient(error)) {
+            throw error instanceof RuntimeException ? (RuntimeException) error : new RuntimeException("下载文件失败: " + file, error);
+        }
+        if (++failures > maxRetries) {
+            throw new RuntimeException("下载文件失败,已重试" + maxRetries + "次,断点保留在: " + file + ".part", error);
+        }
+        try {
+            Thread.sleep(retryDelayMillis * failures);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("下载被中断", e);
+        }
+        return failures;
+    }
+
+    private static boolean isTransient(Throwable error) {
+        for (Throwable e = error; e != null; e = e.getCause()) {
+            if (e instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long partSize(Path part) {
+        try {
+            return Files.size(part);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static String readETag(Path eTagFile) {
+        try {
+            String eTag = new String(Files.readAllBytes(eTagFile), StandardCharsets.UTF_8).trim();
+            return eTag.isEmpty() ? null : eTag;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.warn("读取下载断点[{}]失败,从头下载", eTagFile, e);
+            return null;
+        }
+    }
+
+    private static void writeETag(Path eTagFile, String eTag) {
+        try {
+            Files.write(eTagFile, eTag.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            // 只影响进程重启后能否继续下载
+            logger.warn("写入下载断点[{}]失败", eTagFile, e);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.debug("删除文件[{}]失败", file, e);
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException e) {
+            logger.debug("关闭下载流失败", e);
+        }
+    }
+
+    /**
+     * 按位置打开下载流
+     *
+     * @param <M> 下载响应的元数据类型
+     */
+    @FunctionalInterface
+    public interface RangeSource<M> {
+        /**
+         * @param offset 起始位置
+         * @param eTag   不为null时要求文件的ETag一致(If-Match),不一致或起始位置无效时抛出ObjectChangedException
+         * @return 下载响应
+         */
+        RangeResponse<M> open(long offset, String eTag);
+    }
+
+    /**
+     * Range请求的响应
+     *
+     * @param <M> 下载响应的元数据类型
+     */
+    public static class RangeResponse<M> {
+        private final M metadata;
+        private final String eTag;
+        private final long offset;
+        private final long totalLength;
+        private final InputStream body;
+
+        /**
+         * @param metadata    元数据
+         * @param eTag        ETag
+         * @param offset      响应内容在文件中的起始位置,服务端忽略Range时为0
+         * @param totalLength 文件大小,未知时为-1
+         * @param body        响应内容
+         */
+        public RangeResponse(M metadata, String eTag, long offset, long totalLength, InputStream body) {
+            this.metadata = metadata;
+            this.eTag = eTag;
+            this.offset = offset;
+            this.totalLength = totalLength;
+            this.body = body;
+        }
+
+        /**
+         * 根据Content-Range和Content-Length创建响应
+         *
+         * @param contentRange  Content-Range响应头,如"bytes 100-199/1000",可为null
+         * @param contentLength Content-Length,未知时为-1
+         */
+        public static <M> RangeResponse<M> of(M metadata, String eTag, String contentRange, long contentLength, InputStream body) {
+            if (contentRange == null || !contentRange.startsWith("bytes ")) {
+                return new RangeResponse<>(metadata, eTag, 0, contentLength, body);
+            }
+            int dash = contentRange.indexOf('-');
+            long offset = Long.parseLong(contentRange.substring("bytes ".length(), dash).trim());
+            return new RangeResponse<>(metadata, eTag, offset, totalLength(contentRange, contentLength), body);
+        }
+
+        /**
+         * 文件大小,用于把Range响应的元数据改为描述整个文件
+         *
+         * @param contentRange  Content-Range响应头,如"bytes 100-199/1000",可为null
+         * @param contentLength Content-Length,未知时为-1
+         * @return 有Content-Range时为其中的文件大小,否则为Content-Length,未知时为-1
+         */
+        public static long totalLength(String contentRange, long contentLength) {
+            if (contentRange == null || !contentRange.startsWith("bytes ")) {
+                return contentLength;
+            }
+            String total = contentRange.substring(contentRange.indexOf('/') + 1).trim();
+            return "*".equals(total) ? -1 : Long.parseLong(total);
+        }
+
+        public M getMetadata() {
+            return metadata;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getTotalLength() {
+            return totalLength;
+        }
+
+        public InputStream getBody() {
+            return body;
+        }
+    }
+
+    /**
+     * 文件的ETag与断点不一致(412 Precondition Failed)或起始位置无效(416),需要从头下载
+     */
+    public static class ObjectChangedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public ObjectChangedException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
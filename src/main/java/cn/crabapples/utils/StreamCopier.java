@@ -0,0 +1,177 @@
+package cn.crabapples.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 可复用的流复制管道
+ * 使用池化的大缓冲区代替每次复制新建的小数组;
+ * 输入或输出为文件时使用FileChannel.transferTo/transferFrom,由操作系统直接完成通道间复制
+ */
+public class StreamCopier {
+    private static final Logger logger = LoggerFactory.getLogger(StreamCopier.class);
+    private final BufferPool bufferPool;
+    private final LongAdder totalBytes = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    /**
+     * @param bufferSize 缓冲区大小(字节)
+     * @param poolSize   缓冲区池容量,超出时临时分配缓冲区而不是等待
+     * @param direct     是否使用堆外缓冲区
+     */
+    public StreamCopier(int bufferSize, int poolSize, boolean direct) {
+        this.bufferPool = new BufferPool(bufferSize, poolSize, direct);
+    }
+
+    /**
+     * 复制输入流到输出流,不关闭任何一方
+     *
+     * @param in  输入流
+     * @param out 输出流
+     * @return 本次复制的统计信息
+     * @throws IOException 读写失败
+     */
+    public CopyStats copy(InputStream in, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        long bytes;
+        if (in instanceof FileInputStream) {
+            bytes = transferTo(((FileInputStream) in).getChannel(), Channels.newChannel(out));
+        } else if (out instanceof FileOutputStream) {
+            bytes = transferFrom(Channels.newChannel(in), ((FileOutputStream) out).getChannel());
+        } else {
+            bytes = copyBuffered(in, out);
+        }
+        out.flush();
+        long nanos = System.nanoTime() - start;
+        totalBytes.add(bytes);
+        totalNanos.add(nanos);
+        CopyStats stats = new CopyStats(bytes, nanos);
+        logger.debug("复制完成,字节数:[{}],耗时:[{}]ms,速率:[{}]B/s", bytes, nanos / 1_000_000, stats.getBytesPerSecond());
+        return stats;
+    }
+
+    /**
+     * 累计复制的字节数
+     *
+     * @return 字节数
+     */
+    public long getTotalBytes() {
+        return totalBytes.sum();
+    }
+
+    /**
+     * 累计平均复制速率
+     *
+     * @return 字节/秒
+     */
+    public long getBytesPerSecond() {
+        return CopyStats.rate(totalBytes.sum(), totalNanos.sum());
+    }
+
+    private long copyBuffered(InputStream in, OutputStream out) throws IOException {
+        ByteBuffer buffer = bufferPool.tryAcquire();
+        boolean pooled = buffer != null;
+        if (!pooled) {
+            buffer = ByteBuffer.allocate(bufferPool.getBufferSize());
+        }
+        try {
+            if (buffer.hasArray()) {
+                byte[] data = buffer.array();
+                long total = 0;
+                for (int i = in.read(data); i != -1; i = in.read(data)) {
+                    out.write(data, 0, i);
+                    total += i;
+                }
+                return total;
+            }
+            return copyChannels(Channels.newChannel(in), Channels.newChannel(out), buffer);
+        } finally {
+            if (pooled) {
+                bufferPool.release(buffer);
+            }
+        }
+    }
+
+    private static long copyChannels(ReadableByteChannel source, WritableByteChannel target, ByteBuffer buffer) throws IOException {
+        long total = 0;
+        while (source.read(buffer) != -1) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                total += target.write(buffer);
+            }
+            buffer.clear();
+        }
+        return total;
+    }
+
+    private static long transferTo(FileChannel source, WritableByteChannel target) throws IOException {
+        long position = source.position();
+        long size = source.size();
+        long total = 0;
+        while (position + total < size) {
+            long transferred = source.transferTo(position + total, size - position - total, target);
+            if (transferred <= 0) {
+                break;
+            }
+            total += transferred;
+        }
+        source.position(position + total);
+        return total;
+    }
+
+    private long transferFrom(ReadableByteChannel source, FileChannel target) throws IOException {
+        long position = target.position();
+        long total = 0;
+        long chunk = bufferPool.getBufferSize();
+        while (true) {
+            long transferred = target.transferFrom(source, position + total, chunk);
+            if (transferred <= 0) {
+                break;
+            }
+            total += transferred;
+        }
+        target.position(position + total);
+        return total;
+    }
+
+    /**
+     * 单次复制的统计信息
+     */
+    public static class CopyStats {
+        private final long bytes;
+        private final long nanos;
+
+        public CopyStats(long bytes, long nanos) {
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public long getBytesPerSecond() {
+            return rate(bytes, nanos);
+        }
+
+        static long rate(long bytes, long nanos) {
+            return nanos <= 0 ? 0 : (long) (bytes * 1_000_000_000D / nanos);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package cn.crabapples.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 分片上传断点记录
+ * 每个上传在目录中对应一个文本文件,文件名由(bucket, 文件名, 本地路径)计算得到;
+ * 首行为"uploadId 分片大小 文件大小 修改时间",之后每完成一个分片追加一行"partNumber ETag"。
+ * 追加写入在进程崩溃后仍然保留,崩溃时没有写完的行在读取时忽略
+ */
+public class UploadJournal {
+    private static final Logger logger = LoggerFactory.getLogger(UploadJournal.class);
+    private static final String SUFFIX = ".upload";
+    private final Path directory;
+
+    /**
+     * @param directory 断点记录目录
+     */
+    public UploadJournal(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new RuntimeException("初始化断点记录目录失败: " + directory, e);
+        }
+    }
+
+    /**
+     * 读取断点记录
+     *
+     * @param bucket bucket
+     * @param key    文件名
+     * @param file   本地文件
+     * @return 断点记录,不存在或无法解析时为null
+     */
+    public Checkpoint load(String bucket, String key, Path file) {
+        Path journal = journalFile(bucket, key, file);
+        try {
+            String content = new String(Files.readAllBytes(journal), StandardCharsets.UTF_8);
+            // 只读取完整的行
+            String[] lines = content.substring(0, content.lastIndexOf('\n') + 1).split("\n");
+            String[] header = split(lines[0], 4);
+            if (header == null) {
+                return null;
+            }
+            Map<Integer, String> parts = new TreeMap<>();
+            for (int i = 1; i < lines.length; i++) {
+                String[] part = split(lines[i], 2);
+                if (part != null) {
+                    parts.put(Integer.parseInt(part[0]), part[1]);
+                }
+            }
+            return new Checkpoint(journal, header[0], Long.parseLong(header[1]), Long.parseLong(header[2]),
+                    Long.parseLong(header[3]), parts);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | NumberFormatException e) {
+            logger.warn("读取断点记录[{}]失败,重新上传", journal, e);
+            return null;
+        }
+    }
+
+    /**
+     * 创建断点记录,覆盖已有的记录
+     *
+     * @param bucket       bucket
+     * @param key          文件名
+     * @param file         本地文件
+     * @param uploadId     uploadId
+     * @param partSize     分片大小
+     * @param fileSize     文件大小
+     * @param lastModified 文件修改时间
+     * @return 断点记录
+     */
+    public Checkpoint create(String bucket, String key, Path file, String uploadId, long partSize, long fileSize, long lastModified) {
+        Path journal = journalFile(bucket, key, file);
+        Checkpoint checkpoint = new Checkpoint(journal, uploadId, partSize, fileSize, lastModified, new TreeMap<>());
+        try {
+            Files.write(journal, (uploadId + " " + partSize + " " + fileSize + " " + lastModified + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException("写入断点记录失败: " + journal, e);
+        }
+        return checkpoint;
+    }
+
+    private Path journalFile(String bucket, String key, Path file) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((bucket + "\n" + key + "\n" + file.toAbsolutePath().normalize())
+                    .getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (int i = 0; i < 16; i++) {
+                name.append(String.format("%02x", hash[i]));
+            }
+            return directory.resolve(name.append(SUFFIX).toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("计算断点记录文件名失败", e);
+        }
+    }
+
+    private static String[] split(String line, int fields) {
+        if (line == null || line.isEmpty()) {
+            return null;
+        }
+        String[] values = line.split(" ");
+        return values.length == fields ? values : null;
+    }
+
+    /**
+     * 一个上传的断点
+     */
+    public static class Checkpoint {
+        private final Path journal;
+        private final String uploadId;
+        private final long partSize;
+        private final long fileSize;
+        private final long lastModified;
+        private final Map<Integer, String> parts;
+        private FileChannel channel;
+
+        Checkpoint(Path journal, String uploadId, long partSize, long fileSize, long lastModified, Map<Integer, String> parts) {
+            this.journal = journal;
+            this.uploadId = uploadId;
+            this.partSize = partSize;
+            this.fileSize = fileSize;
+            this.lastModified = lastModified;
+            this.parts = parts;
+        }
+
+        public String getUploadId() {
+            return uploadId;
+        }
+
+        public long getPartSize() {
+            return partSize;
+        }
+
+        public long getFileSize() {
+            return fileSize;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * 记录中已完成的分片及ETag
+         */
+        public synchronized Map<Integer, String> getParts() {
+            return Collections.unmodifiableMap(new TreeMap<>(parts));
+        }
+
+        /**
+         * 记录完成的分片
+         *
+         * @param partNumber partNumber
+         * @param eTag       ETag
+         */
+        public synchronized void partCompleted(int partNumber, String eTag) {
+            parts.put(partNumber, eTag);
+            try {
+                if (channel == null) {
+                    channel = FileChannel.open(journal, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                }
+                ByteBuffer line = ByteBuffer.wrap((partNumber + " " + eTag + "\n").getBytes(StandardCharsets.UTF_8));
+                while (line.hasRemaining()) {
+                    channel.write(line);
+                }
+            } catch (IOException e) {
+                // 只影响崩溃后能否跳过该分片,恢复时以ListParts为准
+                logger.warn("写入断点记录[{}]失败", journal, e);
+            }
+        }
+
+        /**
+         * 关闭记录文件,保留断点
+         */
+        public synchronized void close() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    logger.debug("关闭断点记录[{}]失败", journal, e);
+                }
+                channel = null;
+            }
+        }
+
+        /**
+         * 上传完成或放弃后删除断点
+         */
+        public synchronized void delete() {
+            close();
+            try {
+                Files.deleteIfExists(journal);
+            } catch (IOException e) {
+                logger.warn("删除断点记录[{}]失败", journal, e);
+            }
+        }
+    }
+}